@@ -0,0 +1,97 @@
+package benchmark;
+
+import org.apache.shardingsphere.infra.datanode.DataNodeInfo;
+import org.apache.shardingsphere.infra.spi.type.typed.TypedSPILoader;
+import org.apache.shardingsphere.sharding.api.sharding.complex.ComplexKeysShardingValue;
+import org.apache.shardingsphere.sharding.api.sharding.standard.PreciseShardingValue;
+import org.apache.shardingsphere.sharding.api.sharding.standard.StandardShardingAlgorithm;
+import org.apache.shardingsphere.sharding.spi.ShardingAlgorithm;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import sharding.JumpHashComplexShardingAlgorithm;
+import sharding.UserComplexShardingAlgorithm;
+import sharding.resharding.ReshardingShardingAlgorithm;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a single routing decision of each sharding algorithm, without any SQL handling around it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShardingAlgorithmBenchmark {
+
+    private static final int KEYS = 1024;
+
+    private final Collection<String> targets = List.of("ds_0", "ds_1");
+    private final UserComplexShardingAlgorithm userComplex = new UserComplexShardingAlgorithm();
+    private final JumpHashComplexShardingAlgorithm jumpHash = new JumpHashComplexShardingAlgorithm();
+    private final ReshardingShardingAlgorithm resharding = new ReshardingShardingAlgorithm();
+    private StandardShardingAlgorithm<Comparable<?>> inline;
+
+    private ComplexKeysShardingValue<String>[] complexValues;
+    private PreciseShardingValue<Comparable<?>>[] preciseValues;
+    private int next;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        Properties inlineProps = new Properties();
+        inlineProps.setProperty("algorithm-expression", "ds_${Math.abs(id.hashCode()) % 2}");
+        inline = (StandardShardingAlgorithm<Comparable<?>>) TypedSPILoader.getService(ShardingAlgorithm.class, "INLINE", inlineProps);
+        jumpHash.init(new Properties());
+        resharding.init(new Properties());
+
+        DataNodeInfo dataNodeInfo = new DataNodeInfo("ds_", 1, '0');
+        complexValues = new ComplexKeysShardingValue[KEYS];
+        preciseValues = new PreciseShardingValue[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            String id = String.valueOf(i * 7919L);
+            complexValues[i] = new ComplexKeysShardingValue<>("t_user",
+                    Map.of("id", List.of(id), "username", List.of("User" + i)), Collections.emptyMap());
+            preciseValues[i] = new PreciseShardingValue<>("t_user", "id", dataNodeInfo, id);
+        }
+    }
+
+    @Benchmark
+    public Collection<String> userComplexComposite() {
+        return userComplex.doSharding(targets, complexValues[nextIndex()]);
+    }
+
+    @Benchmark
+    public Collection<String> jumpHashComposite() {
+        return jumpHash.doSharding(targets, complexValues[nextIndex()]);
+    }
+
+    @Benchmark
+    public String inlineGroovyExpression() {
+        return inline.doSharding(targets, preciseValues[nextIndex()]);
+    }
+
+    @Benchmark
+    public String classBasedHashMod() {
+        return resharding.doSharding(targets, preciseValues[nextIndex()]);
+    }
+
+    private int nextIndex() {
+        next = (next + 1) & (KEYS - 1);
+        return next;
+    }
+}
@@ -0,0 +1,220 @@
+package benchmark;
+
+import org.apache.shardingsphere.driver.api.yaml.YamlShardingSphereDataSourceFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import sharding.resharding.ShardLayout;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Typical {@code t_user} statements executed through ShardingSphere against in-memory H2 shards, next to the same
+ * statements executed on the shards directly. A {@code direct*} benchmark picks the shard of every id with the
+ * {@link ShardLayout} of the algorithm under test, and runs statements without a sharding value on every shard, so
+ * the difference to its {@code sharded*} benchmark is what parsing, routing, rewriting and merging cost per
+ * statement.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StatementRoutingBenchmark {
+
+    private static final int USERS = 10000;
+    private static final int SHARDS = 2;
+
+    @Param({"inline_hash_mod", "class_based_hash_mod", "class_based_jump"})
+    public String algorithm;
+
+    private DataSource shardingDataSource;
+    private Connection sharded;
+    private Connection[] direct;
+    private ShardLayout layout;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException, IOException {
+        for (int shard = 0; shard < SHARDS; shard++) {
+            try (Connection connection = DriverManager.getConnection("jdbc:h2:mem:benchmark_ds_" + shard + ";DB_CLOSE_DELAY=-1;MODE=PostgreSQL", "sa", "");
+                 Statement statement = connection.createStatement()) {
+                statement.execute("DROP TABLE IF EXISTS t_user");
+                statement.execute("CREATE TABLE t_user (id VARCHAR(32) PRIMARY KEY, username VARCHAR(255), email VARCHAR(255))");
+            }
+        }
+        shardingDataSource = YamlShardingSphereDataSourceFactory.createDataSource(loadConfiguration());
+        sharded = shardingDataSource.getConnection();
+        try (PreparedStatement statement = sharded.prepareStatement("INSERT INTO t_user (id, username, email) VALUES (?, ?, ?)")) {
+            for (int i = 0; i < USERS; i++) {
+                statement.setString(1, String.valueOf(i));
+                statement.setString(2, "User" + i);
+                statement.setString(3, "user" + i + "@example.com");
+                statement.executeUpdate();
+            }
+        }
+        layout = ShardLayout.parse(algorithm.endsWith("_jump") ? "JUMP:" + SHARDS : "HASH_MOD:" + SHARDS, "ds_");
+        direct = new Connection[SHARDS];
+        for (int shard = 0; shard < SHARDS; shard++) {
+            direct[shard] = DriverManager.getConnection("jdbc:h2:mem:benchmark_ds_" + shard + ";DB_CLOSE_DELAY=-1;MODE=PostgreSQL", "sa", "");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        sharded.close();
+        for (Connection connection : direct) {
+            connection.close();
+        }
+        ((AutoCloseable) shardingDataSource).close();
+    }
+
+    @Benchmark
+    public String shardedSelectById() throws SQLException {
+        return selectById(sharded, nextId());
+    }
+
+    @Benchmark
+    public String directSelectById() throws SQLException {
+        String id = nextId();
+        return selectById(direct(id), id);
+    }
+
+    @Benchmark
+    public int shardedUpdateById() throws SQLException {
+        return updateById(sharded, nextId());
+    }
+
+    @Benchmark
+    public int directUpdateById() throws SQLException {
+        String id = nextId();
+        return updateById(direct(id), id);
+    }
+
+    @Benchmark
+    public int shardedSelectInList() throws SQLException {
+        return selectInList(sharded, nextIds(4));
+    }
+
+    @Benchmark
+    public int directSelectInList() throws SQLException {
+        List<List<String>> idsByShard = new ArrayList<>(SHARDS);
+        for (int shard = 0; shard < SHARDS; shard++) {
+            idsByShard.add(new ArrayList<>());
+        }
+        for (String id : nextIds(4)) {
+            idsByShard.get(layout.shardIndex(id)).add(id);
+        }
+        int rows = 0;
+        for (int shard = 0; shard < SHARDS; shard++) {
+            if (!idsByShard.get(shard).isEmpty()) {
+                rows += selectInList(direct[shard], idsByShard.get(shard));
+            }
+        }
+        return rows;
+    }
+
+    @Benchmark
+    public long shardedCount() throws SQLException {
+        return count(sharded);
+    }
+
+    @Benchmark
+    public long directCount() throws SQLException {
+        long count = 0;
+        for (Connection connection : direct) {
+            count += count(connection);
+        }
+        return count;
+    }
+
+    private String selectById(Connection connection, String id) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT id, username, email FROM t_user WHERE id = ?")) {
+            statement.setString(1, id);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getString(2) : null;
+            }
+        }
+    }
+
+    private int updateById(Connection connection, String id) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("UPDATE t_user SET email = ? WHERE id = ?")) {
+            statement.setString(1, "updated" + id + "@example.com");
+            statement.setString(2, id);
+            return statement.executeUpdate();
+        }
+    }
+
+    private int selectInList(Connection connection, List<String> ids) throws SQLException {
+        String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        try (PreparedStatement statement = connection.prepareStatement("SELECT id, username, email FROM t_user WHERE id IN (" + placeholders + ")")) {
+            for (int i = 0; i < ids.size(); i++) {
+                statement.setString(i + 1, ids.get(i));
+            }
+            int rows = 0;
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    rows++;
+                }
+            }
+            return rows;
+        }
+    }
+
+    private long count(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT COUNT(*) FROM t_user");
+             ResultSet resultSet = statement.executeQuery()) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    private String nextId() {
+        next = next + 1 == USERS ? 0 : next + 1;
+        return String.valueOf(next);
+    }
+
+    private List<String> nextIds(int count) {
+        List<String> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(nextId());
+        }
+        return ids;
+    }
+
+    // The shard the algorithm under test routes the id to
+    private Connection direct(String id) {
+        return direct[layout.shardIndex(id)];
+    }
+
+    private byte[] loadConfiguration() throws IOException {
+        try (InputStream in = StatementRoutingBenchmark.class.getResourceAsStream("/benchmark-sharding.yaml")) {
+            String yaml = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            return yaml.replace("shardingAlgorithmName: ALGORITHM", "shardingAlgorithmName: " + algorithm).getBytes(StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -25,13 +25,13 @@ docker run -d --name vit-vtctld --network vitess-network \
   --topo_global_root=/vitess/global || docker restart vit-vtctld
 
 # Step 6: Run first shard (tablet0 - primary)
-echo "Starting vit-vttablet0 (primary for shard 0)..."
+echo "Starting vit-vttablet0 (primary for shard -80)..."
 docker run -d --name vit-vttablet0 --network vitess-network \
   -p 15100:15100 vitess-image \
   bash /vt/vitess/bin/vttablet \
   --tablet_hostname=vit-vttablet0 \
   --init_keyspace=test_keyspace \
-  --init_shard=0 \
+  --init_shard=-80 \
   --init_tablet_type=primary \
   --port=15100 \
   --topo_implementation=zookeeper \
@@ -39,13 +39,13 @@ docker run -d --name vit-vttablet0 --network vitess-network \
   --topo_global_root=/vitess/global || docker restart vit-vttablet0
 
 # Step 7: Run second shard (tablet1 - primary)
-echo "Starting vit-vttablet1 (primary for shard 1)..."
+echo "Starting vit-vttablet1 (primary for shard 80-)..."
 docker run -d --name vit-vttablet1 --network vitess-network \
   -p 15101:15101 vitess-image \
   bash /vt/vitess/bin/vttablet \
   --tablet_hostname=vit-vttablet1 \
   --init_keyspace=test_keyspace \
-  --init_shard=1 \
+  --init_shard=80- \
   --init_tablet_type=primary \
   --port=15101 \
   --topo_implementation=zookeeper \
@@ -83,6 +83,14 @@ docker exec -t vit-vtctld /vt/vitess/bin/vtctlclient \
             "name": "hash"
           }
         ]
+      },
+      "tb_data": {
+        "column_vindexes": [
+          {
+            "column": "head_id",
+            "name": "hash"
+          }
+        ]
       }
     }
   }' test_keyspace
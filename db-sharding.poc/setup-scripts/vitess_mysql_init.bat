@@ -19,26 +19,26 @@ docker run -d --name vit-vtctld --network vitess-network -p 15000:15000 vitess-i
     --topo_global_server_address=vit-zookeeper:2181 \
     --topo_global_root=/vitess/global
 
-REM Step 5: Start Vitess tablet (vttablet0 - primary for shard 0)
-echo Starting vit-vttablet0 (primary for shard 0)...
+REM Step 5: Start Vitess tablet (vttablet0 - primary for shard -80)
+echo Starting vit-vttablet0 (primary for shard -80)...
 docker run -d --name vit-vttablet0 --network vitess-network -p 15100:15100 vitess-image \
     /vt/vitess/bin/vttablet \
     --tablet_hostname=vit-vttablet0 \
     --init_keyspace=test_keyspace \
-    --init_shard=0 \
+    --init_shard=-80 \
     --init_tablet_type=primary \
     --port=15100 \
     --topo_implementation=zookeeper \
     --topo_global_server_address=vit-zookeeper:2181 \
     --topo_global_root=/vitess/global
 
-REM Step 6: Start Vitess tablet (vttablet1 - primary for shard 1)
-echo Starting vit-vttablet1 (primary for shard 1)...
+REM Step 6: Start Vitess tablet (vttablet1 - primary for shard 80-)
+echo Starting vit-vttablet1 (primary for shard 80-)...
 docker run -d --name vit-vttablet1 --network vitess-network -p 15101:15101 vitess-image \
     /vt/vitess/bin/vttablet \
     --tablet_hostname=vit-vttablet1 \
     --init_keyspace=test_keyspace \
-    --init_shard=1 \
+    --init_shard=80- \
     --init_tablet_type=primary \
     --port=15101 \
     --topo_implementation=zookeeper \
@@ -71,6 +71,14 @@ docker exec -t vit-vtctld vtctlclient \
                 "name": "hash"
               }
             ]
+          },
+          "tb_data": {
+            "column_vindexes": [
+              {
+                "column": "head_id",
+                "name": "hash"
+              }
+            ]
           }
         }
       }' test_keyspace
@@ -2,13 +2,15 @@ package entity;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import sharding.id.ShardedId;
 
 @Entity
 @Data
 @Table(name = "t_order")
 public class Order {
+    // Routed by user_id, so the id carries no shard of its own
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @ShardedId(shards = 1)
     private Long id;
 
     private Long user_id;
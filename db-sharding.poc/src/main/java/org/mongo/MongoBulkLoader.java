@@ -0,0 +1,196 @@
+package org.mongo;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.InsertManyOptions;
+import org.bson.Document;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Parallel bulk loader for {@code tb_head} and {@code tb_data}, both sharded on the hashed {@code head_id} so a
+ * head and its data live on the same shard (see {@code docs_mongo.md}).
+ * <p>
+ * The 64-bit hash space of {@code head_id} is cut into one equal range per writer thread, the same way
+ * {@code numInitialChunks} pre-splits a hashed collection. Every thread writes the heads of its range and their
+ * data as unordered {@code insertMany} batches, so with pre-split chunks and the balancer stopped each thread
+ * keeps writing to the same chunks and no data migrates while loading.
+ */
+public class MongoBulkLoader {
+
+    private static final InsertManyOptions UNORDERED = new InsertManyOptions().ordered(false);
+
+    private final MongoClient client;
+    private final MongoDatabase database;
+    private final int batchSize;
+    private final int threads;
+
+    /**
+     * @param batchSize documents per {@code insertMany}
+     * @param threads   writer threads, each owning one range of the hashed {@code head_id}
+     */
+    public MongoBulkLoader(MongoClient client, String databaseName, int batchSize, int threads) {
+        this.client = client;
+        this.database = client.getDatabase(databaseName);
+        this.batchSize = batchSize;
+        this.threads = threads;
+    }
+
+    /**
+     * Drops and re-creates both collections sharded on the hashed {@code head_id}.
+     *
+     * @param initialChunks chunks to pre-split every collection into while still empty, {@code 0} to let
+     *                      MongoDB split and balance while loading
+     */
+    public void shardCollections(int initialChunks) {
+        MongoDatabase admin = client.getDatabase("admin");
+        admin.runCommand(new Document("enableSharding", database.getName()));
+        for (String collection : List.of("tb_head", "tb_data")) {
+            database.getCollection(collection).drop();
+            Document command = new Document("shardCollection", database.getName() + "." + collection)
+                    .append("key", new Document("head_id", "hashed"));
+            if (initialChunks > 0) {
+                command.append("numInitialChunks", initialChunks);
+            }
+            admin.runCommand(command);
+        }
+    }
+
+    /**
+     * Loads {@code heads} heads with {@code dataPerHead} data documents each. The balancer is stopped during the
+     * load and restarted afterwards when {@code pauseBalancer} is set.
+     */
+    public LoadResult load(int heads, int dataPerHead, boolean pauseBalancer) {
+        List<List<Integer>> headsPerThread = partition(heads);
+        MongoDatabase admin = client.getDatabase("admin");
+        if (pauseBalancer) {
+            admin.runCommand(new Document("balancerStop", 1));
+        }
+        AtomicLong documents = new AtomicLong();
+        long start = System.currentTimeMillis();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (List<Integer> headIds : headsPerThread) {
+                writers.add(executor.submit(() -> {
+                    documents.addAndGet(write(headIds, dataPerHead));
+                    return null;
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Bulk load failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted during bulk load", e);
+        } finally {
+            executor.shutdownNow();
+            if (pauseBalancer) {
+                admin.runCommand(new Document("balancerStart", 1));
+            }
+        }
+        return new LoadResult(documents.get(), System.currentTimeMillis() - start);
+    }
+
+    private long write(List<Integer> headIds, int dataPerHead) {
+        MongoCollection<Document> heads = database.getCollection("tb_head");
+        MongoCollection<Document> data = database.getCollection("tb_data");
+        List<Document> headBatch = new ArrayList<>(batchSize);
+        List<Document> dataBatch = new ArrayList<>(batchSize);
+        long written = 0;
+        for (int headId : headIds) {
+            headBatch.add(new Document()
+                    .append("head_id", headId)
+                    .append("head_name", "HeadName" + headId)
+                    .append("head_period", "2024-Q" + (headId % 4 + 1))
+                    .append("head_revision", headId % 10)
+                    .append("head_status", headId % 2 == 0 ? "Active" : "Inactive"));
+            written += flushIfFull(heads, headBatch);
+            for (int i = 0; i < dataPerHead; i++) {
+                long dataId = (long) (headId - 1) * dataPerHead + i + 1;
+                dataBatch.add(new Document()
+                        .append("data_id", dataId)
+                        .append("head_id", headId)
+                        .append("data_block_start", "Block" + dataId)
+                        .append("data_value", "Value" + dataId));
+                written += flushIfFull(data, dataBatch);
+            }
+        }
+        written += flush(heads, headBatch);
+        written += flush(data, dataBatch);
+        return written;
+    }
+
+    private int flushIfFull(MongoCollection<Document> collection, List<Document> batch) {
+        return batch.size() >= batchSize ? flush(collection, batch) : 0;
+    }
+
+    private static int flush(MongoCollection<Document> collection, List<Document> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        int size = batch.size();
+        collection.insertMany(batch, UNORDERED);
+        batch.clear();
+        return size;
+    }
+
+    // Head ids 1..heads grouped by the equal range of the hash space their hashed head_id falls into
+    private List<List<Integer>> partition(int heads) {
+        List<List<Integer>> result = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            result.add(new ArrayList<>(heads / threads + 1));
+        }
+        for (int headId = 1; headId <= heads; headId++) {
+            result.get(rangeOf(hashedValue(headId), threads)).add(headId);
+        }
+        return result;
+    }
+
+    /**
+     * Index of the equal range of the signed 64-bit hash space a hashed value falls into.
+     */
+    public static int rangeOf(long hash, int ranges) {
+        if (ranges == 1) {
+            return 0;
+        }
+        long offset = hash - Long.MIN_VALUE;
+        return (int) Long.divideUnsigned(offset, Long.divideUnsigned(-1L, ranges) + 1);
+    }
+
+    /**
+     * Value a hashed index stores for an integral number, as {@code convertShardKeyToHashed} returns it: the first
+     * 8 bytes, little-endian, of the MD5 of the seed 0, the canonical number type 10 and the value as a
+     * little-endian 64-bit integer.
+     */
+    public static long hashedValue(long value) {
+        ByteBuffer input = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+        input.putInt(0).putInt(10).putLong(value);
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(input.array());
+            return ByteBuffer.wrap(digest, 0, 8).order(ByteOrder.LITTLE_ENDIAN).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public record LoadResult(long documents, long elapsedMillis) {
+
+        public double documentsPerSecond() {
+            return elapsedMillis == 0 ? documents : documents * 1000.0 / elapsedMillis;
+        }
+    }
+}
@@ -1,38 +1,41 @@
 package org.mysql;
 
-import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+import java.time.Duration;
+import java.util.List;
 
 public class ParallelRequestTest {
     private static final String URL = "jdbc:mysql://localhost:3306/test_keyspace";
     private static final String USER = "root";
     private static final String PASSWORD = "root";
+    private static final List<String> SHARDS = List.of("-80", "80-");
 
-    public static void main(String[] args) {
-        // Simulate three parallel requests
-        Thread t1 = new Thread(() -> queryHeadById(3));
-        Thread t2 = new Thread(() -> queryHeadById(7728));
-        Thread t3 = new Thread(() -> queryHeadById(1024));
+    private static final int POOL_SIZE = 64;
+    private static final int HEADS = 2000;
 
-        t1.start();
-        t2.start();
-        t3.start();
-    }
+    public static void main(String[] args) throws InterruptedException {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(URL);
+        config.setUsername(USER);
+        config.setPassword(PASSWORD);
+        config.setMaximumPoolSize(POOL_SIZE);
+        config.setMinimumIdle(POOL_SIZE);
+        config.setConnectionTimeout(60000);
+        // Server-side prepared statements, prepared once per connection and cached
+        config.addDataSourceProperty("useServerPrepStmts", "true");
+        config.addDataSourceProperty("cachePrepStmts", "true");
+        config.addDataSourceProperty("prepStmtCacheSize", "256");
+        config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
 
-    private static void queryHeadById(int headId) {
-        try (Connection conn = DriverManager.getConnection(URL, USER, PASSWORD)) {
-            String sql = "SELECT head_id, head_name FROM tb_head WHERE head_id = ?";
-            try (PreparedStatement ps = conn.prepareStatement(sql)) {
-                ps.setInt(1, headId);
-                ResultSet rs = ps.executeQuery();
-                while (rs.next()) {
-                    System.out.println("Thread " + Thread.currentThread().getId() + ": head_id = " + rs.getInt("head_id") + ", head_name = " + rs.getString("head_name"));
-                }
+        try (HikariDataSource dataSource = new HikariDataSource(config)) {
+            PointLookupLoadGenerator generator = new PointLookupLoadGenerator(dataSource, SHARDS,
+                    "SELECT head_id, head_name FROM tb_head WHERE head_id = ?", HEADS);
+            // Concurrency steps show where throughput stops growing and only the latency does
+            for (int concurrency : new int[]{64, 1000, 10000, 50000}) {
+                generator.run(concurrency, Duration.ofSeconds(5), Duration.ofSeconds(30)).print();
             }
-        } catch (Exception e) {
-            e.printStackTrace();
         }
     }
 }
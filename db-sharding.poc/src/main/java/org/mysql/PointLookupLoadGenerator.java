@@ -0,0 +1,173 @@
+package org.mysql;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Closed-loop point-lookup load against vtgate: every virtual thread looks up a random key, waits for the row and
+ * looks up the next one. The latency of a lookup includes the wait for a pooled connection, so with more threads
+ * than connections it shows where vtgate and the pool stop keeping up.
+ * <p>
+ * Keys are attributed to the shard range the {@code hash} vindex routes them to, latencies and throughput are
+ * reported per shard.
+ */
+public class PointLookupLoadGenerator {
+
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+    private final DataSource dataSource;
+    private final List<VitessBulkLoader.ShardRange> shards;
+    private final String sql;
+    private final int maxKey;
+    // Shard index of every key, so lookups don't compute keyspace ids
+    private final byte[] shardOfKey;
+
+    /**
+     * @param sql    lookup with a single parameter, the key
+     * @param maxKey keys are drawn uniformly from {@code 1..maxKey}
+     */
+    public PointLookupLoadGenerator(DataSource dataSource, List<String> shards, String sql, int maxKey) {
+        this.dataSource = dataSource;
+        this.shards = shards.stream().map(VitessBulkLoader.ShardRange::parse).toList();
+        this.sql = sql;
+        this.maxKey = maxKey;
+        this.shardOfKey = new byte[maxKey + 1];
+        for (int key = 1; key <= maxKey; key++) {
+            shardOfKey[key] = (byte) shardOf(key);
+        }
+    }
+
+    /**
+     * Runs {@code concurrency} virtual threads for the warmup and then the measured duration.
+     */
+    public Result run(int concurrency, Duration warmup, Duration duration) throws InterruptedException {
+        Map<String, ShardRecorder> recorders = new LinkedHashMap<>();
+        for (VitessBulkLoader.ShardRange shard : shards) {
+            recorders.put(shard.name(), new ShardRecorder());
+        }
+        List<ShardRecorder> byShard = new ArrayList<>(recorders.values());
+
+        long measureStart = System.nanoTime() + warmup.toNanos();
+        long end = measureStart + duration.toNanos();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < concurrency; i++) {
+                executor.submit(() -> lookups(byShard, end));
+            }
+            TimeUnit.NANOSECONDS.sleep(Math.max(0, measureStart - System.nanoTime()));
+            // Drops what the warmup recorded
+            for (ShardRecorder recorder : byShard) {
+                recorder.reset();
+            }
+        }
+        long measuredNanos = System.nanoTime() - measureStart;
+
+        Map<String, ShardResult> results = new LinkedHashMap<>();
+        recorders.forEach((shard, recorder) -> results.put(shard, recorder.result(measuredNanos)));
+        return new Result(concurrency, results);
+    }
+
+    private void lookups(List<ShardRecorder> recorders, long end) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.nanoTime() < end) {
+            int key = random.nextInt(1, maxKey + 1);
+            ShardRecorder recorder = recorders.get(shardOfKey[key]);
+            long start = System.nanoTime();
+            try (Connection connection = dataSource.getConnection();
+                 PreparedStatement statement = connection.prepareStatement(sql)) {
+                statement.setInt(1, key);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        // drain the row
+                    }
+                }
+                recorder.latencies.recordValue(Math.min(System.nanoTime() - start, HIGHEST_TRACKABLE_NANOS));
+            } catch (SQLException e) {
+                recorder.errors.increment();
+            }
+        }
+    }
+
+    private int shardOf(long key) {
+        long keyspaceId = VitessBulkLoader.keyspaceId(key);
+        for (int i = 0; i < shards.size(); i++) {
+            if (shards.get(i).contains(keyspaceId)) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("No shard for keyspace id " + Long.toHexString(keyspaceId));
+    }
+
+    private static final class ShardRecorder {
+
+        private final Recorder latencies = new Recorder(HIGHEST_TRACKABLE_NANOS, 3);
+        private final LongAdder errors = new LongAdder();
+
+        private void reset() {
+            latencies.reset();
+            errors.reset();
+        }
+
+        private ShardResult result(long measuredNanos) {
+            return new ShardResult(latencies.getIntervalHistogram(), errors.sum(), measuredNanos);
+        }
+    }
+
+    public record ShardResult(Histogram latencies, long errors, long measuredNanos) {
+
+        public double lookupsPerSecond() {
+            return latencies.getTotalCount() * 1e9 / measuredNanos;
+        }
+
+        public double percentileMillis(double percentile) {
+            return latencies.getValueAtPercentile(percentile) / 1e6;
+        }
+    }
+
+    public record Result(int concurrency, Map<String, ShardResult> shards) {
+
+        public void print() {
+            System.out.printf("%d concurrent lookups%n", concurrency);
+            System.out.printf("%-8s %12s %8s %9s %9s %9s %9s %9s%n", "shard", "lookups/s", "errors", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+            Histogram total = null;
+            double totalRate = 0;
+            long totalErrors = 0;
+            for (Map.Entry<String, ShardResult> entry : shards.entrySet()) {
+                ShardResult shard = entry.getValue();
+                print(entry.getKey(), shard.lookupsPerSecond(), shard.errors(), shard.latencies());
+                if (total == null) {
+                    total = shard.latencies().copy();
+                } else {
+                    total.add(shard.latencies());
+                }
+                totalRate += shard.lookupsPerSecond();
+                totalErrors += shard.errors();
+            }
+            if (total != null) {
+                print("total", totalRate, totalErrors, total);
+            }
+        }
+
+        private static void print(String name, double rate, long errors, Histogram latencies) {
+            System.out.printf("%-8s %12.0f %8d %9.2f %9.2f %9.2f %9.2f %9.2f%n", name, rate, errors,
+                    latencies.getValueAtPercentile(50) / 1e6, latencies.getValueAtPercentile(90) / 1e6,
+                    latencies.getValueAtPercentile(99) / 1e6, latencies.getValueAtPercentile(99.9) / 1e6,
+                    latencies.getMaxValue() / 1e6);
+        }
+    }
+}
@@ -1,55 +1,38 @@
 package org.mysql;
 
-import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.PreparedStatement;
-import java.sql.SQLException;
+import java.util.List;
 import java.util.Random;
 
 public class ShardedDataInsertion {
-    
-    private static final String URL = "jdbc:mysql://localhost:3306/test_keyspace";
+
+    // vtgate, the shard is chosen per writer connection
+    private static final String URL = "jdbc:mysql://localhost:3306/?rewriteBatchedStatements=true&useServerPrepStmts=false";
     private static final String USER = "root";
     private static final String PASSWORD = "root";
+    private static final String KEYSPACE = "test_keyspace";
+    private static final List<String> SHARDS = List.of("-80", "80-");
 
-    public static void main(String[] args) {
-        try (Connection conn = DriverManager.getConnection(URL, USER, PASSWORD)) {
-            conn.setAutoCommit(false);
+    private static final int HEADS = 2000;
+    private static final long DATA_ROWS = 15000;
 
-            insertTbHead(conn);
-            insertTbData(conn);
+    public static void main(String[] args) throws InterruptedException {
+        VitessBulkLoader loader = new VitessBulkLoader(URL, USER, PASSWORD, KEYSPACE, SHARDS, 500, 20, 10000);
 
-            conn.commit();
-            System.out.println("Data insertion complete.");
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-    }
+        VitessBulkLoader.LoadResult heads = loader.load(
+                new VitessBulkLoader.Table("tb_head", List.of("head_id", "head_name", "head_type"), "head_id"),
+                HEADS, index -> new Object[]{index + 1, "Head " + (index + 1), "Type " + ((index + 1) % 3 + 1)});
+        print("tb_head", heads);
 
-    private static void insertTbHead(Connection conn) throws SQLException {
-        String insertHeadSQL = "INSERT INTO tb_head (head_id, head_name, head_type) VALUES (?, ?, ?)";
-        try (PreparedStatement ps = conn.prepareStatement(insertHeadSQL)) {
-            for (int i = 1; i <= 2000; i++) {
-                ps.setInt(1, i);
-                ps.setString(2, "Head " + i);
-                ps.setString(3, "Type " + (i % 3 + 1));
-                ps.addBatch();
-            }
-            ps.executeBatch();
-        }
+        // tb_data is sharded on head_id as well, so a head and its data share a shard
+        Random random = new Random();
+        VitessBulkLoader.LoadResult data = loader.load(
+                new VitessBulkLoader.Table("tb_data", List.of("data_id", "data_value", "head_id"), "head_id"),
+                DATA_ROWS, index -> new Object[]{index + 1, "Data write " + (index + 1), random.nextInt(HEADS) + 1});
+        print("tb_data", data);
     }
 
-    private static void insertTbData(Connection conn) throws SQLException {
-        String insertDataSQL = "INSERT INTO tb_data (data_id, data_value, head_id) VALUES (?, ?, ?)";
-        Random random = new Random();
-        try (PreparedStatement ps = conn.prepareStatement(insertDataSQL)) {
-            for (int i = 1; i <= 15000; i++) {
-                ps.setInt(1, i); // Linking to random tb_head
-                ps.setString(2, "Data write " + i);
-                ps.setInt(3, random.nextInt(2000) + 1); // Random version
-                ps.addBatch();
-            }
-            ps.executeBatch();
-        }
+    private static void print(String table, VitessBulkLoader.LoadResult result) {
+        System.out.printf("Inserted %d rows into %s in %d ms (%.0f rows/s), per shard: %s%n",
+                result.rows(), table, result.elapsedMillis(), result.rowsPerSecond(), result.rowsPerShard());
     }
 }
@@ -0,0 +1,284 @@
+package org.mysql;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streaming loader for a keyspace sharded with the Vitess {@code hash} vindex.
+ * <p>
+ * Rows are generated one at a time, routed to their shard range by the keyspace id of their sharding column and
+ * queued in a bounded queue per shard, so memory stays bounded however many rows are loaded. One writer thread
+ * per shard range targets its shard directly ({@code USE keyspace:range}), writes multi-row {@code INSERT}s and
+ * commits every few batches. A failed writer stops the load and its error is rethrown; batches it committed stay.
+ */
+public class VitessBulkLoader {
+
+    private static final long POLL_INTERVAL_MS = 100;
+    private static final Object[] END = new Object[0];
+    private static final ThreadLocal<Cipher> HASH_CIPHER = ThreadLocal.withInitial(() -> {
+        try {
+            Cipher cipher = Cipher.getInstance("DES/ECB/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(new byte[8], "DES"));
+            return cipher;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final String keyspace;
+    private final List<ShardRange> shards;
+    private final int batchSize;
+    private final int batchesPerCommit;
+    private final int queueCapacity;
+
+    /**
+     * @param url              vtgate JDBC URL without a database
+     * @param shards           shard names of the keyspace, e.g. {@code -80, 80-}
+     * @param batchSize        rows per multi-row {@code INSERT}
+     * @param batchesPerCommit {@code INSERT}s per transaction
+     * @param queueCapacity    rows buffered per shard before the generator waits
+     */
+    public VitessBulkLoader(String url, String user, String password, String keyspace, List<String> shards,
+                            int batchSize, int batchesPerCommit, int queueCapacity) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.keyspace = keyspace;
+        this.shards = shards.stream().map(ShardRange::parse).toList();
+        this.batchSize = batchSize;
+        this.batchesPerCommit = batchesPerCommit;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Generates the values of a row from its index, the row's own values must not be reused.
+     */
+    @FunctionalInterface
+    public interface RowGenerator {
+
+        Object[] row(long index);
+    }
+
+    /**
+     * A table to load, its rows sharded by the {@code hash} vindex on an integral column.
+     */
+    public record Table(String name, List<String> columns, String shardingColumn) {
+
+        int shardingColumnIndex() {
+            int index = columns.indexOf(shardingColumn);
+            if (index < 0) {
+                throw new IllegalArgumentException("Sharding column " + shardingColumn + " is not a column of " + name);
+            }
+            return index;
+        }
+
+        String insertSql(int rows) {
+            String values = "(" + String.join(", ", Collections.nCopies(columns.size(), "?")) + ")";
+            return "INSERT INTO " + name + " (" + String.join(", ", columns) + ") VALUES "
+                    + String.join(", ", Collections.nCopies(rows, values));
+        }
+    }
+
+    /**
+     * Loads rows {@code 0..rows-1} of the generator into the table, all shards in parallel.
+     */
+    public LoadResult load(Table table, long rows, RowGenerator generator) throws InterruptedException {
+        int shardingColumn = table.shardingColumnIndex();
+        long start = System.currentTimeMillis();
+        List<ShardWriter> writers = new ArrayList<>();
+        for (ShardRange shard : shards) {
+            ShardWriter writer = new ShardWriter(shard, table);
+            writers.add(writer);
+            writer.thread.start();
+        }
+        try {
+            for (long index = 0; index < rows; index++) {
+                Object[] row = generator.row(index);
+                long keyspaceId = keyspaceId(((Number) row[shardingColumn]).longValue());
+                enqueue(writers, writerOf(writers, keyspaceId), row);
+            }
+            for (ShardWriter writer : writers) {
+                enqueue(writers, writer, END);
+            }
+            for (ShardWriter writer : writers) {
+                writer.thread.join();
+            }
+        } finally {
+            for (ShardWriter writer : writers) {
+                writer.thread.interrupt();
+            }
+        }
+        checkFailure(writers);
+
+        Map<String, Long> rowsPerShard = new LinkedHashMap<>();
+        long total = 0;
+        for (ShardWriter writer : writers) {
+            rowsPerShard.put(writer.shard.name(), writer.written);
+            total += writer.written;
+        }
+        return new LoadResult(total, rowsPerShard, System.currentTimeMillis() - start);
+    }
+
+    // A dead writer never drains its queue, so the generator re-checks for failures periodically
+    private static void enqueue(List<ShardWriter> writers, ShardWriter writer, Object[] row) throws InterruptedException {
+        while (!writer.queue.offer(row, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+            checkFailure(writers);
+        }
+    }
+
+    private static void checkFailure(List<ShardWriter> writers) {
+        for (ShardWriter writer : writers) {
+            if (writer.failure != null) {
+                throw new IllegalStateException("Loading shard " + writer.shard.name() + " failed", writer.failure);
+            }
+        }
+    }
+
+    private static ShardWriter writerOf(List<ShardWriter> writers, long keyspaceId) {
+        for (ShardWriter writer : writers) {
+            if (writer.shard.contains(keyspaceId)) {
+                return writer;
+            }
+        }
+        throw new IllegalStateException("No shard for keyspace id " + Long.toHexString(keyspaceId));
+    }
+
+    /**
+     * Keyspace id the {@code hash} vindex maps a value to: the value as big-endian 64-bit integer, encrypted
+     * with DES under an all-zero key.
+     */
+    public static long keyspaceId(long value) {
+        try {
+            return ByteBuffer.wrap(HASH_CIPHER.get().doFinal(ByteBuffer.allocate(8).putLong(value).array())).getLong();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Keyspace id range of a shard, start inclusive and end exclusive, compared unsigned. Unbounded ends are
+     * empty in the name, an unsharded keyspace has the single shard {@code 0} or {@code -}.
+     */
+    public record ShardRange(String name, long start, long end, boolean openEnd) {
+
+        public static ShardRange parse(String name) {
+            if (name.equals("0") || name.equals("-")) {
+                return new ShardRange(name, 0, 0, true);
+            }
+            int dash = name.indexOf('-');
+            if (dash < 0) {
+                throw new IllegalArgumentException("Not a shard range: " + name);
+            }
+            String start = name.substring(0, dash);
+            String end = name.substring(dash + 1);
+            return new ShardRange(name, start.isEmpty() ? 0 : bound(start), end.isEmpty() ? 0 : bound(end), end.isEmpty());
+        }
+
+        public boolean contains(long keyspaceId) {
+            return Long.compareUnsigned(keyspaceId, start) >= 0 && (openEnd || Long.compareUnsigned(keyspaceId, end) < 0);
+        }
+
+        // Range bounds are keyspace id prefixes, "80" is 0x8000000000000000
+        private static long bound(String hex) {
+            if (hex.length() > 16) {
+                throw new IllegalArgumentException("Shard bound longer than a keyspace id: " + hex);
+            }
+            return Long.parseUnsignedLong(hex + "0".repeat(16 - hex.length()), 16);
+        }
+    }
+
+    private final class ShardWriter implements Runnable {
+
+        private final ShardRange shard;
+        private final Table table;
+        private final BlockingQueue<Object[]> queue;
+        private final Thread thread;
+        private final List<Object[]> buffer;
+        private volatile Throwable failure;
+        private long written;
+
+        private ShardWriter(ShardRange shard, Table table) {
+            this.shard = shard;
+            this.table = table;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.buffer = new ArrayList<>(batchSize);
+            this.thread = new Thread(this, "vitess-loader-" + table.name() + "-" + shard.name());
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try (Connection connection = DriverManager.getConnection(url, user, password)) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("USE `" + keyspace + ":" + shard.name() + "`");
+                }
+                connection.setAutoCommit(false);
+                try (PreparedStatement insert = connection.prepareStatement(table.insertSql(batchSize))) {
+                    int uncommitted = 0;
+                    while (true) {
+                        Object[] row = queue.take();
+                        if (row == END) {
+                            break;
+                        }
+                        buffer.add(row);
+                        if (buffer.size() == batchSize) {
+                            insert(insert);
+                            if (++uncommitted == batchesPerCommit) {
+                                connection.commit();
+                                uncommitted = 0;
+                            }
+                        }
+                    }
+                    if (!buffer.isEmpty()) {
+                        try (PreparedStatement tail = connection.prepareStatement(table.insertSql(buffer.size()))) {
+                            insert(tail);
+                        }
+                    }
+                    connection.commit();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Throwable e) {
+                failure = e;
+            }
+        }
+
+        private void insert(PreparedStatement statement) throws SQLException {
+            int columns = table.columns().size();
+            for (int i = 0; i < buffer.size(); i++) {
+                Object[] row = buffer.get(i);
+                for (int c = 0; c < columns; c++) {
+                    statement.setObject(i * columns + c + 1, row[c]);
+                }
+            }
+            statement.executeUpdate();
+            written += buffer.size();
+            buffer.clear();
+        }
+    }
+
+    public record LoadResult(long rows, Map<String, Long> rowsPerShard, long elapsedMillis) {
+
+        public double rowsPerSecond() {
+            return elapsedMillis == 0 ? rows : rows * 1000.0 / elapsedMillis;
+        }
+    }
+}
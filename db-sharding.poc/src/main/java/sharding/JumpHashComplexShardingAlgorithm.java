@@ -0,0 +1,155 @@
+package sharding;
+
+import org.apache.shardingsphere.sharding.api.sharding.complex.ComplexKeysShardingAlgorithm;
+import org.apache.shardingsphere.sharding.api.sharding.complex.ComplexKeysShardingValue;
+import sharding.metrics.HotKeyTracker;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Complex-keys variant of {@link UserComplexShardingAlgorithm} based on jump consistent hashing
+ * (Lamping &amp; Veach). The {@code id}/{@code username} values are hashed in place, no composite
+ * key or target name is built per call, and growing from N to N+1 shards only moves ~1/(N+1) of the keys.
+ * Point routes are recorded in the {@link HotKeyTracker} of the logic table.
+ * <p>
+ * Configure it in the YAML with the {@code CLASS_BASED} type:
+ * <pre>
+ * type: CLASS_BASED
+ * props:
+ *   strategy: COMPLEX
+ *   algorithmClassName: sharding.JumpHashComplexShardingAlgorithm
+ *   target-prefix: ds_
+ * </pre>
+ */
+public class JumpHashComplexShardingAlgorithm implements ComplexKeysShardingAlgorithm<String> {
+
+    public static final String TARGET_PREFIX_KEY = "target-prefix";
+    public static final String SHARDING_COUNT_KEY = "sharding-count";
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private String targetPrefix = "ds_";
+    private int shardingCount;
+
+    // Index i holds the singleton route "prefix + i", rebuilt only when the shard count changes
+    private volatile Collection<String>[] routes = newRoutes("ds_", 0);
+
+    @Override
+    public void init(Properties props) {
+        targetPrefix = props.getProperty(TARGET_PREFIX_KEY, targetPrefix);
+        shardingCount = Integer.parseInt(props.getProperty(SHARDING_COUNT_KEY, "0"));
+        routes = newRoutes(targetPrefix, shardingCount);
+    }
+
+    @Override
+    public Collection<String> doSharding(Collection<String> availableTargetNames, ComplexKeysShardingValue<String> shardingValue) {
+        int buckets = shardingCount > 0 ? shardingCount : availableTargetNames.size();
+        Collection<String>[] current = routesFor(buckets);
+
+        Collection<String> idValues = shardingValue.getColumnNameAndShardingValuesMap().get("id");
+        Collection<String> usernameValues = shardingValue.getColumnNameAndShardingValuesMap().get("username");
+        boolean hasId = idValues != null && !idValues.isEmpty();
+        boolean hasUsername = usernameValues != null && !usernameValues.isEmpty();
+        if (!hasId && !hasUsername) {
+            // Range or unkeyed access, every shard may hold matching rows
+            return availableTargetNames;
+        }
+
+        // Fast path for point access, no allocation at all
+        if ((!hasId || idValues.size() == 1) && (!hasUsername || usernameValues.size() == 1)) {
+            String id = hasId ? idValues.iterator().next() : null;
+            String username = hasUsername ? usernameValues.iterator().next() : null;
+            Collection<String> target = current[jumpConsistentHash(hash(id, username), buckets)];
+            HotKeyTracker.forTable(shardingValue.getLogicTableName()).record(hasId ? id : username, target.iterator().next(), availableTargetNames);
+            return target;
+        }
+
+        // IN lists and OR conditions route to the union of the shards of each key combination
+        Set<String> targets = new LinkedHashSet<>();
+        for (String id : hasId ? idValues : Collections.<String>singleton(null)) {
+            for (String username : hasUsername ? usernameValues : Collections.<String>singleton(null)) {
+                targets.addAll(current[jumpConsistentHash(hash(id, username), buckets)]);
+                if (targets.size() == buckets) {
+                    return targets;
+                }
+            }
+        }
+        return targets;
+    }
+
+    /**
+     * Returns the shard index of a key, the same index {@link #doSharding} routes to.
+     */
+    public static int shardIndex(String id, String username, int buckets) {
+        return jumpConsistentHash(hash(id, username), buckets);
+    }
+
+    /**
+     * 64-bit hash of the concatenation of both values, computed over the chars without building the string.
+     */
+    public static long hash(CharSequence id, CharSequence username) {
+        long h = FNV_OFFSET_BASIS;
+        if (id != null) {
+            for (int i = 0; i < id.length(); i++) {
+                h = (h ^ id.charAt(i)) * FNV_PRIME;
+            }
+        }
+        if (username != null) {
+            for (int i = 0; i < username.length(); i++) {
+                h = (h ^ username.charAt(i)) * FNV_PRIME;
+            }
+        }
+        return fmix64(h);
+    }
+
+    /**
+     * Jump consistent hash, maps a key to a bucket in {@code [0, buckets)}.
+     */
+    public static int jumpConsistentHash(long key, int buckets) {
+        if (buckets <= 0) {
+            throw new IllegalArgumentException("Number of buckets must be positive: " + buckets);
+        }
+        long b = -1;
+        long j = 0;
+        while (j < buckets) {
+            b = j;
+            key = key * 2862933555777941757L + 1;
+            j = (long) ((b + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+        }
+        return (int) b;
+    }
+
+    // MurmurHash3 finalizer, spreads the low-entropy FNV bits for short numeric ids
+    private static long fmix64(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private Collection<String>[] routesFor(int buckets) {
+        Collection<String>[] current = routes;
+        if (current.length != buckets) {
+            current = newRoutes(targetPrefix, buckets);
+            routes = current;
+        }
+        return current;
+    }
+
+    // A generic array can only be created raw
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Collection<String>[] newRoutes(String prefix, int buckets) {
+        Collection<String>[] result = new Collection[buckets];
+        for (int i = 0; i < buckets; i++) {
+            result[i] = Collections.singletonList(prefix + i);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,197 @@
+package sharding;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.apache.shardingsphere.driver.jdbc.core.connection.ShardingSphereConnection;
+import org.apache.shardingsphere.infra.metadata.database.ShardingSphereDatabase;
+import org.apache.shardingsphere.infra.metadata.database.resource.unit.StorageUnit;
+import org.apache.shardingsphere.mode.manager.ContextManager;
+import org.apache.shardingsphere.readwritesplitting.rule.ReadwriteSplittingDataSourceGroupRule;
+import org.apache.shardingsphere.readwritesplitting.rule.ReadwriteSplittingRule;
+import org.apache.shardingsphere.sharding.api.config.strategy.sharding.ComplexShardingStrategyConfiguration;
+import org.apache.shardingsphere.sharding.api.config.strategy.sharding.ShardingStrategyConfiguration;
+import org.apache.shardingsphere.sharding.api.config.strategy.sharding.StandardShardingStrategyConfiguration;
+import org.apache.shardingsphere.sharding.api.sharding.complex.ComplexKeysShardingAlgorithm;
+import org.apache.shardingsphere.sharding.api.sharding.complex.ComplexKeysShardingValue;
+import org.apache.shardingsphere.sharding.api.sharding.standard.PreciseShardingValue;
+import org.apache.shardingsphere.sharding.api.sharding.standard.StandardShardingAlgorithm;
+import org.apache.shardingsphere.sharding.rule.ShardingRule;
+import org.apache.shardingsphere.sharding.rule.ShardingTable;
+import org.apache.shardingsphere.sharding.spi.ShardingAlgorithm;
+import org.hibernate.Session;
+import sharding.metrics.ShardMetrics;
+import sharding.readwrite.ReplicaLagMonitor;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Read-only view of the live ShardingSphere configuration behind an {@link EntityManagerFactory}:
+ * the sharding rule, the routing of a sharding value and the physical data sources of each shard.
+ * <p>
+ * Components that talk to the shards directly use this instead of guessing the shard with their own modulo,
+ * so they always agree with the statements ShardingSphere routes.
+ */
+public class ShardingTopology {
+
+    private final ContextManager contextManager;
+    private final String databaseName;
+    private final Map<String, TableRoute> tableRoutes = new ConcurrentHashMap<>();
+
+    public ShardingTopology(ContextManager contextManager, String databaseName) {
+        this.contextManager = contextManager;
+        this.databaseName = databaseName;
+    }
+
+    /**
+     * Topology of the ShardingSphere data source behind the factory. Starts the {@link ReplicaLagMonitor} of its
+     * read/write splitting groups if they balance with the replica-aware algorithm.
+     */
+    public static ShardingTopology from(EntityManagerFactory emf) {
+        EntityManager em = emf.createEntityManager();
+        ShardingTopology topology;
+        try {
+            ShardingSphereConnection connection = em.unwrap(Session.class)
+                    .doReturningWork(c -> c.unwrap(ShardingSphereConnection.class));
+            topology = new ShardingTopology(connection.getContextManager(), connection.getCurrentDatabaseName());
+        } finally {
+            em.close();
+        }
+        ReplicaLagMonitor.startIfReplicaAware(topology);
+        return topology;
+    }
+
+    public ContextManager getContextManager() {
+        return contextManager;
+    }
+
+    public ShardingSphereDatabase getDatabase() {
+        return contextManager.getMetaDataContexts().getMetaData().getDatabase(databaseName);
+    }
+
+    public ShardingRule getShardingRule() {
+        return getDatabase().getRuleMetaData().getSingleRule(ShardingRule.class);
+    }
+
+    /**
+     * Logical data source names of a sharded table in data node order, e.g. {@code ds_0, ds_1}.
+     */
+    public List<String> getDataSourceNames(String logicTable) {
+        return tableRoute(logicTable).dataSourceNames;
+    }
+
+    /**
+     * Live algorithm instance that routes the databases of a sharded table.
+     */
+    public ShardingAlgorithm getShardingAlgorithm(String logicTable) {
+        return tableRoute(logicTable).algorithm;
+    }
+
+    /**
+     * Logical data source a sharding value of the table is routed to, using the configured algorithm.
+     */
+    public String route(String logicTable, Comparable<?> shardingValue) {
+        long start = System.nanoTime();
+        String target = doRoute(logicTable, shardingValue);
+        ShardMetrics.recordRoute(logicTable, System.nanoTime() - start);
+        return target;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private String doRoute(String logicTable, Comparable<?> shardingValue) {
+        TableRoute route = tableRoute(logicTable);
+        Collection<String> targets;
+        if (route.algorithm instanceof StandardShardingAlgorithm standard) {
+            return standard.doSharding(route.dataSourceNames,
+                    new PreciseShardingValue(logicTable, route.shardingColumn, route.table.getDataSourceDataNode(), shardingValue));
+        } else if (route.algorithm instanceof ComplexKeysShardingAlgorithm complex) {
+            targets = complex.doSharding(route.dataSourceNames, new ComplexKeysShardingValue(logicTable,
+                    Collections.singletonMap(route.shardingColumn, Collections.singletonList(shardingValue)), Collections.emptyMap()));
+        } else {
+            throw new UnsupportedOperationException("Unsupported sharding algorithm for " + logicTable + ": " + route.algorithm.getClass().getName());
+        }
+        if (targets.size() != 1) {
+            throw new IllegalStateException("Sharding value " + shardingValue + " of " + logicTable + " routes to " + targets);
+        }
+        return targets.iterator().next();
+    }
+
+    /**
+     * Whether rows with equal sharding values of both tables always live on the same shard: both tables are routed
+     * by the same algorithm instance over the same data sources, e.g. {@code t_user} by {@code id} and
+     * {@code t_order} by {@code user_id}.
+     */
+    public boolean isColocated(String logicTable, String otherLogicTable) {
+        TableRoute route = tableRoute(logicTable);
+        TableRoute other = tableRoute(otherLogicTable);
+        return route.algorithm == other.algorithm && route.dataSourceNames.equals(other.dataSourceNames);
+    }
+
+    /**
+     * Physical data source writes of a logical data source go to, resolving read/write splitting groups.
+     */
+    public DataSource getWriteDataSource(String logicalDataSourceName) {
+        String physicalName = getDatabase().getRuleMetaData().findSingleRule(ReadwriteSplittingRule.class)
+                .flatMap(rule -> rule.findDataSourceGroupRule(logicalDataSourceName))
+                .map(ReadwriteSplittingDataSourceGroupRule::getWriteDataSource)
+                .orElse(logicalDataSourceName);
+        return getPhysicalDataSource(physicalName);
+    }
+
+    /**
+     * All physical data sources of the database, primaries and replicas, keyed by name.
+     */
+    public Map<String, DataSource> getPhysicalDataSources() {
+        Map<String, DataSource> result = new LinkedHashMap<>();
+        contextManager.getStorageUnits(databaseName).forEach((name, storageUnit) -> result.put(name, storageUnit.getDataSource()));
+        return result;
+    }
+
+    public DataSource getPhysicalDataSource(String physicalName) {
+        StorageUnit storageUnit = contextManager.getStorageUnits(databaseName).get(physicalName);
+        if (storageUnit == null) {
+            throw new IllegalArgumentException("Unknown data source: " + physicalName);
+        }
+        return storageUnit.getDataSource();
+    }
+
+    /**
+     * Write data sources of every shard of the table, keyed by logical data source name in data node order.
+     */
+    public Map<String, DataSource> getShardDataSources(String logicTable) {
+        Map<String, DataSource> result = new LinkedHashMap<>();
+        for (String name : getDataSourceNames(logicTable)) {
+            result.put(name, getWriteDataSource(name));
+        }
+        return result;
+    }
+
+    private TableRoute tableRoute(String logicTable) {
+        return tableRoutes.computeIfAbsent(logicTable, this::createTableRoute);
+    }
+
+    private TableRoute createTableRoute(String logicTable) {
+        ShardingRule rule = getShardingRule();
+        ShardingTable table = rule.getShardingTable(logicTable);
+        ShardingStrategyConfiguration strategy = rule.getDatabaseShardingStrategyConfiguration(table);
+        String column;
+        if (strategy instanceof StandardShardingStrategyConfiguration standard) {
+            column = standard.getShardingColumn() != null ? standard.getShardingColumn() : rule.getDefaultShardingColumn();
+        } else if (strategy instanceof ComplexShardingStrategyConfiguration complex) {
+            column = complex.getShardingColumns().split(",")[0].trim();
+        } else {
+            throw new UnsupportedOperationException("Unsupported database sharding strategy for " + logicTable + ": " + strategy);
+        }
+        ShardingAlgorithm algorithm = rule.getShardingAlgorithms().get(strategy.getShardingAlgorithmName());
+        return new TableRoute(table, column, algorithm, new ArrayList<>(table.getActualDataSourceNames()));
+    }
+
+    private record TableRoute(ShardingTable table, String shardingColumn, ShardingAlgorithm algorithm, List<String> dataSourceNames) {
+    }
+}
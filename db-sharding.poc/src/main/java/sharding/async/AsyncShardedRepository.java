@@ -0,0 +1,255 @@
+package sharding.async;
+
+import entity.Order;
+import entity.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.EntityTransaction;
+import sharding.ShardingTopology;
+import sharding.pool.ShardBulkhead;
+import sharding.pool.ShardBulkheads;
+import sharding.readwrite.ReplicaStats;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Non-blocking CRUD on {@link User} and {@link Order}, each call run on its own virtual thread with its own
+ * {@link EntityManager}, and the futures it returns composed with {@link #all} and {@link #both} so a request
+ * waits for its slowest read instead of the sum of them.
+ * <p>
+ * Every call is routed by its sharding value, {@code t_user.id} or {@code t_order.user_id}, and runs in the
+ * {@link ShardBulkhead} of that shard, limited to the connections of the shard's write pool, so the virtual
+ * threads beyond that wait at the bulkhead, cheaply, instead of on Hikari's connection timeout, and a slow shard
+ * only holds up the calls that go to it. A call the bulkhead rejects completes exceptionally with
+ * {@link ShardBulkhead.RejectedException}; no call throws, arguments that can't be routed fail the future as well.
+ * Orders are co-located with their user, so the order calls need the
+ * user id; a call without a sharding value would hold connections on every shard.
+ * <p>
+ * Every call runs in the {@link ReplicaStats.Session} of the thread that made it, so with read/write splitting a
+ * read issued after one of the caller's writes completed goes to the primary.
+ */
+public class AsyncShardedRepository implements AutoCloseable {
+
+    private static final long DEFAULT_MAX_WAIT_SECONDS = 30;
+
+    private final EntityManagerFactory emf;
+    private final ShardingTopology topology;
+    private final ShardBulkheads bulkheads;
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("async-repository-", 0).factory());
+
+    /**
+     * A repository whose calls wait at most {@value #DEFAULT_MAX_WAIT_SECONDS} s for a slot of their shard.
+     */
+    public AsyncShardedRepository(EntityManagerFactory emf, ShardingTopology topology) {
+        this(emf, topology, new ShardBulkheads(topology, DEFAULT_MAX_WAIT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    public AsyncShardedRepository(EntityManagerFactory emf, ShardingTopology topology, ShardBulkheads bulkheads) {
+        this.emf = emf;
+        this.topology = topology;
+        this.bulkheads = bulkheads;
+    }
+
+    public CompletableFuture<User> findUser(String id) {
+        return read("t_user", id, em -> em.find(User.class, id));
+    }
+
+    /**
+     * Users of the ids that exist, in the order of the ids, every id read concurrently.
+     */
+    public CompletableFuture<List<User>> findUsers(Collection<String> ids) {
+        List<CompletableFuture<User>> reads = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            reads.add(findUser(id));
+        }
+        return all(reads).thenApply(users -> {
+            List<User> result = new ArrayList<>(users.size());
+            for (User user : users) {
+                if (user != null) {
+                    result.add(user);
+                }
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Inserts or updates the user, which needs its id to be routed.
+     */
+    public CompletableFuture<User> saveUser(User user) {
+        if (user.getId() == null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("A user needs an id to be routed"));
+        }
+        return write("t_user", user.getId(), em -> em.merge(user));
+    }
+
+    /**
+     * @return whether the user existed
+     */
+    public CompletableFuture<Boolean> deleteUser(String id) {
+        return write("t_user", id, em -> em.createQuery("DELETE FROM User u WHERE u.id = :id")
+                .setParameter("id", id).executeUpdate() > 0);
+    }
+
+    public CompletableFuture<Order> findOrder(long userId, long orderId) {
+        return read("t_order", userId, em -> em.createQuery(
+                        "SELECT o FROM Order o WHERE o.user_id = :userId AND o.id = :id", Order.class)
+                .setParameter("userId", userId).setParameter("id", orderId)
+                .getResultStream().findFirst().orElse(null));
+    }
+
+    /**
+     * Orders of the user, newest first.
+     */
+    public CompletableFuture<List<Order>> findOrdersOfUser(long userId) {
+        return read("t_order", userId, em -> em.createQuery(
+                        "SELECT o FROM Order o WHERE o.user_id = :userId ORDER BY o.id DESC", Order.class)
+                .setParameter("userId", userId).getResultList());
+    }
+
+    /**
+     * Inserts the order, its id generated, or updates it; routed by its user.
+     */
+    public CompletableFuture<Order> saveOrder(Order order) {
+        if (order.getUser_id() == null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("An order needs its user id to be routed"));
+        }
+        return write("t_order", order.getUser_id(), em -> {
+            if (order.getId() == null) {
+                em.persist(order);
+                return order;
+            }
+            return em.merge(order);
+        });
+    }
+
+    /**
+     * @return whether the order existed
+     */
+    public CompletableFuture<Boolean> deleteOrder(long userId, long orderId) {
+        return write("t_order", userId, em -> em.createQuery("DELETE FROM Order o WHERE o.user_id = :userId AND o.id = :id")
+                .setParameter("userId", userId).setParameter("id", orderId).executeUpdate() > 0);
+    }
+
+    /**
+     * The user and its orders, read at the same time. Fails with a {@link NumberFormatException} for an id that is
+     * not a number, orders reference their user by its numeric id.
+     */
+    public CompletableFuture<UserWithOrders> findUserWithOrders(String userId) {
+        long numericId;
+        try {
+            numericId = Long.parseLong(userId);
+        } catch (NumberFormatException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return both(findUser(userId), findOrdersOfUser(numericId), UserWithOrders::new);
+    }
+
+    /**
+     * Runs the work with its own entity manager on the shard of the sharding value.
+     */
+    public <R> CompletableFuture<R> read(String logicTable, Comparable<?> shardingValue, Function<EntityManager, R> work) {
+        return submit(logicTable, shardingValue, work, false);
+    }
+
+    /**
+     * Runs the work in a transaction of its own entity manager on the shard of the sharding value.
+     */
+    public <R> CompletableFuture<R> write(String logicTable, Comparable<?> shardingValue, Function<EntityManager, R> work) {
+        return submit(logicTable, shardingValue, work, true);
+    }
+
+    /**
+     * Completes with the results in the order of the futures once all completed, or exceptionally as soon as
+     * one fails.
+     */
+    public static <T> CompletableFuture<List<T>> all(List<CompletableFuture<T>> futures) {
+        CompletableFuture<List<T>> result = CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                .thenApply(ignored -> {
+                    List<T> values = new ArrayList<>(futures.size());
+                    for (CompletableFuture<T> future : futures) {
+                        values.add(future.join());
+                    }
+                    return values;
+                });
+        for (CompletableFuture<T> future : futures) {
+            future.whenComplete((value, failure) -> {
+                if (failure != null) {
+                    result.completeExceptionally(failure);
+                }
+            });
+        }
+        return result;
+    }
+
+    /**
+     * Combines two independent results once both completed.
+     */
+    public static <A, B, R> CompletableFuture<R> both(CompletableFuture<A> first, CompletableFuture<B> second,
+                                                      BiFunction<A, B, R> combiner) {
+        return first.thenCombine(second, combiner);
+    }
+
+    @Override
+    public void close() {
+        executor.close();
+    }
+
+    private <R> CompletableFuture<R> submit(String logicTable, Comparable<?> shardingValue, Function<EntityManager, R> work,
+                                            boolean transactional) {
+        ShardBulkhead bulkhead;
+        try {
+            bulkhead = bulkheads.bulkhead(topology.route(logicTable, shardingValue));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        // The caller's reads after its own writes go to the primary, wherever they ran
+        ReplicaStats.Session session = ReplicaStats.currentSession();
+        return CompletableFuture.supplyAsync(() -> {
+            ReplicaStats.Session previous = ReplicaStats.bind(session);
+            try {
+                return bulkhead.call(() -> run(work, transactional));
+            } finally {
+                ReplicaStats.bind(previous);
+            }
+        }, executor);
+    }
+
+    private <R> R run(Function<EntityManager, R> work, boolean transactional) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            if (!transactional) {
+                return work.apply(em);
+            }
+            EntityTransaction transaction = em.getTransaction();
+            transaction.begin();
+            try {
+                R result = work.apply(em);
+                transaction.commit();
+                return result;
+            } catch (RuntimeException e) {
+                if (transaction.isActive()) {
+                    transaction.rollback();
+                }
+                throw e;
+            }
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * @param user {@code null} if the user does not exist
+     */
+    public record UserWithOrders(User user, List<Order> orders) {
+    }
+}
@@ -0,0 +1,91 @@
+package sharding.batch;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Batch and flush sizes of every shard, each tuned on its own by an {@link AimdSize}.
+ * <p>
+ * The batch size is the number of rows per statement, tuned to the latency of executing one; the flush size is
+ * the number of rows per commit, tuned to the latency of writing and committing all of them. A shard on a
+ * local disk ends up with other sizes than one across availability zones, and both follow the load as it
+ * changes. {@link #fixed} keeps the same sizes everywhere.
+ */
+public final class AdaptiveBatchController {
+
+    private static final double DECREASE_FACTOR = 0.7;
+
+    private final Supplier<AimdSize> batchSizes;
+    private final Supplier<AimdSize> flushSizes;
+    private final int maxBatchSize;
+    private final Map<String, AimdSize> batch = new ConcurrentHashMap<>();
+    private final Map<String, AimdSize> flush = new ConcurrentHashMap<>();
+
+    /**
+     * @param minBatch           fewest rows per statement
+     * @param maxBatch           most rows per statement
+     * @param targetBatchLatency longest a statement should take
+     * @param minFlush           fewest rows per commit
+     * @param maxFlush           most rows per commit
+     * @param targetFlushLatency longest writing and committing the rows of one commit should take
+     */
+    public AdaptiveBatchController(int minBatch, int maxBatch, long targetBatchLatency, int minFlush, int maxFlush,
+                                   long targetFlushLatency, TimeUnit unit) {
+        long batchNanos = unit.toNanos(targetBatchLatency);
+        long flushNanos = unit.toNanos(targetFlushLatency);
+        int batchStep = Math.max(1, (maxBatch - minBatch) / 32);
+        int flushStep = Math.max(1, (maxFlush - minFlush) / 32);
+        this.batchSizes = () -> new AimdSize(minBatch, maxBatch, minBatch, batchStep, batchNanos, DECREASE_FACTOR);
+        this.flushSizes = () -> new AimdSize(minFlush, maxFlush, minFlush, flushStep, flushNanos, DECREASE_FACTOR);
+        this.maxBatchSize = maxBatch;
+    }
+
+    private AdaptiveBatchController(int batchSize, int flushSize) {
+        this.batchSizes = () -> AimdSize.fixed(batchSize);
+        this.flushSizes = () -> AimdSize.fixed(flushSize);
+        this.maxBatchSize = batchSize;
+    }
+
+    /**
+     * The same batch and flush size for every shard.
+     */
+    public static AdaptiveBatchController fixed(int batchSize, int flushSize) {
+        return new AdaptiveBatchController(batchSize, flushSize);
+    }
+
+    /**
+     * Most rows per statement on any shard.
+     */
+    public int maxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Rows per statement on the shard.
+     */
+    public AimdSize batchSize(String shard) {
+        return batch.computeIfAbsent(shard, key -> batchSizes.get());
+    }
+
+    /**
+     * Rows per commit on the shard.
+     */
+    public AimdSize flushSize(String shard) {
+        return flush.computeIfAbsent(shard, key -> flushSizes.get());
+    }
+
+    /**
+     * Current batch and flush size per shard.
+     */
+    public Map<String, Sizes> sizes() {
+        Map<String, Sizes> result = new TreeMap<>();
+        batch.forEach((shard, size) -> result.put(shard, new Sizes(size.get(), flushSize(shard).get())));
+        return result;
+    }
+
+    public record Sizes(int batchSize, int flushSize) {
+    }
+}
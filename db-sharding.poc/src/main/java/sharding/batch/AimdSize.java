@@ -0,0 +1,91 @@
+package sharding.batch;
+
+/**
+ * A size tuned by additive increase and multiplicative decrease from the latency of the work done at that size.
+ * <p>
+ * A sample slower than the target latency, or a failed one, shrinks the size by {@code decreaseFactor}. A full
+ * sample within the target grows it by {@code step} as long as the throughput keeps up with its moving average,
+ * and steps it back once a larger size makes the throughput drop, so the size settles where bigger units stop
+ * paying off or the latency target is reached, whichever comes first. Partial samples, units cut short by a time
+ * flush, can only shrink the size: they say nothing about whether a larger one would fill up.
+ * <p>
+ * Sizes are kept on multiples of {@code step} above {@code min}, so only a few distinct sizes are ever used.
+ * Samples are expected from one thread, {@link #get()} may be called from any.
+ */
+public final class AimdSize {
+
+    private static final double THROUGHPUT_SMOOTHING = 0.2;
+    private static final double THROUGHPUT_TOLERANCE = 0.05;
+
+    private final int min;
+    private final int max;
+    private final int step;
+    private final long targetLatencyNanos;
+    private final double decreaseFactor;
+    private volatile int size;
+    private double averageThroughput;
+
+    /**
+     * @param initial            size before the first sample, clamped to the bounds
+     * @param step               additive increase, and the granularity of the size
+     * @param targetLatencyNanos latency above which a sample shrinks the size
+     * @param decreaseFactor     factor in {@code (0, 1)} the size is multiplied with on a slow or failed sample
+     */
+    public AimdSize(int min, int max, int initial, int step, long targetLatencyNanos, double decreaseFactor) {
+        if (min <= 0 || max < min || step <= 0) {
+            throw new IllegalArgumentException("Invalid bounds [" + min + ", " + max + "] or step " + step);
+        }
+        if (decreaseFactor <= 0 || decreaseFactor >= 1) {
+            throw new IllegalArgumentException("Decrease factor must be in (0, 1): " + decreaseFactor);
+        }
+        this.min = min;
+        this.max = max;
+        this.step = step;
+        this.targetLatencyNanos = targetLatencyNanos;
+        this.decreaseFactor = decreaseFactor;
+        this.size = align(initial);
+    }
+
+    /**
+     * A size that never changes.
+     */
+    public static AimdSize fixed(int size) {
+        return new AimdSize(size, size, size, 1, Long.MAX_VALUE, 0.5);
+    }
+
+    public int get() {
+        return size;
+    }
+
+    /**
+     * Adjusts the size to a unit of {@code units} that took {@code nanos}.
+     */
+    public void onSample(int units, long nanos, boolean success) {
+        int current = size;
+        if (!success || nanos > targetLatencyNanos) {
+            size = align((int) (current * decreaseFactor));
+            averageThroughput = 0;
+            return;
+        }
+        if (units < current) {
+            return;
+        }
+        double throughput = (double) units / Math.max(1, nanos);
+        if (averageThroughput == 0) {
+            averageThroughput = throughput;
+        }
+        if (throughput >= averageThroughput * (1 - THROUGHPUT_TOLERANCE)) {
+            size = align(current + step);
+            averageThroughput += THROUGHPUT_SMOOTHING * (throughput - averageThroughput);
+        } else {
+            // Measured again from the smaller size, so one drop steps back once instead of sliding down
+            size = align(current - step);
+            averageThroughput = throughput;
+        }
+    }
+
+    private int align(int value) {
+        int aligned = min + Math.max(0, value - min) / step * step;
+        return Math.min(max, aligned);
+    }
+}
@@ -0,0 +1,84 @@
+package sharding.batch;
+
+import entity.Order;
+import entity.User;
+import sharding.id.ShardedIdGenerator;
+import sharding.id.ShardedIdLayout;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Describes how rows of type {@code T} are inserted into a sharded table: the sharding value and the
+ * parameters of one {@code (?, ?, ...)} group of a multi-row {@code INSERT}.
+ */
+public record BatchTable<T>(String logicTable, List<String> columns, Function<T, Comparable<?>> shardingValue,
+                            RowBinder<T> binder) {
+
+    public static final BatchTable<User> USERS = new BatchTable<>("t_user", List.of("id", "username", "email"), User::getId,
+            (statement, index, user) -> {
+                statement.setString(index, user.getId());
+                statement.setString(index + 1, user.getUsername());
+                statement.setString(index + 2, user.getEmail());
+            });
+
+    /**
+     * Bind parameters a single statement can carry, PostgreSQL's wire protocol counts them in 16 bits.
+     */
+    public static final int MAX_PARAMETERS = 65535;
+
+    // Sharded by user_id, co-located with the user. An order without id gets one from the generator of the
+    // entity's @ShardedId, on its single shard, and keeps it.
+    public static final BatchTable<Order> ORDERS = new BatchTable<>("t_order", List.of("id", "user_id", "total_amount"), Order::getUser_id,
+            (statement, index, order) -> {
+                if (order.getId() == null) {
+                    order.setId(OrderIds.GENERATOR.nextId(0));
+                }
+                statement.setObject(index, order.getId(), Types.BIGINT);
+                statement.setObject(index + 1, order.getUser_id(), Types.BIGINT);
+                statement.setObject(index + 2, order.getTotal_amount(), Types.DOUBLE);
+            });
+
+    /**
+     * Most rows one multi-row {@code INSERT} of the table can take.
+     */
+    public int maxRowsPerStatement() {
+        return MAX_PARAMETERS / columns.size();
+    }
+
+    /**
+     * {@code INSERT INTO table (columns) VALUES (?, ?), (?, ?), ...} with {@code rows} value groups.
+     */
+    public String insertSql(int rows) {
+        String group = "(" + String.join(", ", Collections.nCopies(columns.size(), "?")) + ")";
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(logicTable)
+                .append(" (").append(String.join(", ", columns)).append(") VALUES ");
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(group);
+        }
+        return sql.toString();
+    }
+
+    // Holder, so the generator is only created once ORDERS binds an order without id
+    private static final class OrderIds {
+
+        private static final ShardedIdGenerator GENERATOR = ShardedIdGenerator.of(ShardedIdLayout.DEFAULT,
+                ShardedIdGenerator.configuredWorkerId(ShardedIdLayout.DEFAULT), 64);
+    }
+
+    @FunctionalInterface
+    public interface RowBinder<T> {
+
+        /**
+         * Binds the columns of one row starting at parameter {@code index}.
+         */
+        void bind(PreparedStatement statement, int index, T row) throws SQLException;
+    }
+}
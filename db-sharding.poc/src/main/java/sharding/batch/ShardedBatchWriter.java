@@ -0,0 +1,317 @@
+package sharding.batch;
+
+import sharding.ShardingTopology;
+import sharding.metrics.ShardBatchEvent;
+import sharding.metrics.ShardMetrics;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Asynchronous ingest path for a sharded table. Rows are routed with the live sharding rule, queued in a
+ * bounded queue per shard and written by one thread per shard straight to the shard's write data source,
+ * as multi-row {@code INSERT}s flushed by size or time. The rows per statement and per commit of every shard
+ * come from an {@link AdaptiveBatchController}, fed with the latency of each statement and commit.
+ * <p>
+ * {@link #write} blocks while the shard's queue is full, so a slow shard slows its producers down instead of
+ * piling rows up in memory. A failed batch is rolled back and rethrown by the next {@link #write},
+ * {@link #flush} or {@link #close}.
+ */
+public class ShardedBatchWriter<T> implements AutoCloseable {
+
+    private static final long POLL_INTERVAL_MS = 100;
+
+    private final ShardingTopology topology;
+    private final BatchTable<T> table;
+    private final AdaptiveBatchController controller;
+    private final long flushIntervalNanos;
+    private final Map<String, ShardWorker> workers = new LinkedHashMap<>();
+    private volatile Throwable failure;
+    private volatile boolean closed;
+
+    /**
+     * @param batchSize       rows per multi-row {@code INSERT} and per commit
+     * @param flushIntervalMs longest time a queued row waits for its batch to fill up
+     * @param queueCapacity   rows buffered per shard before {@link #write} blocks
+     */
+    public ShardedBatchWriter(ShardingTopology topology, BatchTable<T> table, int batchSize, long flushIntervalMs, int queueCapacity) {
+        this(topology, table, AdaptiveBatchController.fixed(batchSize, batchSize), flushIntervalMs, queueCapacity);
+    }
+
+    /**
+     * @param controller      rows per multi-row {@code INSERT} and per commit of each shard
+     * @param flushIntervalMs longest time a queued row waits for its commit to fill up
+     * @param queueCapacity   rows buffered per shard before {@link #write} blocks
+     * @throws IllegalArgumentException if the largest batch has more bind parameters than a statement can carry
+     */
+    public ShardedBatchWriter(ShardingTopology topology, BatchTable<T> table, AdaptiveBatchController controller,
+                              long flushIntervalMs, int queueCapacity) {
+        if (controller.maxBatchSize() > table.maxRowsPerStatement()) {
+            throw new IllegalArgumentException("Batches of up to " + controller.maxBatchSize() + " rows of " + table.logicTable()
+                    + " exceed the " + BatchTable.MAX_PARAMETERS + " bind parameters of a statement, at most "
+                    + table.maxRowsPerStatement() + " rows fit");
+        }
+        this.topology = topology;
+        this.table = table;
+        this.controller = controller;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        for (Map.Entry<String, DataSource> entry : topology.getShardDataSources(table.logicTable()).entrySet()) {
+            ShardWorker worker = new ShardWorker(entry.getKey(), entry.getValue(), queueCapacity);
+            workers.put(entry.getKey(), worker);
+            worker.thread.start();
+        }
+    }
+
+    /**
+     * Queues a row for its shard, blocking while the shard's queue is full.
+     */
+    public void write(T row) throws InterruptedException {
+        checkState();
+        enqueue(worker(row), row);
+    }
+
+    /**
+     * Queues a row for its shard, waiting at most {@code timeout} for queue space.
+     *
+     * @return {@code false} if the shard's queue stayed full
+     */
+    public boolean offer(T row, long timeout, TimeUnit unit) throws InterruptedException {
+        checkState();
+        return worker(row).queue.offer(row, timeout, unit);
+    }
+
+    /**
+     * Writes and commits everything queued so far.
+     */
+    public void flush() throws InterruptedException {
+        List<CompletableFuture<Void>> markers = new ArrayList<>();
+        for (ShardWorker worker : workers.values()) {
+            CompletableFuture<Void> marker = new CompletableFuture<>();
+            enqueue(worker, marker);
+            markers.add(marker);
+        }
+        for (CompletableFuture<Void> marker : markers) {
+            while (true) {
+                try {
+                    marker.get(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                    break;
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Sharded batch write failed", e.getCause());
+                } catch (TimeoutException e) {
+                    checkFailure();
+                }
+            }
+        }
+        checkFailure();
+    }
+
+    /**
+     * Rows committed per shard so far.
+     */
+    public Map<String, Long> getWrittenRows() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        workers.forEach((shard, worker) -> result.put(shard, worker.written.get()));
+        return result;
+    }
+
+    /**
+     * Flushes and stops the shard threads.
+     *
+     * @throws IllegalStateException if a batch failed, or if interrupted, with the interrupt flag set again
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        try {
+            flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted flushing " + table.logicTable(), e);
+        } finally {
+            closed = true;
+            for (ShardWorker worker : workers.values()) {
+                worker.thread.interrupt();
+            }
+            boolean interrupted = false;
+            for (ShardWorker worker : workers.values()) {
+                while (true) {
+                    try {
+                        worker.thread.join();
+                        break;
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // A dead worker never drains its queue, so waiting producers re-check for failures periodically
+    private void enqueue(ShardWorker worker, Object item) throws InterruptedException {
+        while (!worker.queue.offer(item, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+            checkFailure();
+        }
+    }
+
+    private ShardWorker worker(T row) {
+        String shard = topology.route(table.logicTable(), table.shardingValue().apply(row));
+        ShardWorker worker = workers.get(shard);
+        if (worker == null) {
+            throw new IllegalStateException("No writer for shard " + shard);
+        }
+        return worker;
+    }
+
+    private void checkFailure() {
+        if (failure != null) {
+            throw new IllegalStateException("Sharded batch write failed", failure);
+        }
+    }
+
+    private void checkState() {
+        checkFailure();
+        if (closed) {
+            throw new IllegalStateException("Writer is closed");
+        }
+    }
+
+    private final class ShardWorker implements Runnable {
+
+        private final String shard;
+        private final DataSource dataSource;
+        private final BlockingQueue<Object> queue;
+        private final Thread thread;
+        private final AtomicLong written = new AtomicLong();
+        private final AimdSize batchSize;
+        private final AimdSize flushSize;
+        // Statements for every batch size used and every power of two below, a partial batch is split into those sizes
+        private final Map<Integer, PreparedStatement> statements = new HashMap<>();
+        private final List<T> buffer;
+
+        private ShardWorker(String shard, DataSource dataSource, int queueCapacity) {
+            this.shard = shard;
+            this.dataSource = dataSource;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.batchSize = controller.batchSize(shard);
+            this.flushSize = controller.flushSize(shard);
+            this.buffer = new ArrayList<>(flushSize.get());
+            this.thread = new Thread(this, "sharded-batch-writer-" + table.logicTable() + "-" + shard);
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void run() {
+            try (Connection connection = dataSource.getConnection()) {
+                connection.setAutoCommit(false);
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (!closed || !queue.isEmpty()) {
+                    Object item = queue.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    if (item instanceof CompletableFuture<?> marker) {
+                        flushBuffer(connection);
+                        ((CompletableFuture<Void>) marker).complete(null);
+                    } else if (item != null) {
+                        buffer.add((T) item);
+                        if (buffer.size() >= flushSize.get()) {
+                            flushBuffer(connection);
+                            deadline = System.nanoTime() + flushIntervalNanos;
+                        }
+                    }
+                    if (System.nanoTime() >= deadline) {
+                        flushBuffer(connection);
+                        deadline = System.nanoTime() + flushIntervalNanos;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Throwable e) {
+                failure = e;
+            } finally {
+                for (PreparedStatement statement : statements.values()) {
+                    try {
+                        statement.close();
+                    } catch (SQLException ignored) {
+                    }
+                }
+                failPendingMarkers();
+            }
+        }
+
+        private void flushBuffer(Connection connection) throws SQLException {
+            if (buffer.isEmpty()) {
+                return;
+            }
+            ShardBatchEvent event = new ShardBatchEvent(shard, table.logicTable());
+            event.begin();
+            long flushStart = System.nanoTime();
+            try {
+                int offset = 0;
+                while (offset < buffer.size()) {
+                    int rows = statementSize(buffer.size() - offset);
+                    PreparedStatement statement = statements.get(rows);
+                    if (statement == null) {
+                        statement = connection.prepareStatement(table.insertSql(rows));
+                        statements.put(rows, statement);
+                    }
+                    int columns = table.columns().size();
+                    for (int i = 0; i < rows; i++) {
+                        table.binder().bind(statement, i * columns + 1, buffer.get(offset + i));
+                    }
+                    long start = System.nanoTime();
+                    try {
+                        statement.executeUpdate();
+                    } catch (SQLException e) {
+                        batchSize.onSample(rows, System.nanoTime() - start, false);
+                        throw e;
+                    }
+                    batchSize.onSample(rows, System.nanoTime() - start, true);
+                    offset += rows;
+                }
+                connection.commit();
+                flushSize.onSample(buffer.size(), System.nanoTime() - flushStart, true);
+                written.addAndGet(buffer.size());
+                ShardMetrics.recordBatch(shard, buffer.size());
+                event.commit(buffer.size());
+            } catch (SQLException e) {
+                flushSize.onSample(buffer.size(), System.nanoTime() - flushStart, false);
+                connection.rollback();
+                throw new SQLException("Batch of " + buffer.size() + " rows to " + shard + " failed", e);
+            } finally {
+                buffer.clear();
+            }
+        }
+
+        private int statementSize(int remaining) {
+            int size = batchSize.get();
+            return remaining >= size ? size : Integer.highestOneBit(remaining);
+        }
+
+        private void failPendingMarkers() {
+            Throwable cause = failure != null ? failure : new IllegalStateException("Writer for " + shard + " stopped");
+            for (Object item : queue) {
+                if (item instanceof CompletableFuture<?> marker) {
+                    marker.completeExceptionally(cause);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package sharding.bulk;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import sharding.ShardingTopology;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Bulk load through PostgreSQL binary {@code COPY}, bypassing the ShardingSphere parser and rewriter.
+ * <p>
+ * Producers encode the rows of their {@link RowSource} straight into per-shard binary COPY chunks, each chunk
+ * goes through a bounded queue to the one streaming writer of its shard. All shards load in parallel, each in
+ * its own transaction, and commit only once every shard has accepted its whole stream. A failure before that
+ * point rolls back every shard; a failure during the final commits can leave some shards committed.
+ */
+public class CopyBulkLoader {
+
+    private static final byte[] HEADER = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0,
+            0, 0, 0, 0, 0, 0, 0, 0};
+    private static final byte[] TRAILER = {(byte) 0xFF, (byte) 0xFF};
+    private static final int CHUNK_SIZE = 256 * 1024;
+    private static final int CHUNKS_IN_FLIGHT = 8;
+    private static final long POLL_INTERVAL_MS = 100;
+    private static final CopyRow.CopyBuffer END = new CopyRow.CopyBuffer(0);
+    private static final CopyRow.CopyBuffer ABORT = new CopyRow.CopyBuffer(0);
+
+    private final CopyTable table;
+    private final Map<String, DataSource> shards;
+    private final Function<Comparable<?>, String> router;
+    private final ConcurrentLinkedQueue<CopyRow.CopyBuffer> freeBuffers = new ConcurrentLinkedQueue<>();
+    private volatile Throwable failure;
+
+    /**
+     * @param shards data source of each COPY stream, keyed by the names the router returns
+     * @param router stream a sharding value is loaded through
+     */
+    public CopyBulkLoader(CopyTable table, Map<String, DataSource> shards, Function<Comparable<?>, String> router) {
+        this.table = table;
+        this.shards = shards;
+        this.router = router;
+    }
+
+    /**
+     * Loads into the physical shards of a ShardingSphere table, partitioned by its configured sharding algorithm.
+     */
+    public static CopyBulkLoader forShardingSphere(ShardingTopology topology, CopyTable table) {
+        return new CopyBulkLoader(table, topology.getShardDataSources(table.name()), value -> topology.route(table.name(), value));
+    }
+
+    /**
+     * Loads a Citus distributed table through its coordinator. Citus routes every COPY row to its worker shard
+     * itself, the rows are only spread over {@code streams} parallel COPY streams by sharding value.
+     */
+    public static CopyBulkLoader forCitus(DataSource coordinator, CopyTable table, int streams) {
+        Map<String, DataSource> shards = new LinkedHashMap<>();
+        for (int i = 0; i < streams; i++) {
+            shards.put("stream_" + i, coordinator);
+        }
+        return new CopyBulkLoader(table, shards, value -> "stream_" + Math.floorMod(value.hashCode(), streams));
+    }
+
+    /**
+     * Loads all rows of the sources, each source is produced on its own thread.
+     */
+    public LoadResult load(RowSource... sources) throws InterruptedException {
+        long start = System.currentTimeMillis();
+        failure = null;
+        Map<String, ShardStream> streams = new LinkedHashMap<>();
+        shards.forEach((name, dataSource) -> streams.put(name, new ShardStream(dataSource)));
+        CompletableFuture<Boolean> commitDecision = new CompletableFuture<>();
+
+        ExecutorService executor = Executors.newFixedThreadPool(streams.size() + sources.length);
+        try {
+            List<Future<Long>> writers = new ArrayList<>();
+            for (ShardStream stream : streams.values()) {
+                writers.add(executor.submit(() -> writeStream(stream, commitDecision)));
+            }
+            List<Future<?>> producers = new ArrayList<>();
+            for (RowSource source : sources) {
+                producers.add(executor.submit(() -> {
+                    produce(source, streams);
+                    return null;
+                }));
+            }
+
+            for (Future<?> producer : producers) {
+                await(producer);
+            }
+            for (ShardStream stream : streams.values()) {
+                enqueue(stream, failure == null ? END : ABORT, false);
+            }
+            for (ShardStream stream : streams.values()) {
+                await(stream.copied);
+            }
+            commitDecision.complete(failure == null);
+            for (Future<Long> writer : writers) {
+                await(writer);
+            }
+        } finally {
+            commitDecision.complete(false);
+            executor.shutdownNow();
+        }
+        if (failure != null) {
+            throw new IllegalStateException("Bulk load of " + table.name() + " failed", failure);
+        }
+
+        Map<String, Long> rowsPerShard = new LinkedHashMap<>();
+        streams.forEach((name, stream) -> rowsPerShard.put(name, stream.rows.sum()));
+        long rows = rowsPerShard.values().stream().mapToLong(Long::longValue).sum();
+        return new LoadResult(rows, rowsPerShard, System.currentTimeMillis() - start);
+    }
+
+    private void produce(RowSource source, Map<String, ShardStream> streams) throws Exception {
+        CopyRow row = new CopyRow(table);
+        Map<String, CopyRow.CopyBuffer> current = new HashMap<>();
+        while (failure == null && source.next(row)) {
+            String shard = router.apply(row.shardingValue());
+            ShardStream stream = streams.get(shard);
+            if (stream == null) {
+                throw new IllegalStateException("No COPY stream for shard " + shard);
+            }
+            CopyRow.CopyBuffer buffer = current.get(shard);
+            if (buffer == null) {
+                buffer = newBuffer();
+                current.put(shard, buffer);
+            }
+            row.encode(buffer);
+            stream.rows.increment();
+            if (buffer.length() >= CHUNK_SIZE) {
+                enqueue(stream, buffer, true);
+                current.remove(shard);
+            }
+        }
+        for (Map.Entry<String, CopyRow.CopyBuffer> entry : current.entrySet()) {
+            if (entry.getValue().length() > 0) {
+                enqueue(streams.get(entry.getKey()), entry.getValue(), true);
+            }
+        }
+    }
+
+    private long writeStream(ShardStream stream, CompletableFuture<Boolean> commitDecision) throws Exception {
+        try (Connection connection = stream.dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(table.copySql());
+            try {
+                copyIn.writeToCopy(HEADER, 0, HEADER.length);
+                while (true) {
+                    CopyRow.CopyBuffer buffer = stream.queue.take();
+                    if (buffer == END) {
+                        break;
+                    }
+                    if (buffer == ABORT) {
+                        throw new CancellationException("Bulk load aborted");
+                    }
+                    copyIn.writeToCopy(buffer.bytes(), 0, buffer.length());
+                    buffer.reset();
+                    freeBuffers.offer(buffer);
+                }
+                copyIn.writeToCopy(TRAILER, 0, TRAILER.length);
+                stream.copied.complete(copyIn.endCopy());
+            } catch (Throwable e) {
+                if (copyIn.isActive()) {
+                    copyIn.cancelCopy();
+                }
+                connection.rollback();
+                throw e;
+            }
+
+            if (commitDecision.get()) {
+                connection.commit();
+            } else {
+                connection.rollback();
+            }
+            return stream.copied.get();
+        } catch (Throwable e) {
+            if (failure == null && !(e instanceof CancellationException)) {
+                failure = e;
+            }
+            stream.copied.complete(-1L);
+            throw e;
+        }
+    }
+
+    // A failed writer stops draining its queue, so waiting producers re-check for failures periodically
+    private void enqueue(ShardStream stream, CopyRow.CopyBuffer buffer, boolean abortOnFailure) throws InterruptedException {
+        while (!stream.queue.offer(buffer, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+            if (stream.copied.isDone() || abortOnFailure && failure != null) {
+                return;
+            }
+        }
+    }
+
+    private CopyRow.CopyBuffer newBuffer() {
+        CopyRow.CopyBuffer buffer = freeBuffers.poll();
+        return buffer != null ? buffer : new CopyRow.CopyBuffer(CHUNK_SIZE + CHUNK_SIZE / 4);
+    }
+
+    private void await(Future<?> future) throws InterruptedException {
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            if (failure == null && !(e.getCause() instanceof CancellationException)) {
+                failure = e.getCause();
+            }
+        }
+    }
+
+    private final class ShardStream {
+
+        private final DataSource dataSource;
+        private final BlockingQueue<CopyRow.CopyBuffer> queue = new ArrayBlockingQueue<>(CHUNKS_IN_FLIGHT);
+        private final CompletableFuture<Long> copied = new CompletableFuture<>();
+        private final LongAdder rows = new LongAdder();
+
+        private ShardStream(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+    }
+
+    public record LoadResult(long rows, Map<String, Long> rowsPerShard, long elapsedMillis) {
+
+        public double rowsPerSecond() {
+            return elapsedMillis == 0 ? rows : rows * 1000.0 / elapsedMillis;
+        }
+    }
+}
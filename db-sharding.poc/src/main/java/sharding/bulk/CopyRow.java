@@ -0,0 +1,182 @@
+package sharding.bulk;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reusable row a {@link RowSource} fills in place. Primitive columns are kept unboxed; the row is
+ * encoded into the binary COPY stream of its shard right after it has been filled.
+ */
+public final class CopyRow {
+
+    private final CopyTable table;
+    private final Object[] references;
+    private final long[] longs;
+    private final double[] doubles;
+    private final boolean[] nulls;
+
+    CopyRow(CopyTable table) {
+        int columns = table.columns().size();
+        this.table = table;
+        this.references = new Object[columns];
+        this.longs = new long[columns];
+        this.doubles = new double[columns];
+        this.nulls = new boolean[columns];
+    }
+
+    public CopyRow setText(int column, String value) {
+        references[column] = value;
+        nulls[column] = value == null;
+        return this;
+    }
+
+    public CopyRow setLong(int column, long value) {
+        longs[column] = value;
+        nulls[column] = false;
+        return this;
+    }
+
+    public CopyRow setDouble(int column, double value) {
+        doubles[column] = value;
+        nulls[column] = false;
+        return this;
+    }
+
+    public CopyRow setBytes(int column, byte[] value) {
+        references[column] = value;
+        nulls[column] = value == null;
+        return this;
+    }
+
+    public CopyRow setNull(int column) {
+        references[column] = null;
+        nulls[column] = true;
+        return this;
+    }
+
+    Comparable<?> shardingValue() {
+        int column = table.shardingColumn();
+        if (nulls[column]) {
+            throw new IllegalStateException("Sharding column " + table.columns().get(column) + " must not be null");
+        }
+        switch (table.types().get(column)) {
+            case INT8:
+                return longs[column];
+            case TEXT:
+                return (String) references[column];
+            default:
+                throw new IllegalStateException("Unsupported sharding column type " + table.types().get(column));
+        }
+    }
+
+    /**
+     * Appends the row as one binary COPY tuple.
+     */
+    void encode(CopyBuffer buffer) {
+        buffer.writeShort(references.length);
+        for (int i = 0; i < references.length; i++) {
+            if (nulls[i]) {
+                buffer.writeInt(-1);
+                continue;
+            }
+            switch (table.types().get(i)) {
+                case INT8:
+                    buffer.writeInt(8);
+                    buffer.writeLong(longs[i]);
+                    break;
+                case FLOAT8:
+                    buffer.writeInt(8);
+                    buffer.writeLong(Double.doubleToRawLongBits(doubles[i]));
+                    break;
+                case TEXT:
+                    buffer.writeText((String) references[i]);
+                    break;
+                case BYTEA:
+                    byte[] bytes = (byte[]) references[i];
+                    buffer.writeInt(bytes.length);
+                    buffer.write(bytes, 0, bytes.length);
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown column type " + table.types().get(i));
+            }
+        }
+    }
+
+    /**
+     * Growable byte buffer holding a chunk of a shard's binary COPY stream.
+     */
+    static final class CopyBuffer {
+
+        private byte[] bytes;
+        private int length;
+
+        CopyBuffer(int capacity) {
+            this.bytes = new byte[capacity];
+        }
+
+        byte[] bytes() {
+            return bytes;
+        }
+
+        int length() {
+            return length;
+        }
+
+        void reset() {
+            length = 0;
+        }
+
+        void writeShort(int value) {
+            ensureCapacity(2);
+            bytes[length++] = (byte) (value >>> 8);
+            bytes[length++] = (byte) value;
+        }
+
+        void writeInt(int value) {
+            ensureCapacity(4);
+            bytes[length++] = (byte) (value >>> 24);
+            bytes[length++] = (byte) (value >>> 16);
+            bytes[length++] = (byte) (value >>> 8);
+            bytes[length++] = (byte) value;
+        }
+
+        void writeLong(long value) {
+            writeInt((int) (value >>> 32));
+            writeInt((int) value);
+        }
+
+        void write(byte[] source, int offset, int count) {
+            ensureCapacity(count);
+            System.arraycopy(source, offset, bytes, length, count);
+            length += count;
+        }
+
+        /**
+         * Length-prefixed UTF-8, ASCII strings are copied char by char without an intermediate byte array.
+         */
+        void writeText(String value) {
+            int chars = value.length();
+            ensureCapacity(4 + chars);
+            int start = length + 4;
+            for (int i = 0; i < chars; i++) {
+                char c = value.charAt(i);
+                if (c >= 0x80) {
+                    byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+                    writeInt(utf8.length);
+                    write(utf8, 0, utf8.length);
+                    return;
+                }
+                bytes[start + i] = (byte) c;
+            }
+            writeInt(chars);
+            length += chars;
+        }
+
+        private void ensureCapacity(int additional) {
+            if (length + additional > bytes.length) {
+                byte[] grown = new byte[Math.max(bytes.length * 2, length + additional)];
+                System.arraycopy(bytes, 0, grown, 0, length);
+                bytes = grown;
+            }
+        }
+    }
+}
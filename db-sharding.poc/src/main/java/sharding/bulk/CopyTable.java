@@ -0,0 +1,34 @@
+package sharding.bulk;
+
+import java.util.List;
+
+/**
+ * Column layout of a table loaded with binary {@code COPY}. The column types must match the table,
+ * binary COPY does not cast.
+ */
+public record CopyTable(String name, List<String> columns, List<ColumnType> types, int shardingColumn) {
+
+    public enum ColumnType {
+        TEXT, INT8, FLOAT8, BYTEA
+    }
+
+    public static final CopyTable USERS = new CopyTable("t_user", List.of("id", "username", "email"),
+            List.of(ColumnType.TEXT, ColumnType.TEXT, ColumnType.TEXT), 0);
+
+    public static final CopyTable ORDERS = new CopyTable("t_order", List.of("id", "user_id", "total_amount"),
+            List.of(ColumnType.INT8, ColumnType.INT8, ColumnType.FLOAT8), 1);
+
+    /** Citus time-series blocks, distributed by {@code data_head_id}, {@code data_werte} encoded by the GorillaCodec. */
+    public static final CopyTable TS_DATA = new CopyTable("ts_data", List.of("data_block_start", "data_block_end", "data_head_id", "data_werte"),
+            List.of(ColumnType.INT8, ColumnType.INT8, ColumnType.TEXT, ColumnType.BYTEA), 2);
+
+    public CopyTable {
+        if (columns.size() != types.size()) {
+            throw new IllegalArgumentException("Every column of " + name + " needs a type");
+        }
+    }
+
+    public String copySql() {
+        return "COPY " + name + " (" + String.join(", ", columns) + ") FROM STDIN (FORMAT BINARY)";
+    }
+}
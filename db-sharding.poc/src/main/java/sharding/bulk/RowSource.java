@@ -0,0 +1,15 @@
+package sharding.bulk;
+
+/**
+ * Produces the rows of a bulk load one at a time into a reused {@link CopyRow}.
+ */
+@FunctionalInterface
+public interface RowSource {
+
+    /**
+     * Fills the next row.
+     *
+     * @return {@code false} when the source is exhausted, the row is then ignored
+     */
+    boolean next(CopyRow row) throws Exception;
+}
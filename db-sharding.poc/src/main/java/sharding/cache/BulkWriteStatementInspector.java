@@ -0,0 +1,42 @@
+package sharding.cache;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.regex.Pattern;
+
+/**
+ * Recognizes the statements of bulk JPQL {@code UPDATE}/{@code DELETE}s on {@code t_user}, which change rows without
+ * entity events. Such a statement clears the active {@link UserNearCache} right away and marks the thread, so the
+ * {@link NearCacheSessionListener} clears it once more when the transaction completed. Configured with
+ * {@code hibernate.session_factory.statement_inspector}.
+ * <p>
+ * Statements Hibernate flushes for a single entity end in {@code where id=?}, those are left to the
+ * {@link NearCacheIntegrator} which invalidates just their user.
+ */
+public class BulkWriteStatementInspector implements StatementInspector {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Pattern USER_WRITE = Pattern.compile("^\\s*(update|delete\\s+from)\\s+t_user\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern SINGLE_ENTITY = Pattern.compile("\\swhere\\s+id\\s*=\\s*\\?\\s*$", Pattern.CASE_INSENSITIVE);
+    private static final ThreadLocal<Boolean> BULK_WRITE = new ThreadLocal<>();
+
+    @Override
+    public String inspect(String sql) {
+        UserNearCache cache = UserNearCache.active();
+        if (cache != null && USER_WRITE.matcher(sql).find() && !SINGLE_ENTITY.matcher(sql).find()) {
+            BULK_WRITE.set(Boolean.TRUE);
+            cache.invalidateAll();
+        }
+        return sql;
+    }
+
+    /**
+     * Whether the current thread ran a bulk write since the last call, and resets it.
+     */
+    static boolean consumeBulkWrite() {
+        boolean bulkWrite = BULK_WRITE.get() != null;
+        BULK_WRITE.remove();
+        return bulkWrite;
+    }
+}
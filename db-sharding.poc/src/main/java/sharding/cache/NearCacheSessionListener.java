@@ -0,0 +1,22 @@
+package sharding.cache;
+
+import org.hibernate.SessionEventListener;
+
+/**
+ * Clears the active {@link UserNearCache} when a transaction that ran a bulk write on {@code t_user} completes,
+ * users reloaded while it was open could be stale. Configured with {@code hibernate.session.events.auto}.
+ */
+public class NearCacheSessionListener implements SessionEventListener {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public void transactionCompletion(boolean successful) {
+        if (BulkWriteStatementInspector.consumeBulkWrite()) {
+            UserNearCache cache = UserNearCache.active();
+            if (cache != null) {
+                cache.invalidateAll();
+            }
+        }
+    }
+}
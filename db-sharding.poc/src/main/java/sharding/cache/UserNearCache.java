@@ -0,0 +1,132 @@
+package sharding.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import entity.User;
+import jakarta.persistence.EntityManager;
+import sharding.ShardingTopology;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Read-through near-cache for {@link User} point reads, in front of the sharded {@code t_user} table.
+ * <p>
+ * Entries are evicted by size and after a fixed time-to-live. While the cache is {@link #activate() active},
+ * committed entity writes invalidate their user ({@link NearCacheIntegrator}) and bulk JPQL
+ * {@code UPDATE}/{@code DELETE} statements on {@code t_user} invalidate the whole cache, once when they run and
+ * again when their transaction completes ({@link BulkWriteStatementInspector}, {@link NearCacheSessionListener}).
+ * Writes that bypass Hibernate, e.g. plain JDBC, are only picked up when their entries expire.
+ * <p>
+ * Callers get their own detached copy of the user, changing it does not change the cache. Reads inside an active
+ * transaction bypass the cache, so they see the transaction's own changes.
+ */
+public class UserNearCache {
+
+    private static volatile UserNearCache active;
+
+    private final ShardingTopology topology;
+    private final Cache<String, User> cache;
+    private final Map<String, ShardStats> shardStats = new LinkedHashMap<>();
+
+    public UserNearCache(ShardingTopology topology, long maximumSize, Duration timeToLive) {
+        this.topology = topology;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(timeToLive)
+                .build();
+        for (String shard : topology.getDataSourceNames("t_user")) {
+            shardStats.put(shard, new ShardStats());
+        }
+    }
+
+    /**
+     * The cache writes are invalidating, {@code null} if none is active.
+     */
+    public static UserNearCache active() {
+        return active;
+    }
+
+    /**
+     * Makes this the cache that writes through Hibernate invalidate. Only users read through an active cache are
+     * kept consistent with those writes.
+     */
+    public void activate() {
+        active = this;
+    }
+
+    public void deactivate() {
+        if (active == this) {
+            active = null;
+        }
+        cache.invalidateAll();
+    }
+
+    /**
+     * The user with the given id, from the cache or else loaded with the entity manager. Concurrent misses on the
+     * same id load it once. Inside a transaction it is the entity manager's managed user instead of a copy.
+     */
+    public User find(EntityManager em, String id) {
+        if (em.getTransaction().isActive()) {
+            // The transaction may have changed the user, it has to see its own uncommitted state
+            return em.find(User.class, id);
+        }
+        ShardStats stats = shardStats.get(topology.route("t_user", id));
+        User cached = cache.getIfPresent(id);
+        if (cached != null) {
+            stats.hits.increment();
+            return copy(cached);
+        }
+        stats.misses.increment();
+        User loaded = cache.get(id, key -> {
+            User user = em.find(User.class, key);
+            return user != null ? copy(user) : null;
+        });
+        return loaded != null ? copy(loaded) : null;
+    }
+
+    public void invalidate(String id) {
+        cache.invalidate(id);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    /**
+     * Hits and misses per logical data source of {@code t_user}, since the cache was created.
+     */
+    public Map<String, Stats> getShardStats() {
+        Map<String, Stats> result = new LinkedHashMap<>();
+        shardStats.forEach((shard, stats) -> result.put(shard, new Stats(stats.hits.sum(), stats.misses.sum())));
+        return result;
+    }
+
+    private static User copy(User user) {
+        User copy = new User();
+        copy.setId(user.getId());
+        copy.setUsername(user.getUsername());
+        copy.setEmail(user.getEmail());
+        return copy;
+    }
+
+    private static final class ShardStats {
+
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+    }
+
+    public record Stats(long hits, long misses) {
+
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package sharding.id;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Generates the id of an entity with the {@link ShardedIdentifierGenerator}, for {@code Long} and {@code String}
+ * ids. The id is generated before the insert, so Hibernate keeps batching the inserts. The shard embedded in the id
+ * only decides where the row lives if its table is routed by the id with {@code ID_BITS}; a table routed by another
+ * column, like {@code t_order} by its {@code user_id}, uses a single shard.
+ */
+@IdGeneratorType(ShardedIdentifierGenerator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface ShardedId {
+
+    /**
+     * Shards new ids are spread over, round-robin.
+     */
+    int shards() default 2;
+
+    /**
+     * Keep an id the application set itself instead of generating one.
+     */
+    boolean allowAssigned() default false;
+}
@@ -0,0 +1,160 @@
+package sharding.id;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free generator of {@link ShardedIdLayout} ids.
+ * <p>
+ * Each shard has one atomic (timestamp, next sequence) word. A thread reserves a block of sequence numbers with a
+ * single CAS on it and hands out the block's ids from a thread-local without any further synchronization. When a
+ * millisecond runs out of sequence numbers the next one is taken right away instead of waiting for the clock, and
+ * a clock that goes backwards keeps the last timestamp, so ids stay unique. Ids are only roughly time ordered:
+ * a thread keeps handing out the rest of its block while other threads already reserved later ones.
+ * <p>
+ * Virtual threads reserve one id at a time instead: they are typically started per task and generate an id or
+ * two, so a block would waste the rest of its sequence numbers and push the shard's timestamp ahead of the clock.
+ * <p>
+ * All users of the same layout and worker id in a JVM must share one instance, see {@link #of}. Processes
+ * generating concurrently need distinct worker ids, see {@link #configuredWorkerId}.
+ */
+public class ShardedIdGenerator {
+
+    public static final String WORKER_ID_PROPERTY = "sharding.worker-id";
+
+    private static final Map<Key, ShardedIdGenerator> INSTANCES = new ConcurrentHashMap<>();
+
+    private final ShardedIdLayout layout;
+    private final int workerId;
+    private final int blockSize;
+    private final AtomicLong[] shardStates;
+    private final ThreadLocal<Blocks> blocks;
+    // Round-robin cursor of the virtual threads, which have no blocks of their own
+    private final AtomicInteger sharedShardCursor = new AtomicInteger();
+
+    private ShardedIdGenerator(ShardedIdLayout layout, int workerId, int blockSize) {
+        if (workerId < 0 || workerId >= layout.maxWorkers()) {
+            throw new IllegalArgumentException("Worker id " + workerId + " out of range 0.." + (layout.maxWorkers() - 1));
+        }
+        this.layout = layout;
+        this.workerId = workerId;
+        this.blockSize = (int) Math.min(blockSize, layout.maxSequence() + 1);
+        this.shardStates = new AtomicLong[layout.maxShards()];
+        for (int i = 0; i < shardStates.length; i++) {
+            shardStates[i] = new AtomicLong();
+        }
+        this.blocks = ThreadLocal.withInitial(() -> new Blocks(shardStates.length));
+    }
+
+    /**
+     * The shared generator of a layout and worker id.
+     *
+     * @param blockSize ids a platform thread reserves at once, only used when the generator is created
+     */
+    public static ShardedIdGenerator of(ShardedIdLayout layout, int workerId, int blockSize) {
+        return INSTANCES.computeIfAbsent(new Key(layout, workerId), key -> new ShardedIdGenerator(layout, workerId, blockSize));
+    }
+
+    /**
+     * Worker id from the {@value #WORKER_ID_PROPERTY} system property, which every process generating ids has to set
+     * to a worker id of its own. There is no derived default: two processes that happen to pick the same worker id
+     * generate the same ids.
+     *
+     * @throws IllegalStateException if the property is not set or no worker id of the layout
+     */
+    public static int configuredWorkerId(ShardedIdLayout layout) {
+        String configured = System.getProperty(WORKER_ID_PROPERTY);
+        if (configured == null) {
+            throw new IllegalStateException("No worker id configured, start every process generating ids with its own -D"
+                    + WORKER_ID_PROPERTY + "=0.." + (layout.maxWorkers() - 1));
+        }
+        int workerId;
+        try {
+            workerId = Integer.parseInt(configured.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException(WORKER_ID_PROPERTY + " is not a number: " + configured, e);
+        }
+        if (workerId < 0 || workerId >= layout.maxWorkers()) {
+            throw new IllegalStateException(WORKER_ID_PROPERTY + " " + workerId + " out of range 0.." + (layout.maxWorkers() - 1));
+        }
+        return workerId;
+    }
+
+    public ShardedIdLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Next id embedding the given shard.
+     */
+    public long nextId(int shard) {
+        if (Thread.currentThread().isVirtual()) {
+            return reserve(shard, 1);
+        }
+        Blocks threadBlocks = blocks.get();
+        if (threadBlocks.remaining[shard] == 0) {
+            threadBlocks.next[shard] = reserve(shard, blockSize);
+            threadBlocks.remaining[shard] = blockSize;
+        }
+        threadBlocks.remaining[shard]--;
+        return threadBlocks.next[shard]++;
+    }
+
+    /**
+     * Next id with the shard picked round-robin over the first {@code shardCount} shards, per platform thread and
+     * over all virtual threads.
+     */
+    public long nextIdRoundRobin(int shardCount) {
+        if (Thread.currentThread().isVirtual()) {
+            return nextId(Math.floorMod(sharedShardCursor.getAndIncrement(), shardCount));
+        }
+        return nextId(blocks.get().nextShard(shardCount));
+    }
+
+    // Reserves the next ids of the shard and returns the first
+    private long reserve(int shard, int count) {
+        AtomicLong state = shardStates[shard];
+        int sequenceBits = layout.sequenceBits();
+        long sequences = layout.maxSequence() + 1;
+        while (true) {
+            long current = state.get();
+            long lastTimestamp = current >>> sequenceBits;
+            long nextSequence = current & layout.maxSequence();
+            long now = System.currentTimeMillis() - ShardedIdLayout.EPOCH;
+
+            long timestamp = Math.max(now, lastTimestamp);
+            long start = now > lastTimestamp ? 0 : nextSequence;
+            if (start + count > sequences) {
+                // This millisecond is used up, borrow the next one
+                timestamp++;
+                start = 0;
+            }
+            // start + count == sequences carries into the timestamp: the next free id is in the next millisecond
+            if (state.compareAndSet(current, (timestamp << sequenceBits) + start + count)) {
+                return layout.compose(timestamp, shard, workerId, start);
+            }
+        }
+    }
+
+    private static final class Blocks {
+
+        private final long[] next;
+        private final int[] remaining;
+        private int shardCursor;
+
+        private Blocks(int shards) {
+            this.next = new long[shards];
+            this.remaining = new int[shards];
+        }
+
+        private int nextShard(int shardCount) {
+            shardCursor = shardCursor + 1 >= shardCount ? 0 : shardCursor + 1;
+            return shardCursor;
+        }
+    }
+
+    private record Key(ShardedIdLayout layout, int workerId) {
+    }
+}
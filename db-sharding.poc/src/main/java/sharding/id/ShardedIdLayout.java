@@ -0,0 +1,64 @@
+package sharding.id;
+
+/**
+ * Bit layout of a 63 bit Snowflake-style id with the shard embedded:
+ * <pre>
+ * | 0 | timestamp (41 bits, ms since EPOCH) | shard | worker | sequence |
+ * </pre>
+ * The shard, worker and sequence fields share the low 22 bits. With the default 4 shard bits, 6 worker bits and
+ * 12 sequence bits there can be up to 16 shards, 64 generating processes, and 4096 ids per shard, worker and
+ * millisecond. The timestamp lasts until 2093.
+ */
+public record ShardedIdLayout(int shardBits, int workerBits) {
+
+    /**
+     * 2024-01-01T00:00:00Z
+     */
+    public static final long EPOCH = 1704067200000L;
+    public static final ShardedIdLayout DEFAULT = new ShardedIdLayout(4, 6);
+
+    private static final int LOW_BITS = 22;
+
+    public ShardedIdLayout {
+        if (shardBits < 0 || workerBits < 0 || shardBits + workerBits > LOW_BITS - 8) {
+            throw new IllegalArgumentException("Shard and worker bits must leave at least 8 sequence bits: " + shardBits + ", " + workerBits);
+        }
+    }
+
+    public int sequenceBits() {
+        return LOW_BITS - shardBits - workerBits;
+    }
+
+    public int maxShards() {
+        return 1 << shardBits;
+    }
+
+    public int maxWorkers() {
+        return 1 << workerBits;
+    }
+
+    public long maxSequence() {
+        return (1L << sequenceBits()) - 1;
+    }
+
+    public long compose(long timestamp, int shard, int worker, long sequence) {
+        return timestamp << LOW_BITS
+                | (long) shard << (workerBits + sequenceBits())
+                | (long) worker << sequenceBits()
+                | sequence;
+    }
+
+    /**
+     * Shard embedded in an id, read straight from its bits.
+     */
+    public int shardOf(long id) {
+        return (int) (id >>> (workerBits + sequenceBits())) & (maxShards() - 1);
+    }
+
+    /**
+     * Milliseconds since the epoch the id was generated at (or borrowed from, under a sustained burst).
+     */
+    public long timestampMillisOf(long id) {
+        return (id >>> LOW_BITS) + EPOCH;
+    }
+}
@@ -0,0 +1,69 @@
+package sharding.id;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.EventType;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.id.factory.spi.CustomIdGeneratorCreationContext;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+
+/**
+ * Hibernate identifier generator behind {@link ShardedId}, drawing from the same shared {@link ShardedIdGenerator}
+ * as the {@link ShardedKeyGenerateAlgorithm} with the default layout and the configured worker id.
+ */
+public class ShardedIdentifierGenerator implements IdentifierGenerator {
+
+    private static final long serialVersionUID = 1L;
+    private static final int BLOCK_SIZE = 64;
+
+    private final transient ShardedIdGenerator generator;
+    private final int shards;
+    private final boolean asString;
+    private final boolean allowAssigned;
+
+    public ShardedIdentifierGenerator(ShardedId config, Member member, CustomIdGeneratorCreationContext context) {
+        ShardedIdLayout layout = ShardedIdLayout.DEFAULT;
+        if (config.shards() <= 0 || config.shards() > layout.maxShards()) {
+            throw new IllegalArgumentException("Shards must be between 1 and " + layout.maxShards() + ": " + config.shards());
+        }
+        this.generator = ShardedIdGenerator.of(layout, ShardedIdGenerator.configuredWorkerId(layout), BLOCK_SIZE);
+        this.shards = config.shards();
+        this.asString = idType(member) == String.class;
+        this.allowAssigned = config.allowAssigned();
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object object) {
+        long id = generator.nextIdRoundRobin(shards);
+        return asString ? String.valueOf(id) : (Object) id;
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object owner, Object currentValue, EventType eventType) {
+        if (allowAssigned) {
+            // Hibernate doesn't pass the current id on persist, read it from the entity
+            Object assigned = currentValue != null ? currentValue : session.getEntityPersister(null, owner).getIdentifier(owner, session);
+            if (assigned != null) {
+                return assigned;
+            }
+        }
+        return generate(session, owner);
+    }
+
+    @Override
+    public boolean allowAssignedIdentifiers() {
+        return allowAssigned;
+    }
+
+    private static Class<?> idType(Member member) {
+        if (member instanceof Field field) {
+            return field.getType();
+        }
+        if (member instanceof Method method) {
+            return method.getReturnType();
+        }
+        return Long.class;
+    }
+}
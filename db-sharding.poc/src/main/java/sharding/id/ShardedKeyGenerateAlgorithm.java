@@ -0,0 +1,65 @@
+package sharding.id;
+
+import org.apache.shardingsphere.infra.algorithm.core.context.AlgorithmSQLContext;
+import org.apache.shardingsphere.infra.algorithm.keygen.core.KeyGenerateAlgorithm;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * ShardingSphere key generator for {@link ShardedIdLayout} ids, spreading new rows round-robin over the shards.
+ * ShardingSphere does not pass the row to the generator, so it only suits tables routed by the generated id itself;
+ * a table routed by another column, like {@code t_order} by its {@code user_id}, gets its ids from {@link ShardedId}.
+ * Configured in the YAML as:
+ * <pre>
+ * keyGenerators:
+ *   sharded_snowflake:
+ *     type: SHARDED_SNOWFLAKE
+ *     props:
+ *       shard-count: 2
+ * </pre>
+ * {@code worker-id} defaults to the {@link ShardedIdGenerator#configuredWorkerId}. With the default layout it shares its
+ * generator with the {@link ShardedIdentifierGenerator} of the entities.
+ */
+public class ShardedKeyGenerateAlgorithm implements KeyGenerateAlgorithm {
+
+    public static final String SHARD_COUNT_KEY = "shard-count";
+    public static final String SHARD_BITS_KEY = "shard-bits";
+    public static final String WORKER_BITS_KEY = "worker-bits";
+    public static final String WORKER_ID_KEY = "worker-id";
+    public static final String BLOCK_SIZE_KEY = "block-size";
+
+    private ShardedIdGenerator generator;
+    private int shardCount;
+
+    @Override
+    public void init(Properties props) {
+        ShardedIdLayout layout = new ShardedIdLayout(
+                Integer.parseInt(props.getProperty(SHARD_BITS_KEY, String.valueOf(ShardedIdLayout.DEFAULT.shardBits()))),
+                Integer.parseInt(props.getProperty(WORKER_BITS_KEY, String.valueOf(ShardedIdLayout.DEFAULT.workerBits()))));
+        shardCount = Integer.parseInt(props.getProperty(SHARD_COUNT_KEY, "2"));
+        if (shardCount <= 0 || shardCount > layout.maxShards()) {
+            throw new IllegalArgumentException("Shard count must be between 1 and " + layout.maxShards() + ": " + shardCount);
+        }
+        String workerId = props.getProperty(WORKER_ID_KEY);
+        generator = ShardedIdGenerator.of(layout,
+                workerId != null ? Integer.parseInt(workerId) : ShardedIdGenerator.configuredWorkerId(layout),
+                Integer.parseInt(props.getProperty(BLOCK_SIZE_KEY, "64")));
+    }
+
+    @Override
+    public Collection<Long> generateKeys(AlgorithmSQLContext context, int keyGenerateCount) {
+        List<Long> result = new ArrayList<>(keyGenerateCount);
+        for (int i = 0; i < keyGenerateCount; i++) {
+            result.add(generator.nextIdRoundRobin(shardCount));
+        }
+        return result;
+    }
+
+    @Override
+    public String getType() {
+        return "SHARDED_SNOWFLAKE";
+    }
+}
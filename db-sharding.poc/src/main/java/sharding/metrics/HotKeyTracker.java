@@ -0,0 +1,301 @@
+package sharding.metrics;
+
+import io.micrometer.core.instrument.Gauge;
+import sharding.JumpHashComplexShardingAlgorithm;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Access frequency of the sharding values of one logic table and of the shards they route to, recorded by the
+ * sharding algorithms on every point route.
+ * <p>
+ * Keys are counted in a count-min sketch of {@code depth} rows of {@code width} counters, an estimate never
+ * lower than the true count and too high by at most {@code e * total / width} with probability
+ * {@code 1 - e^-depth}. Keys whose estimate exceeds the smallest of the current top {@code k} are kept as
+ * candidates, pruned back to the top {@code k} with a min-heap by whichever thread finds more than {@code 2k}, so a
+ * prune costs {@code O(k log k)} and happens at most once per {@code k} newly admitted keys. All counts are halved
+ * once for every {@code decayInterval} accesses, so the tracker follows the recent load and old hot keys fade out.
+ * The halving is left to {@link #decayIfDue()}, which a background thread calls every
+ * {@value #DECAY_CHECK_MILLIS} ms for the trackers of {@link #forTable}, never to the routing threads.
+ * <p>
+ * Shards are counted from the first access that lists them among the available targets, so an idle shard counts
+ * into the {@link #imbalance()} with zero accesses.
+ * <p>
+ * Recording costs {@code depth} atomic increments on the sketch, spread over its counters by the key, one on the
+ * shard's {@link LongAdder}, which threads increment in separate cells, and, for keys that are not yet candidates,
+ * a comparison with the top-{@code k} threshold; nothing blocks and no counter is shared by all routes. Concurrent
+ * prunes are skipped rather than waited for, and increments during a halving land on either side of it.
+ * <p>
+ * Each tracker publishes the gauges {@code sharding.shard.imbalance} (load of the busiest shard over the mean)
+ * and {@code sharding.hotkey.share} (share of the hottest key), and {@code sharding.shard.load} per shard,
+ * all tagged with the table. The hot keys themselves are only available from {@link #hotKeys()}, they would
+ * be unbounded as tags.
+ */
+public final class HotKeyTracker {
+
+    public static final int DEFAULT_WIDTH = 4096;
+    public static final int DEFAULT_DEPTH = 4;
+    public static final int DEFAULT_TOP_K = 16;
+    public static final long DEFAULT_DECAY_INTERVAL = 1 << 20;
+    public static final long DECAY_CHECK_MILLIS = 100;
+
+    private static final Map<String, HotKeyTracker> TRACKERS = new ConcurrentHashMap<>();
+    private static volatile ScheduledExecutorService decayScheduler;
+
+    private final String table;
+    private final int width;
+    private final int depth;
+    private final int topK;
+    private final long decayInterval;
+    private final AtomicLongArray counters;
+    private final Map<String, String> candidates = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> shardLoad = new ConcurrentHashMap<>();
+    private final AtomicBoolean maintaining = new AtomicBoolean();
+    private volatile long threshold;
+    // Total of the shard loads right after the last halving
+    private volatile long totalAfterDecay;
+
+    /**
+     * @param width         counters per sketch row, rounded up to a power of two
+     * @param depth         sketch rows, each with its own hash
+     * @param topK          hot keys reported
+     * @param decayInterval accesses between halvings of all counts, done by {@link #decayIfDue()}
+     */
+    public HotKeyTracker(String table, int width, int depth, int topK, long decayInterval) {
+        if (width <= 0 || depth <= 0 || topK <= 0 || decayInterval <= 0) {
+            throw new IllegalArgumentException("Sketch sizes and decay interval must be positive");
+        }
+        this.table = table;
+        this.width = Integer.highestOneBit(width) == width ? width : Integer.highestOneBit(width) << 1;
+        this.depth = depth;
+        this.topK = topK;
+        this.decayInterval = decayInterval;
+        this.counters = new AtomicLongArray(this.width * depth);
+        Gauge.builder("sharding.shard.imbalance", this, HotKeyTracker::imbalance)
+                .description("Accesses of the busiest shard over the mean")
+                .tag("table", table).register(ShardMetrics.registry());
+        Gauge.builder("sharding.hotkey.share", this, tracker -> {
+            List<HotKey> hot = tracker.hotKeys();
+            return hot.isEmpty() ? 0 : hot.get(0).share();
+        }).description("Share of the accesses going to the hottest key").tag("table", table).register(ShardMetrics.registry());
+    }
+
+    /**
+     * The tracker of a logic table, created with the default sizes on first use and decayed in the background.
+     */
+    public static HotKeyTracker forTable(String table) {
+        HotKeyTracker tracker = TRACKERS.get(table);
+        if (tracker != null) {
+            return tracker;
+        }
+        startDecay();
+        return TRACKERS.computeIfAbsent(table,
+                key -> new HotKeyTracker(key, DEFAULT_WIDTH, DEFAULT_DEPTH, DEFAULT_TOP_K, DEFAULT_DECAY_INTERVAL));
+    }
+
+    /**
+     * Trackers of all tables routed so far, by table.
+     */
+    public static Map<String, HotKeyTracker> trackers() {
+        return new TreeMap<>(TRACKERS);
+    }
+
+    /**
+     * Records one access of the key routed to the shard, one of the available shards of the table.
+     */
+    public void record(Object key, String shard, Collection<String> availableShards) {
+        if (shardLoad.size() < availableShards.size()) {
+            for (String each : availableShards) {
+                shardLoad.computeIfAbsent(each, this::newShardLoad);
+            }
+        }
+        record(key, shard);
+    }
+
+    /**
+     * Records one access of the key routed to the shard.
+     */
+    public void record(Object key, String shard) {
+        String value = String.valueOf(key);
+        long hash = JumpHashComplexShardingAlgorithm.hash(value, null);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int index = row * width + ((h1 + row * h2) & (width - 1));
+            estimate = Math.min(estimate, counters.incrementAndGet(index));
+        }
+        LongAdder load = shardLoad.get(shard);
+        if (load == null) {
+            load = shardLoad.computeIfAbsent(shard, this::newShardLoad);
+        }
+        load.increment();
+
+        if (estimate > threshold && !candidates.containsKey(value)) {
+            candidates.put(value, shard);
+            if (candidates.size() > 2 * topK) {
+                maintain(0);
+            }
+        }
+    }
+
+    /**
+     * Halves all counts once for every {@code decayInterval} accesses since the last halving, if there were that
+     * many.
+     */
+    public void decayIfDue() {
+        long halvings = (total() - totalAfterDecay) / decayInterval;
+        if (halvings > 0) {
+            maintain((int) Math.min(halvings, Long.SIZE - 1));
+        }
+    }
+
+    /**
+     * Estimated recent accesses of the key, never lower than the true count since the last halving.
+     */
+    public long estimate(Object key) {
+        long hash = JumpHashComplexShardingAlgorithm.hash(String.valueOf(key), null);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.get(row * width + ((h1 + row * h2) & (width - 1))));
+        }
+        return estimate;
+    }
+
+    /**
+     * The hottest keys, most accessed first, at most {@code k}.
+     */
+    public List<HotKey> hotKeys() {
+        long total = total();
+        PriorityQueue<HotKey> top = topCandidates(total);
+        List<HotKey> result = new ArrayList<>(top);
+        result.sort(Comparator.comparingLong(HotKey::count).reversed());
+        return result;
+    }
+
+    /**
+     * Recent accesses per shard.
+     */
+    public Map<String, Long> shardLoad() {
+        Map<String, Long> result = new TreeMap<>();
+        shardLoad.forEach((shard, load) -> result.put(shard, load.sum()));
+        return result;
+    }
+
+    /**
+     * Accesses of the busiest shard over the mean of all shards, idle ones included, {@code 1} when balanced and
+     * {@code 0} before the first access.
+     */
+    public double imbalance() {
+        long max = 0;
+        long sum = 0;
+        for (LongAdder load : shardLoad.values()) {
+            long value = load.sum();
+            max = Math.max(max, value);
+            sum += value;
+        }
+        return sum == 0 ? 0 : (double) max * shardLoad.size() / sum;
+    }
+
+    /**
+     * Recent accesses of all keys.
+     */
+    public long total() {
+        long sum = 0;
+        for (LongAdder load : shardLoad.values()) {
+            sum += load.sum();
+        }
+        return sum;
+    }
+
+    public String table() {
+        return table;
+    }
+
+    private static synchronized void startDecay() {
+        if (decayScheduler == null) {
+            decayScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "hot-key-decay");
+                thread.setDaemon(true);
+                return thread;
+            });
+            decayScheduler.scheduleWithFixedDelay(() -> TRACKERS.values().forEach(HotKeyTracker::decayIfDue),
+                    DECAY_CHECK_MILLIS, DECAY_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private LongAdder newShardLoad(String shard) {
+        LongAdder load = new LongAdder();
+        Gauge.builder("sharding.shard.load", load, LongAdder::sum)
+                .description("Recent routed accesses of the shard")
+                .tag("table", table).tag("datasource", shard).register(ShardMetrics.registry());
+        return load;
+    }
+
+    // The k candidates with the highest estimates, smallest at the head
+    private PriorityQueue<HotKey> topCandidates(long total) {
+        PriorityQueue<HotKey> top = new PriorityQueue<>(topK + 1, Comparator.comparingLong(HotKey::count));
+        for (Map.Entry<String, String> candidate : candidates.entrySet()) {
+            long count = estimate(candidate.getKey());
+            if (top.size() < topK || count > top.peek().count()) {
+                top.add(new HotKey(candidate.getKey(), candidate.getValue(), count, total == 0 ? 0 : Math.min(1.0, (double) count / total)));
+                if (top.size() > topK) {
+                    top.poll();
+                }
+            }
+        }
+        return top;
+    }
+
+    // Halves all counts the given number of times and prunes the candidates; skipped when another thread is at it
+    private void maintain(int halvings) {
+        if (!maintaining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            if (halvings > 0) {
+                for (int i = 0; i < counters.length(); i++) {
+                    counters.getAndUpdate(i, count -> count >>> halvings);
+                }
+                for (LongAdder load : shardLoad.values()) {
+                    // Increments racing with this are kept whole
+                    long count = load.sum();
+                    load.add((count >>> halvings) - count);
+                }
+                totalAfterDecay = total();
+            }
+            PriorityQueue<HotKey> top = topCandidates(0);
+            if (top.size() >= topK) {
+                // A key has to beat the smallest of the top k to become a candidate
+                threshold = top.peek().count();
+                candidates.keySet().retainAll(top.stream().map(HotKey::key).toList());
+            } else {
+                threshold = 0;
+            }
+        } finally {
+            maintaining.set(false);
+        }
+    }
+
+    /**
+     * A hot key with the shard it was routed to, its estimated recent accesses and their share of all
+     * accesses of the table.
+     */
+    public record HotKey(String key, String shard, long count, double share) {
+    }
+}
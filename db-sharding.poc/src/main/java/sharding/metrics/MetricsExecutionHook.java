@@ -0,0 +1,54 @@
+package sharding.metrics;
+
+import org.apache.shardingsphere.infra.database.core.connector.ConnectionProperties;
+import org.apache.shardingsphere.infra.executor.sql.hook.SQLExecutionHook;
+
+import java.util.List;
+
+/**
+ * Times every statement ShardingSphere executes per physical data source, into {@link ShardMetrics} and
+ * {@link ShardExecuteEvent}s. Registered through
+ * {@code META-INF/services/org.apache.shardingsphere.infra.executor.sql.hook.SQLExecutionHook}.
+ */
+public class MetricsExecutionHook implements SQLExecutionHook {
+
+    private String dataSourceName;
+    private long startNanos;
+    private ShardExecuteEvent event;
+
+    @Override
+    public void start(String dataSourceName, String sql, List<Object> parameters, ConnectionProperties connectionProperties, boolean isTrunkThread) {
+        this.dataSourceName = dataSourceName;
+        ShardExecuteEvent event = new ShardExecuteEvent();
+        if (event.isEnabled()) {
+            event.dataSource = dataSourceName;
+            event.sql = sql;
+            event.trunkThread = isTrunkThread;
+            event.begin();
+            this.event = event;
+        }
+        this.startNanos = System.nanoTime();
+    }
+
+    @Override
+    public void finishSuccess() {
+        finish(true);
+    }
+
+    @Override
+    public void finishFailure(Exception cause) {
+        finish(false);
+    }
+
+    private void finish(boolean success) {
+        ShardMetrics.recordExecute(dataSourceName, System.nanoTime() - startNanos, success);
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.success = success;
+                event.commit();
+            }
+            event = null;
+        }
+    }
+}
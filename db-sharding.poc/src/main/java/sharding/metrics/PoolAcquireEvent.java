@@ -0,0 +1,28 @@
+package sharding.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A connection taken from the Hikari pool of a physical data source, emitted by {@link PoolMetricsTracker}.
+ * Hikari reports the wait after the fact, so it is a field rather than the event duration.
+ */
+@Name("sharding.PoolAcquire")
+@Label("Shard Pool Acquire")
+@Category({"Sharding"})
+@Description("Connection acquired from the pool of a physical data source")
+@StackTrace(false)
+public class PoolAcquireEvent extends Event {
+
+    @Label("Data Source")
+    String dataSource;
+
+    @Label("Wait Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long waitTime;
+}
@@ -0,0 +1,64 @@
+package sharding.metrics;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+
+import java.util.List;
+
+/**
+ * Hikari metrics tracker of one physical data source: connection waits and timeouts go to {@link ShardMetrics}
+ * and {@link PoolAcquireEvent}s, connection hold times to {@link PoolUsage}, the pool's active and pending counts
+ * are gauges.
+ */
+class PoolMetricsTracker implements IMetricsTracker {
+
+    private final String dataSource;
+    private final PoolUsage usage;
+    private final List<Meter> gauges;
+
+    private PoolMetricsTracker(String dataSource, PoolStats poolStats) {
+        this.dataSource = dataSource;
+        this.usage = PoolUsage.of(dataSource);
+        this.gauges = List.of(
+                Gauge.builder("sharding.pool.active", poolStats, PoolStats::getActiveConnections)
+                        .tag("datasource", dataSource).register(ShardMetrics.registry()),
+                Gauge.builder("sharding.pool.pending", poolStats, PoolStats::getPendingThreads)
+                        .tag("datasource", dataSource).register(ShardMetrics.registry()));
+    }
+
+    /**
+     * Tracks the pool under the data source name, Hikari's own pool name is not the shard's.
+     */
+    static MetricsTrackerFactory factory(String dataSource) {
+        return (poolName, poolStats) -> new PoolMetricsTracker(dataSource, poolStats);
+    }
+
+    @Override
+    public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+        ShardMetrics.recordPoolAcquire(dataSource, elapsedAcquiredNanos);
+        PoolAcquireEvent event = new PoolAcquireEvent();
+        if (event.shouldCommit()) {
+            event.dataSource = dataSource;
+            event.waitTime = elapsedAcquiredNanos;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+        usage.record(elapsedBorrowedMillis);
+    }
+
+    @Override
+    public void recordConnectionTimeout() {
+        ShardMetrics.recordPoolTimeout(dataSource);
+    }
+
+    @Override
+    public void close() {
+        gauges.forEach(ShardMetrics.registry()::remove);
+    }
+}
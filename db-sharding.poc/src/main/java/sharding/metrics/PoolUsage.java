@@ -0,0 +1,45 @@
+package sharding.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Borrows of a data source's pooled connections and how long they were held, counted since the pool was
+ * instrumented with {@link ShardMetrics#instrumentPools}. Held time over elapsed time is the number of connections
+ * busy on average, arrival rate times hold time by Little's law.
+ */
+public final class PoolUsage {
+
+    private static final Map<String, PoolUsage> USAGE = new ConcurrentHashMap<>();
+
+    private final LongAdder borrows = new LongAdder();
+    private final LongAdder heldMillis = new LongAdder();
+
+    private PoolUsage() {
+    }
+
+    /**
+     * Usage of the data source, {@code null} if its pool is not instrumented.
+     */
+    public static PoolUsage find(String dataSource) {
+        return USAGE.get(dataSource);
+    }
+
+    static PoolUsage of(String dataSource) {
+        return USAGE.computeIfAbsent(dataSource, key -> new PoolUsage());
+    }
+
+    void record(long millis) {
+        borrows.increment();
+        heldMillis.add(millis);
+    }
+
+    public long borrows() {
+        return borrows.sum();
+    }
+
+    public long heldMillis() {
+        return heldMillis.sum();
+    }
+}
@@ -0,0 +1,47 @@
+package sharding.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One batch written and committed on a shard by a direct shard writer.
+ */
+@Name("sharding.Batch")
+@Label("Shard Batch")
+@Category({"Sharding"})
+@Description("Batch of rows written and committed on a shard")
+@StackTrace(false)
+public class ShardBatchEvent extends Event {
+
+    @Label("Data Source")
+    String dataSource;
+
+    @Label("Table")
+    String table;
+
+    @Label("Rows")
+    int rows;
+
+    /**
+     * An event for a batch of the table on the data source, timed from {@link #begin()}.
+     */
+    public ShardBatchEvent(String dataSource, String table) {
+        this.dataSource = dataSource;
+        this.table = table;
+    }
+
+    /**
+     * Commits the event if the recording wants it, with the rows of the batch.
+     */
+    public void commit(int rows) {
+        end();
+        if (shouldCommit()) {
+            this.rows = rows;
+            commit();
+        }
+    }
+}
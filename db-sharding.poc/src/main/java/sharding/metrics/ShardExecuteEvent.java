@@ -0,0 +1,31 @@
+package sharding.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One statement ShardingSphere executed on a physical data source, emitted by {@link MetricsExecutionHook}.
+ */
+@Name("sharding.Execute")
+@Label("Shard Statement")
+@Category({"Sharding"})
+@Description("Statement executed on a physical data source")
+@StackTrace(false)
+public class ShardExecuteEvent extends Event {
+
+    @Label("Data Source")
+    String dataSource;
+
+    @Label("SQL")
+    String sql;
+
+    @Label("Trunk Thread")
+    boolean trunkThread;
+
+    @Label("Success")
+    boolean success;
+}
@@ -0,0 +1,130 @@
+package sharding.metrics;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.jmx.JmxConfig;
+import io.micrometer.jmx.JmxMeterRegistry;
+import sharding.ShardingTopology;
+
+import javax.sql.DataSource;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-shard meters of the sharding layer, tagged with the data source ({@code ds_0}, {@code ds_0_replica}, ...):
+ * <ul>
+ *     <li>{@code sharding.execute}: time of every statement ShardingSphere executes on a physical data source</li>
+ *     <li>{@code sharding.pool.acquire}: time waited for a Hikari connection, {@code sharding.pool.timeouts}</li>
+ *     <li>{@code sharding.bulkhead.rejected}: calls a shard's bulkhead turned away</li>
+ *     <li>{@code sharding.route}: time to route a sharding value with {@link ShardingTopology#route}</li>
+ *     <li>{@code sharding.rows}: rows read per statement by the direct shard paths</li>
+ *     <li>{@code sharding.batch.size}: rows per committed batch of the direct shard writers</li>
+ *     <li>{@code sharding.shard.load}, {@code sharding.shard.imbalance}, {@code sharding.hotkey.share}: recent
+ *     routed accesses per shard and their skew, from the {@link HotKeyTracker} of each table</li>
+ * </ul>
+ * The timers publish a percentile histogram and a p99, so dashboards can compare the tail per shard.
+ * <p>
+ * Meters go to the Micrometer global registry, which drops them until a registry is added, e.g. with
+ * {@link #enableJmx()}. The meters are cached per tag, recording costs a map lookup and an atomic add.
+ * The same spots emit JFR events ({@link ShardExecuteEvent}, {@link PoolAcquireEvent}, {@link ShardBatchEvent}),
+ * disabled unless a recording enables them.
+ */
+public final class ShardMetrics {
+
+    private static final double[] PERCENTILES = {0.5, 0.99};
+
+    private static final Map<String, Timer> EXECUTE_SUCCESS = new ConcurrentHashMap<>();
+    private static final Map<String, Timer> EXECUTE_FAILURE = new ConcurrentHashMap<>();
+    private static final Map<String, Timer> POOL_ACQUIRE = new ConcurrentHashMap<>();
+    private static final Map<String, Timer> ROUTE = new ConcurrentHashMap<>();
+    private static final Map<String, DistributionSummary> ROWS = new ConcurrentHashMap<>();
+    private static final Map<String, DistributionSummary> BATCH_SIZE = new ConcurrentHashMap<>();
+
+    private static volatile JmxMeterRegistry jmxRegistry;
+
+    private ShardMetrics() {
+    }
+
+    public static MeterRegistry registry() {
+        return Metrics.globalRegistry;
+    }
+
+    /**
+     * Publishes the meters as MBeans in the {@code metrics} domain, idempotent.
+     */
+    public static synchronized JmxMeterRegistry enableJmx() {
+        if (jmxRegistry == null) {
+            jmxRegistry = new JmxMeterRegistry(JmxConfig.DEFAULT, Clock.SYSTEM);
+            Metrics.addRegistry(jmxRegistry);
+        }
+        return jmxRegistry;
+    }
+
+    /**
+     * Records the connection waits of every Hikari pool of the topology's physical data sources, replicas
+     * included. A pool that already has a metrics tracker is left alone.
+     */
+    public static void instrumentPools(ShardingTopology topology) {
+        for (Map.Entry<String, DataSource> entry : topology.getPhysicalDataSources().entrySet()) {
+            if (entry.getValue() instanceof HikariDataSource hikari && hikari.getMetricsTrackerFactory() == null) {
+                hikari.setMetricsTrackerFactory(PoolMetricsTracker.factory(entry.getKey()));
+            }
+        }
+    }
+
+    public static void recordExecute(String dataSource, long nanos, boolean success) {
+        Map<String, Timer> timers = success ? EXECUTE_SUCCESS : EXECUTE_FAILURE;
+        timers.computeIfAbsent(dataSource, ds -> percentileTimer("sharding.execute", "Statement execution per data source")
+                .tag("datasource", ds)
+                .tag("outcome", success ? "success" : "failure")
+                .register(registry())).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public static void recordPoolAcquire(String dataSource, long nanos) {
+        POOL_ACQUIRE.computeIfAbsent(dataSource, ds -> percentileTimer("sharding.pool.acquire", "Wait for a pooled connection")
+                .tag("datasource", ds)
+                .register(registry())).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public static void recordPoolTimeout(String dataSource) {
+        registry().counter("sharding.pool.timeouts", "datasource", dataSource).increment();
+    }
+
+    public static void recordBulkheadRejection(String shard) {
+        registry().counter("sharding.bulkhead.rejected", "datasource", shard).increment();
+    }
+
+    public static void recordRoute(String logicTable, long nanos) {
+        ROUTE.computeIfAbsent(logicTable, table -> percentileTimer("sharding.route", "Routing of a sharding value")
+                .tag("table", table)
+                .register(registry())).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public static void recordRows(String dataSource, long rows) {
+        ROWS.computeIfAbsent(dataSource, ds -> DistributionSummary.builder("sharding.rows")
+                .description("Rows read per statement")
+                .tag("datasource", ds)
+                .publishPercentiles(PERCENTILES)
+                .register(registry())).record(rows);
+    }
+
+    public static void recordBatch(String dataSource, int rows) {
+        BATCH_SIZE.computeIfAbsent(dataSource, ds -> DistributionSummary.builder("sharding.batch.size")
+                .description("Rows per committed batch")
+                .tag("datasource", ds)
+                .publishPercentiles(PERCENTILES)
+                .register(registry())).record(rows);
+    }
+
+    private static Timer.Builder percentileTimer(String name, String description) {
+        return Timer.builder(name)
+                .description(description)
+                .publishPercentiles(PERCENTILES)
+                .publishPercentileHistogram();
+    }
+}
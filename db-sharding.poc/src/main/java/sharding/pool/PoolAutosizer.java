@@ -0,0 +1,184 @@
+package sharding.pool;
+
+import com.zaxxer.hikari.HikariConfigMXBean;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import sharding.ShardingTopology;
+import sharding.metrics.PoolUsage;
+import sharding.metrics.ShardMetrics;
+
+import javax.sql.DataSource;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sizes every Hikari pool of the topology to the connections it actually keeps busy, re-evaluated in a fixed
+ * interval.
+ * <p>
+ * By Little's law the connections in use on average are the borrow rate times the hold time, which is the
+ * connection time held in the interval over its length, taken from {@link PoolUsage}. The pool gets that times
+ * {@code headroom}, and at least the connections in use plus the threads waiting for one right now, in the pool or
+ * at the bulkheads in front of it. It grows to the target at once and shrinks by at most a quarter per interval,
+ * between {@code minSize} and the {@code maximumPoolSize} it was configured with. Idle connections above the pool's
+ * new size are retired by Hikari after its idle timeout. The bulkheads of the shards whose writes go to a pool are
+ * resized with it, so callers wait at the bulkhead instead of inside the pool, and count as waiting for the pool.
+ * <p>
+ * {@link #start} resizes in the background; a sizer only constructed resizes on {@link #resize} calls.
+ */
+public class PoolAutosizer implements AutoCloseable {
+
+    private final ShardingTopology topology;
+    private final ShardBulkheads bulkheads;
+    private final int minSize;
+    private final double headroom;
+    private final Map<String, PoolState> states = new ConcurrentHashMap<>();
+    private volatile ScheduledExecutorService scheduler;
+
+    /**
+     * @param bulkheads bulkheads to resize with the pools, {@code null} for none
+     * @param minSize   smallest size a pool shrinks to
+     * @param headroom  factor on the average connections in use, for bursts within the interval
+     */
+    public PoolAutosizer(ShardingTopology topology, ShardBulkheads bulkheads, int minSize, double headroom) {
+        if (minSize <= 0 || headroom < 1) {
+            throw new IllegalArgumentException("Minimum size must be positive and headroom at least 1");
+        }
+        this.topology = topology;
+        this.bulkheads = bulkheads;
+        this.minSize = minSize;
+        this.headroom = headroom;
+        ShardMetrics.instrumentPools(topology);
+    }
+
+    /**
+     * A sizer that resizes the pools every {@code intervalMillis} until closed.
+     *
+     * @see #PoolAutosizer(ShardingTopology, ShardBulkheads, int, double)
+     */
+    public static PoolAutosizer start(ShardingTopology topology, ShardBulkheads bulkheads, long intervalMillis, int minSize,
+                                      double headroom) {
+        PoolAutosizer autosizer = new PoolAutosizer(topology, bulkheads, minSize, headroom);
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "pool-autosizer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(autosizer::resize, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        autosizer.scheduler = scheduler;
+        return autosizer;
+    }
+
+    /**
+     * Resizes every pool once. Pools without {@link PoolUsage}, because another metrics tracker was set on them,
+     * are left alone.
+     */
+    public synchronized void resize() {
+        long now = System.nanoTime();
+        for (Map.Entry<String, DataSource> entry : topology.getPhysicalDataSources().entrySet()) {
+            PoolUsage usage = PoolUsage.find(entry.getKey());
+            if (!(entry.getValue() instanceof HikariDataSource hikari) || usage == null) {
+                continue;
+            }
+            PoolState state = states.computeIfAbsent(entry.getKey(),
+                    key -> new PoolState(hikari.getMaximumPoolSize(), hikari.getMinimumIdle(), usage.heldMillis(), now));
+            HikariPoolMXBean pool = hikari.getHikariPoolMXBean();
+            long heldMillis = usage.heldMillis();
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(now - state.sampledAt);
+            if (pool == null || elapsedMillis <= 0) {
+                continue;
+            }
+            int current = hikari.getMaximumPoolSize();
+            int waiting = pool.getThreadsAwaitingConnection() + bulkheadWaiting(hikari);
+            int target = targetSize(heldMillis - state.heldMillis, elapsedMillis, pool.getActiveConnections(),
+                    waiting, current, Math.min(minSize, state.configuredMax), state.configuredMax, headroom);
+            state.heldMillis = heldMillis;
+            state.sampledAt = now;
+            if (target != current) {
+                resizePool(hikari, target, Math.min(state.configuredMinIdle, target));
+            }
+        }
+    }
+
+    /**
+     * The pool size for the connections held over an interval, the connections in use and the threads waiting
+     * for one at its end, and the current size.
+     */
+    public static int targetSize(long heldMillis, long elapsedMillis, int active, int waiting, int current, int min, int max,
+                                 double headroom) {
+        double busy = (double) heldMillis / elapsedMillis;
+        int needed = Math.max((int) Math.ceil(busy * headroom), active + waiting);
+        int target = needed >= current ? needed : Math.max(needed, current - Math.max(1, current / 4));
+        return Math.max(min, Math.min(max, target));
+    }
+
+    /**
+     * Current maximum size of every autosized pool.
+     */
+    public Map<String, Integer> getPoolSizes() {
+        Map<String, Integer> result = new TreeMap<>();
+        for (String name : states.keySet()) {
+            if (topology.getPhysicalDataSource(name) instanceof HikariDataSource hikari) {
+                result.put(name, hikari.getMaximumPoolSize());
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    // Callers beyond the pool size queue at the bulkheads of its shards, not inside the pool
+    private int bulkheadWaiting(HikariDataSource hikari) {
+        int waiting = 0;
+        if (bulkheads != null) {
+            for (ShardBulkhead bulkhead : bulkheads.bulkheads().values()) {
+                if (topology.getWriteDataSource(bulkhead.getShard()) == hikari) {
+                    waiting += bulkhead.getWaiting();
+                }
+            }
+        }
+        return waiting;
+    }
+
+    private void resizePool(HikariDataSource hikari, int size, int minIdle) {
+        HikariConfigMXBean config = hikari.getHikariConfigMXBean();
+        // Hikari wants minimumIdle <= maximumPoolSize at all times
+        if (size > config.getMaximumPoolSize()) {
+            config.setMaximumPoolSize(size);
+            config.setMinimumIdle(minIdle);
+        } else {
+            config.setMinimumIdle(minIdle);
+            config.setMaximumPoolSize(size);
+        }
+        if (bulkheads != null) {
+            for (ShardBulkhead bulkhead : bulkheads.bulkheads().values()) {
+                if (topology.getWriteDataSource(bulkhead.getShard()) == hikari) {
+                    bulkhead.setLimit(size);
+                }
+            }
+        }
+    }
+
+    private static final class PoolState {
+
+        private final int configuredMax;
+        private final int configuredMinIdle;
+        private long heldMillis;
+        private long sampledAt;
+
+        private PoolState(int configuredMax, int configuredMinIdle, long heldMillis, long sampledAt) {
+            this.configuredMax = configuredMax;
+            this.configuredMinIdle = configuredMinIdle;
+            this.heldMillis = heldMillis;
+            this.sampledAt = sampledAt;
+        }
+    }
+}
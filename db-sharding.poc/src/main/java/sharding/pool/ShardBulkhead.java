@@ -0,0 +1,136 @@
+package sharding.pool;
+
+import sharding.metrics.ShardMetrics;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Caps the calls running against one shard at the same time. A call beyond the limit waits at most
+ * {@code maxWait} for a slot and is then rejected, so a slow shard fails its own callers fast instead of tying up
+ * every thread of a shared pool; a {@code maxWait} of zero rejects without waiting.
+ * <p>
+ * The limit can be changed while calls are running, usually to the size of the shard's connection pool by the
+ * {@link PoolAutosizer}: a raised limit admits waiting calls right away, a lowered one lets running calls finish
+ * and admits new ones only once fewer than the new limit are left.
+ */
+public final class ShardBulkhead {
+
+    private final String shard;
+    private final long maxWaitNanos;
+    private final ResizableSemaphore permits;
+    private int limit;
+
+    /**
+     * @param maxWait longest a call waits for a slot, {@code Long.MAX_VALUE} to wait without a timeout
+     */
+    public ShardBulkhead(String shard, int limit, long maxWait, TimeUnit unit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Bulkhead limit must be positive: " + limit);
+        }
+        this.shard = shard;
+        this.limit = limit;
+        this.maxWaitNanos = maxWait == Long.MAX_VALUE ? Long.MAX_VALUE : unit.toNanos(maxWait);
+        this.permits = new ResizableSemaphore(limit);
+    }
+
+    /**
+     * Runs the work once a slot is free.
+     *
+     * @throws RejectedException if no slot became free within the wait
+     */
+    public <T> T call(Supplier<T> work) {
+        acquire();
+        try {
+            return work.get();
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Takes a slot, to be given back with {@link #release()}.
+     *
+     * @throws RejectedException if no slot became free within the wait
+     */
+    public void acquire() {
+        boolean acquired;
+        try {
+            if (maxWaitNanos == Long.MAX_VALUE) {
+                permits.acquire();
+                acquired = true;
+            } else {
+                acquired = permits.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for shard " + shard, e);
+        }
+        if (!acquired) {
+            ShardMetrics.recordBulkheadRejection(shard);
+            throw new RejectedException("Shard " + shard + " is at its limit of " + getLimit() + " concurrent calls");
+        }
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    public synchronized int getLimit() {
+        return limit;
+    }
+
+    public synchronized void setLimit(int newLimit) {
+        if (newLimit <= 0) {
+            throw new IllegalArgumentException("Bulkhead limit must be positive: " + newLimit);
+        }
+        if (newLimit > limit) {
+            permits.release(newLimit - limit);
+        } else if (newLimit < limit) {
+            permits.reducePermits(limit - newLimit);
+        }
+        limit = newLimit;
+    }
+
+    /**
+     * Calls running right now.
+     */
+    public synchronized int getRunning() {
+        return Math.max(0, limit - permits.availablePermits());
+    }
+
+    public int getWaiting() {
+        return permits.getQueueLength();
+    }
+
+    public String getShard() {
+        return shard;
+    }
+
+    /**
+     * A call the bulkhead turned away because its shard was busy.
+     */
+    public static class RejectedException extends IllegalStateException {
+
+        private static final long serialVersionUID = 1L;
+
+        public RejectedException(String message) {
+            super(message);
+        }
+    }
+
+    private static final class ResizableSemaphore extends Semaphore {
+
+        private static final long serialVersionUID = 1L;
+
+        private ResizableSemaphore(int permits) {
+            super(permits, true);
+        }
+
+        @Override
+        protected void reducePermits(int reduction) {
+            super.reducePermits(reduction);
+        }
+    }
+}
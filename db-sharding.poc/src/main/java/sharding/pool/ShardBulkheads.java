@@ -0,0 +1,64 @@
+package sharding.pool;
+
+import com.zaxxer.hikari.HikariDataSource;
+import sharding.ShardingTopology;
+
+import javax.sql.DataSource;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * A {@link ShardBulkhead} per shard of the topology, created on first use with the size of the shard's write pool
+ * as its limit.
+ */
+public class ShardBulkheads {
+
+    private static final int DEFAULT_LIMIT = 10;
+
+    private final ShardingTopology topology;
+    private final long maxWait;
+    private final TimeUnit unit;
+    private final Map<String, ShardBulkhead> bulkheads = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxWait longest a call waits for a slot of its shard, {@code Long.MAX_VALUE} to wait without a
+     *                timeout
+     */
+    public ShardBulkheads(ShardingTopology topology, long maxWait, TimeUnit unit) {
+        this.topology = topology;
+        this.maxWait = maxWait;
+        this.unit = unit;
+    }
+
+    /**
+     * Runs the work in the bulkhead of the shard the sharding value of the table routes to.
+     *
+     * @throws ShardBulkhead.RejectedException if the shard stayed at its limit
+     */
+    public <T> T call(String logicTable, Comparable<?> shardingValue, Supplier<T> work) {
+        return bulkhead(topology.route(logicTable, shardingValue)).call(work);
+    }
+
+    /**
+     * The bulkhead of a logical data source.
+     */
+    public ShardBulkhead bulkhead(String shard) {
+        return bulkheads.computeIfAbsent(shard, key -> new ShardBulkhead(key, poolSize(key), maxWait, unit));
+    }
+
+    /**
+     * Bulkheads created so far, by shard.
+     */
+    public Map<String, ShardBulkhead> bulkheads() {
+        return new TreeMap<>(bulkheads);
+    }
+
+    // Reads on replicas are capped the same as the writes
+    private int poolSize(String shard) {
+        DataSource dataSource = topology.getWriteDataSource(shard);
+        return dataSource instanceof HikariDataSource hikari ? hikari.getMaximumPoolSize() : DEFAULT_LIMIT;
+    }
+}
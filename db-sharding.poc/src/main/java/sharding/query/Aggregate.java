@@ -0,0 +1,51 @@
+package sharding.query;
+
+import java.util.List;
+
+/**
+ * An aggregate over a column, computed per shard and combined by {@link PartialAggregateExecutor}.
+ */
+public record Aggregate(Function function, String column) {
+
+    public enum Function {
+        SUM, COUNT, AVG, MIN, MAX
+    }
+
+    public static Aggregate sum(String column) {
+        return new Aggregate(Function.SUM, column);
+    }
+
+    /**
+     * {@code COUNT(*)}.
+     */
+    public static Aggregate count() {
+        return new Aggregate(Function.COUNT, "*");
+    }
+
+    public static Aggregate count(String column) {
+        return new Aggregate(Function.COUNT, column);
+    }
+
+    public static Aggregate avg(String column) {
+        return new Aggregate(Function.AVG, column);
+    }
+
+    public static Aggregate min(String column) {
+        return new Aggregate(Function.MIN, column);
+    }
+
+    public static Aggregate max(String column) {
+        return new Aggregate(Function.MAX, column);
+    }
+
+    /**
+     * Select expressions of the partial aggregate a shard returns. An average is not combinable, a shard returns
+     * the sum and count it is computed from.
+     */
+    List<String> partialColumns() {
+        return switch (function) {
+            case AVG -> List.of("SUM(" + column + ")", "COUNT(" + column + ")");
+            default -> List.of(function + "(" + column + ")");
+        };
+    }
+}
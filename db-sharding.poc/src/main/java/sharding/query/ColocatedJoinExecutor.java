@@ -0,0 +1,84 @@
+package sharding.query;
+
+import sharding.ShardingTopology;
+import sharding.metrics.ShardMetrics;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Joins of co-located tables, pushed down to the shards as they are.
+ * <p>
+ * Tables routed by the same algorithm over the same data sources, e.g. {@code t_user} by {@code id} and
+ * {@code t_order} by {@code user_id}, keep the rows of equal sharding values on one shard, so a join on their
+ * sharding columns never needs a row of another shard. With the sharding value of the root table the join runs on
+ * that single shard; without it, it runs on every shard in parallel, each shard joining only its own rows. The
+ * SQL names the physical tables and is not rewritten. Co-location is checked once, when the executor is created.
+ */
+public class ColocatedJoinExecutor implements AutoCloseable {
+
+    private final ShardingTopology topology;
+    private final String rootTable;
+    private final Map<String, DataSource> shards;
+    private final ScatterGatherExecutor scatterGather;
+
+    /**
+     * @param rootTable    table whose sharding value picks the shard, e.g. {@code t_user}
+     * @param joinedTables tables joined on the sharding column of the root table
+     * @throws IllegalArgumentException if a joined table is not co-located with the root table
+     */
+    public ColocatedJoinExecutor(ShardingTopology topology, String rootTable, List<String> joinedTables) {
+        for (String joinedTable : joinedTables) {
+            if (!topology.isColocated(rootTable, joinedTable)) {
+                throw new IllegalArgumentException(joinedTable + " is not co-located with " + rootTable + ", a join would cross shards");
+            }
+        }
+        this.topology = topology;
+        this.rootTable = rootTable;
+        this.shards = topology.getShardDataSources(rootTable);
+        this.scatterGather = new ScatterGatherExecutor(shards, 10000, 10000);
+    }
+
+    /**
+     * Runs the join on the single shard of the sharding value.
+     */
+    public <T> List<T> query(Comparable<?> shardingValue, String sql, List<?> parameters, RowMapper<T> mapper) {
+        String shard = topology.route(rootTable, shardingValue);
+        try (Connection connection = shards.get(shard).getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int i = 0; i < parameters.size(); i++) {
+                statement.setObject(i + 1, parameters.get(i));
+            }
+            List<T> result = new ArrayList<>();
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    result.add(mapper.map(resultSet));
+                }
+            }
+            ShardMetrics.recordRows(shard, result.size());
+            return result;
+        } catch (SQLException e) {
+            throw new IllegalStateException("Join on " + shard + " failed: " + sql, e);
+        }
+    }
+
+    /**
+     * Runs the join on every shard in parallel, rows in no particular order. Close the stream when it is not
+     * consumed to the end.
+     */
+    public <T> Stream<T> queryAllShards(String sql, List<?> parameters, RowMapper<T> mapper) {
+        return scatterGather.stream(sql, parameters, mapper);
+    }
+
+    @Override
+    public void close() {
+        scatterGather.close();
+    }
+}
@@ -0,0 +1,191 @@
+package sharding.query;
+
+import java.util.List;
+import java.util.function.DoubleBinaryOperator;
+
+/**
+ * Aggregates by an integral group key, combined from the partial aggregates of the shards.
+ * <p>
+ * An open-addressing hash map of primitive {@code long} keys to the aggregate state of the group in one flat
+ * {@code double} array, so combining millions of partials neither boxes keys nor allocates per group. Values are
+ * doubles, exact for counts and integral sums up to 2<sup>53</sup>. A SQL {@code NULL} partial, e.g. the sum of
+ * a group without values on a shard, is {@code NaN} and does not change the aggregate.
+ */
+public class GroupedAggregates {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Aggregate.Function[] functions;
+    // Offset of every aggregate's state within a group's slots, an average takes two: sum and count
+    private final int[] offsets;
+    private final int slots;
+
+    private long[] keys;
+    private boolean[] used;
+    private double[] states;
+    private int size;
+
+    public GroupedAggregates(List<Aggregate> aggregates) {
+        this.functions = new Aggregate.Function[aggregates.size()];
+        this.offsets = new int[aggregates.size()];
+        int slot = 0;
+        for (int i = 0; i < aggregates.size(); i++) {
+            functions[i] = aggregates.get(i).function();
+            offsets[i] = slot;
+            slot += functions[i] == Aggregate.Function.AVG ? 2 : 1;
+        }
+        this.slots = slot;
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Number of values of a partial, the columns {@link Aggregate#partialColumns()} select for all aggregates.
+     */
+    public int partialWidth() {
+        return slots;
+    }
+
+    /**
+     * Combines a shard's partial aggregates of a group.
+     *
+     * @param partial the partial values in the order of {@link Aggregate#partialColumns()}, {@code NaN} for
+     *                {@code NULL}
+     */
+    public void merge(long group, double[] partial) {
+        int base = slotOf(group) * slots;
+        for (int i = 0; i < functions.length; i++) {
+            int offset = offsets[i];
+            int state = base + offset;
+            switch (functions[i]) {
+                case COUNT -> states[state] += partial[offset];
+                case AVG -> {
+                    if (!Double.isNaN(partial[offset])) {
+                        states[state] += partial[offset];
+                        states[state + 1] += partial[offset + 1];
+                    }
+                }
+                case SUM -> states[state] = combine(states[state], partial[offset], Double::sum);
+                case MIN -> states[state] = combine(states[state], partial[offset], Math::min);
+                case MAX -> states[state] = combine(states[state], partial[offset], Math::max);
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(long group) {
+        return indexOf(group) >= 0;
+    }
+
+    /**
+     * The group keys, in no particular order.
+     */
+    public long[] groups() {
+        long[] result = new long[size];
+        int next = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (used[i]) {
+                result[next++] = keys[i];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param aggregate index of the aggregate in the list the aggregates were created with
+     * @return the aggregate of the group, {@code NaN} when it is {@code NULL} or the group does not exist
+     */
+    public double get(long group, int aggregate) {
+        int index = indexOf(group);
+        if (index < 0) {
+            return Double.NaN;
+        }
+        int state = index * slots + offsets[aggregate];
+        if (functions[aggregate] == Aggregate.Function.AVG) {
+            return states[state + 1] == 0 ? Double.NaN : states[state] / states[state + 1];
+        }
+        return states[state];
+    }
+
+    private static double combine(double current, double partial, DoubleBinaryOperator operator) {
+        if (Double.isNaN(partial)) {
+            return current;
+        }
+        return Double.isNaN(current) ? partial : operator.applyAsDouble(current, partial);
+    }
+
+    private int indexOf(long group) {
+        int mask = keys.length - 1;
+        for (int index = hash(group) & mask; used[index]; index = (index + 1) & mask) {
+            if (keys[index] == group) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    // Index of the group, inserted with an empty state when new
+    private int slotOf(long group) {
+        int mask = keys.length - 1;
+        int index = hash(group) & mask;
+        while (used[index]) {
+            if (keys[index] == group) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        if (size + 1 > keys.length / 2) {
+            grow();
+            return slotOf(group);
+        }
+        used[index] = true;
+        keys[index] = group;
+        int base = index * slots;
+        for (int i = 0; i < functions.length; i++) {
+            Aggregate.Function function = functions[i];
+            if (function == Aggregate.Function.SUM || function == Aggregate.Function.MIN || function == Aggregate.Function.MAX) {
+                states[base + offsets[i]] = Double.NaN;
+            }
+        }
+        size++;
+        return index;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        boolean[] oldUsed = used;
+        double[] oldStates = states;
+        allocate(keys.length * 2);
+        int mask = keys.length - 1;
+        for (int old = 0; old < oldKeys.length; old++) {
+            if (oldUsed[old]) {
+                int index = hash(oldKeys[old]) & mask;
+                while (used[index]) {
+                    index = (index + 1) & mask;
+                }
+                used[index] = true;
+                keys[index] = oldKeys[old];
+                System.arraycopy(oldStates, old * slots, states, index * slots, slots);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        used = new boolean[capacity];
+        states = new double[capacity * slots];
+    }
+
+    // Spreads sequential keys such as ids over the table, the finalizer of MurmurHash3
+    private static int hash(long key) {
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+}
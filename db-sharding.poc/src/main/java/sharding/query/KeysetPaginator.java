@@ -0,0 +1,153 @@
+package sharding.query;
+
+import entity.Order;
+import entity.User;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Keyset pagination over all shards of a table, for pages that cost the same however deep they are.
+ * <p>
+ * The opaque cursor of a page holds the last key returned from every shard. The next page asks each shard only
+ * for the rows after its own last key ({@code WHERE key > ? ORDER BY key LIMIT n}), so every shard reads at most
+ * one page plus one row from its index instead of skipping an {@code OFFSET}, and the rows are merged k-way while
+ * they stream in. The key has to be unique within a shard, e.g. the primary key; keys are compared in Java to
+ * merge, a shard's progress does not depend on it, so a collation that orders differently cannot skip or repeat
+ * rows.
+ */
+public class KeysetPaginator<T, K extends Comparable<? super K>> {
+
+    private final ScatterGatherExecutor executor;
+    private final String select;
+    private final String keyColumn;
+    private final boolean descending;
+    private final RowMapper<T> mapper;
+    private final Function<T, K> keyOf;
+    private final Function<K, String> encodeKey;
+    private final Function<String, K> decodeKey;
+
+    /**
+     * @param select    the query without {@code WHERE}, {@code ORDER BY} and {@code LIMIT}, e.g.
+     *                  {@code SELECT id, username, email FROM t_user}
+     * @param keyColumn the column the pages are sorted by, unique within a shard
+     */
+    public KeysetPaginator(ScatterGatherExecutor executor, String select, String keyColumn, boolean descending, RowMapper<T> mapper,
+                           Function<T, K> keyOf, Function<K, String> encodeKey, Function<String, K> decodeKey) {
+        this.executor = executor;
+        this.select = select;
+        this.keyColumn = keyColumn;
+        this.descending = descending;
+        this.mapper = mapper;
+        this.keyOf = keyOf;
+        this.encodeKey = encodeKey;
+        this.decodeKey = decodeKey;
+    }
+
+    /**
+     * Users sorted by id.
+     */
+    public static KeysetPaginator<User, String> users(ScatterGatherExecutor executor) {
+        return new KeysetPaginator<>(executor, "SELECT id, username, email FROM t_user", "id", false, resultSet -> {
+            User user = new User();
+            user.setId(resultSet.getString(1));
+            user.setUsername(resultSet.getString(2));
+            user.setEmail(resultSet.getString(3));
+            return user;
+        }, User::getId, Function.identity(), Function.identity());
+    }
+
+    /**
+     * Orders sorted by id. The ids of {@link sharding.id.ShardedIdGenerator} start with their creation time, so this
+     * is also the order they were created in, newest first with {@code descending}.
+     */
+    public static KeysetPaginator<Order, Long> orders(ScatterGatherExecutor executor, boolean descending) {
+        return new KeysetPaginator<>(executor, "SELECT id, user_id, total_amount FROM t_order", "id", descending, resultSet -> {
+            Order order = new Order();
+            order.setId(resultSet.getLong(1));
+            order.setUser_id(resultSet.getLong(2));
+            order.setTotal_amount(resultSet.getDouble(3));
+            return order;
+        }, Order::getId, String::valueOf, Long::valueOf);
+    }
+
+    /**
+     * The page after the cursor.
+     *
+     * @param cursor the {@link Page#nextCursor()} of the previous page, {@code null} for the first page
+     */
+    public Page<T> page(String cursor, int pageSize) {
+        Map<String, K> lastKeys = cursor == null ? new HashMap<>() : decode(cursor);
+        Comparator<K> keyOrder = descending ? Comparator.<K>reverseOrder() : Comparator.<K>naturalOrder();
+
+        // One row more than the page tells whether there is a next page
+        String firstPage = select + " ORDER BY " + keyColumn + (descending ? " DESC" : "") + " LIMIT ?";
+        String nextPage = select + " WHERE " + keyColumn + (descending ? " < ?" : " > ?") + " ORDER BY " + keyColumn
+                + (descending ? " DESC" : "") + " LIMIT ?";
+        List<T> rows = new ArrayList<>(pageSize);
+        boolean more = false;
+        try (Stream<ScatterGatherExecutor.ShardRow<T>> merged = executor.streamPerShard(shard -> {
+            K lastKey = lastKeys.get(shard);
+            return lastKey == null
+                    ? new ScatterGatherExecutor.ShardStatement(firstPage, List.of(pageSize + 1))
+                    : new ScatterGatherExecutor.ShardStatement(nextPage, List.of(lastKey, pageSize + 1));
+        }, mapper, Comparator.comparing(keyOf, keyOrder), pageSize + 1)) {
+            Iterator<ScatterGatherExecutor.ShardRow<T>> iterator = merged.iterator();
+            while (iterator.hasNext()) {
+                ScatterGatherExecutor.ShardRow<T> row = iterator.next();
+                if (rows.size() == pageSize) {
+                    more = true;
+                    break;
+                }
+                rows.add(row.row());
+                lastKeys.put(row.shard(), keyOf.apply(row.row()));
+            }
+        }
+        return new Page<>(rows, more ? encode(lastKeys) : null);
+    }
+
+    private String encode(Map<String, K> lastKeys) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(lastKeys.size());
+            for (Map.Entry<String, K> entry : lastKeys.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeUTF(encodeKey.apply(entry.getValue()));
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+    }
+
+    private Map<String, K> decode(String cursor) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.getUrlDecoder().decode(cursor)))) {
+            int shards = in.readInt();
+            Map<String, K> result = new HashMap<>();
+            for (int i = 0; i < shards; i++) {
+                result.put(in.readUTF(), decodeKey.apply(in.readUTF()));
+            }
+            return result;
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid page cursor: " + cursor, e);
+        }
+    }
+
+    /**
+     * @param nextCursor cursor of the following page, {@code null} on the last page
+     */
+    public record Page<T>(List<T> rows, String nextCursor) {
+    }
+}
@@ -0,0 +1,97 @@
+package sharding.query;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * {@code SUM}, {@code COUNT}, {@code AVG}, {@code MIN} and {@code MAX}, optionally grouped, over all shards of a
+ * table without reading its rows into the JVM.
+ * <p>
+ * Every shard computes the partial aggregates of its own rows ({@code SELECT group, SUM(x), ... GROUP BY group}),
+ * all shards at the same time, and returns one row per group. The partials are combined into
+ * {@link GroupedAggregates} while they arrive; an average is computed from the combined sum and count, as the
+ * averages of the shards can't be combined.
+ */
+public class PartialAggregateExecutor {
+
+    // Group of the single result row when aggregating without GROUP BY
+    private static final long ALL = 0;
+
+    private final ScatterGatherExecutor executor;
+
+    public PartialAggregateExecutor(ScatterGatherExecutor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Aggregates grouped by an integral, not nullable column, e.g. the revenue per user:
+     * {@code aggregate("t_order", "user_id", null, List.of(), List.of(Aggregate.sum("total_amount")))}.
+     *
+     * @param where condition without {@code WHERE}, {@code null} for all rows
+     */
+    public GroupedAggregates aggregate(String table, String groupColumn, String where, List<?> parameters, List<Aggregate> aggregates) {
+        return combine(sql(table, groupColumn, where, aggregates), parameters, aggregates, true);
+    }
+
+    /**
+     * Aggregates of all rows, e.g. {@code SELECT COUNT(*) FROM t_user}.
+     *
+     * @param where condition without {@code WHERE}, {@code null} for all rows
+     * @return the aggregates in the order given, {@code NaN} for {@code NULL}
+     */
+    public double[] aggregate(String table, String where, List<?> parameters, List<Aggregate> aggregates) {
+        GroupedAggregates result = combine(sql(table, null, where, aggregates), parameters, aggregates, false);
+        double[] values = new double[aggregates.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = result.get(ALL, i);
+        }
+        return values;
+    }
+
+    private GroupedAggregates combine(String sql, List<?> parameters, List<Aggregate> aggregates, boolean grouped) {
+        GroupedAggregates result = new GroupedAggregates(aggregates);
+        int width = result.partialWidth();
+        RowMapper<Partial> mapper = resultSet -> {
+            int column = 1;
+            long group = grouped ? resultSet.getLong(column++) : ALL;
+            double[] values = new double[width];
+            for (int i = 0; i < width; i++) {
+                values[i] = value(resultSet, column++);
+            }
+            return new Partial(group, values);
+        };
+        try (Stream<Partial> partials = executor.stream(sql, parameters, mapper)) {
+            partials.forEach(partial -> result.merge(partial.group, partial.values));
+        }
+        return result;
+    }
+
+    private static double value(ResultSet resultSet, int column) throws SQLException {
+        double value = resultSet.getDouble(column);
+        return resultSet.wasNull() ? Double.NaN : value;
+    }
+
+    private static String sql(String table, String groupColumn, String where, List<Aggregate> aggregates) {
+        List<String> columns = new ArrayList<>();
+        if (groupColumn != null) {
+            columns.add(groupColumn);
+        }
+        for (Aggregate aggregate : aggregates) {
+            columns.addAll(aggregate.partialColumns());
+        }
+        StringBuilder sql = new StringBuilder("SELECT ").append(String.join(", ", columns)).append(" FROM ").append(table);
+        if (where != null) {
+            sql.append(" WHERE ").append(where);
+        }
+        if (groupColumn != null) {
+            sql.append(" GROUP BY ").append(groupColumn);
+        }
+        return sql.toString();
+    }
+
+    private record Partial(long group, double[] values) {
+    }
+}
@@ -0,0 +1,16 @@
+package sharding.query;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Maps the current row of a shard's result set, called on the thread reading that shard.
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+
+    /**
+     * @return the mapped row, never {@code null}
+     */
+    T map(ResultSet resultSet) throws SQLException;
+}
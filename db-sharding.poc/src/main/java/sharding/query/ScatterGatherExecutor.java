@@ -0,0 +1,349 @@
+package sharding.query;
+
+import sharding.ShardingTopology;
+import sharding.metrics.ShardMetrics;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Runs one statement on every shard at the same time, each shard on its own connection and thread, and returns
+ * the rows as a {@link Stream} while they arrive.
+ * <p>
+ * Every shard reads through a server-side cursor ({@code fetchSize}) into a small bounded buffer, so the heap
+ * holds at most {@code bufferedRowsPerShard} rows per shard however large the result is. With an order the
+ * shard results are merged k-way, which requires every shard statement to return its rows in that same order
+ * (an {@code ORDER BY} in the SQL). A limit stops the merge and cancels the shard statements once reached; each
+ * shard never needs more than the limit, so the statements should carry the same {@code LIMIT}.
+ * <p>
+ * Close the returned stream (try-with-resources) when it is not consumed to the end, that cancels the shard
+ * statements and returns their connections.
+ */
+public class ScatterGatherExecutor implements AutoCloseable {
+
+    private static final long POLL_INTERVAL_MS = 100;
+    private static final Object END = new Object();
+
+    private final Map<String, DataSource> shards;
+    private final int fetchSize;
+    private final int bufferedRowsPerShard;
+    private final ExecutorService executor;
+
+    /**
+     * @param shards               data source of each shard, the statements are run on all of them
+     * @param fetchSize            rows fetched per round trip from a shard's cursor
+     * @param bufferedRowsPerShard rows read ahead per shard before its reader waits for the consumer
+     */
+    public ScatterGatherExecutor(Map<String, DataSource> shards, int fetchSize, int bufferedRowsPerShard) {
+        this.shards = shards;
+        this.fetchSize = fetchSize;
+        this.bufferedRowsPerShard = bufferedRowsPerShard;
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "scatter-gather");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queries the physical shards of a ShardingSphere table, the SQL is executed as is on every shard.
+     */
+    public static ScatterGatherExecutor forShardingSphere(ShardingTopology topology, String logicTable) {
+        return new ScatterGatherExecutor(topology.getShardDataSources(logicTable), 10000, 10000);
+    }
+
+    /**
+     * Rows of all shards in no particular order, as soon as any shard returns them.
+     */
+    public <T> Stream<T> stream(String sql, List<?> parameters, RowMapper<T> mapper) {
+        return stream(sql, parameters, mapper, null, 0);
+    }
+
+    /**
+     * Rows of all shards merged in the given order.
+     *
+     * @param order the order each shard returns its rows in, {@code null} for no order
+     * @param limit rows returned at most, {@code 0} for all
+     */
+    public <T> Stream<T> stream(String sql, List<?> parameters, RowMapper<T> mapper, Comparator<? super T> order, long limit) {
+        ShardStatement statement = new ShardStatement(sql, parameters);
+        return start(new ScatterQuery<>(order, limit), shard -> statement, shard -> mapper);
+    }
+
+    /**
+     * Rows of the shards merged in the given order, every shard running its own statement, each row with the shard
+     * it came from.
+     *
+     * @param statements the statement of a shard by name, {@code null} to leave the shard out
+     * @param order      the order each shard returns its rows in, {@code null} for no order
+     * @param limit      rows returned at most, {@code 0} for all
+     */
+    public <T> Stream<ShardRow<T>> streamPerShard(Function<String, ShardStatement> statements, RowMapper<T> mapper,
+                                                  Comparator<? super T> order, long limit) {
+        Comparator<ShardRow<T>> rowOrder = order == null ? null : Comparator.comparing(ShardRow::row, order);
+        return start(new ScatterQuery<>(rowOrder, limit), statements, shard -> resultSet -> new ShardRow<>(shard, mapper.map(resultSet)));
+    }
+
+    /**
+     * Sums a single number returned by every shard, e.g. {@code SELECT COUNT(*) FROM t_user}.
+     */
+    public long sum(String sql, List<?> parameters) {
+        try (Stream<Long> values = stream(sql, parameters, resultSet -> resultSet.getLong(1))) {
+            return values.mapToLong(Long::longValue).sum();
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private <T> Stream<T> start(ScatterQuery<T> query, Function<String, ShardStatement> statements,
+                                Function<String, RowMapper<? extends T>> mappers) {
+        query.start(statements, mappers);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(query, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(query::cancel);
+    }
+
+    /**
+     * A statement and its parameters.
+     */
+    public record ShardStatement(String sql, List<?> parameters) {
+    }
+
+    /**
+     * A row and the shard it was read from.
+     */
+    public record ShardRow<T>(String shard, T row) {
+    }
+
+    private final class ScatterQuery<T> implements Iterator<T> {
+
+        private final Comparator<? super T> order;
+        private final long limit;
+        private final List<ShardCursor> cursors = new ArrayList<>();
+        private final BlockingQueue<Object> sharedQueue;
+        private volatile boolean cancelled;
+
+        private PriorityQueue<Head<T>> heads;
+        private int openShards;
+        private long returned;
+        private T next;
+
+        private ScatterQuery(Comparator<? super T> order, long limit) {
+            this.order = order;
+            this.limit = limit;
+            // Without an order the rows of all shards are consumed from one queue, in arrival order
+            this.sharedQueue = order == null ? new ArrayBlockingQueue<>(bufferedRowsPerShard * Math.max(1, shards.size())) : null;
+        }
+
+        private void start(Function<String, ShardStatement> statements, Function<String, RowMapper<? extends T>> mappers) {
+            int index = 0;
+            for (Map.Entry<String, DataSource> shard : shards.entrySet()) {
+                ShardStatement statement = statements.apply(shard.getKey());
+                if (statement == null) {
+                    continue;
+                }
+                BlockingQueue<Object> queue = sharedQueue != null ? sharedQueue : new ArrayBlockingQueue<>(bufferedRowsPerShard);
+                ShardCursor cursor = new ShardCursor(index++, shard.getKey(), shard.getValue(), statement, mappers.apply(shard.getKey()), queue);
+                cursors.add(cursor);
+            }
+            openShards = cursors.size();
+            for (ShardCursor cursor : cursors) {
+                executor.execute(() -> read(cursor));
+            }
+        }
+
+        private void read(ShardCursor cursor) {
+            try (Connection connection = cursor.dataSource.getConnection()) {
+                // PostgreSQL only streams through a cursor inside a transaction
+                connection.setAutoCommit(false);
+                try (PreparedStatement statement = connection.prepareStatement(cursor.statement.sql())) {
+                    cursor.running = statement;
+                    statement.setFetchSize(fetchSize);
+                    if (limit > 0 && limit <= Integer.MAX_VALUE) {
+                        statement.setMaxRows((int) limit);
+                    }
+                    List<?> parameters = cursor.statement.parameters();
+                    for (int i = 0; i < parameters.size(); i++) {
+                        statement.setObject(i + 1, parameters.get(i));
+                    }
+                    if (cancelled) {
+                        return;
+                    }
+                    long rows = 0;
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        while (!cancelled && resultSet.next()) {
+                            put(cursor.queue, new Row(cursor.index, cursor.mapper.map(resultSet)));
+                            rows++;
+                        }
+                    }
+                    ShardMetrics.recordRows(cursor.name, rows);
+                } finally {
+                    connection.rollback();
+                }
+                put(cursor.queue, new Row(cursor.index, END));
+            } catch (Throwable e) {
+                put(cursor.queue, new Failure(cursor.name, cursor.statement.sql(), e));
+            }
+        }
+
+        // The consumer may stop reading at any time, so a waiting reader re-checks for cancellation periodically
+        private void put(BlockingQueue<Object> queue, Object element) {
+            try {
+                while (!cancelled && !queue.offer(element, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+                    // wait for the consumer
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !cancelled) {
+                next = limit > 0 && returned >= limit ? null : order == null ? nextUnordered() : nextOrdered();
+                if (next == null) {
+                    cancel();
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            T result = next;
+            next = null;
+            returned++;
+            return result;
+        }
+
+        private T nextUnordered() {
+            while (openShards > 0) {
+                Row row = take(sharedQueue);
+                if (row.value != END) {
+                    return cast(row.value);
+                }
+                openShards--;
+            }
+            return null;
+        }
+
+        private T nextOrdered() {
+            if (heads == null) {
+                heads = new PriorityQueue<>(Math.max(1, cursors.size()), (a, b) -> {
+                    int result = order.compare(a.value, b.value);
+                    return result != 0 ? result : Integer.compare(a.shard, b.shard);
+                });
+                for (ShardCursor cursor : cursors) {
+                    advance(cursor.index);
+                }
+            }
+            Head<T> head = heads.poll();
+            if (head == null) {
+                return null;
+            }
+            advance(head.shard);
+            return head.value;
+        }
+
+        private void advance(int shard) {
+            Row row = take(cursors.get(shard).queue);
+            if (row.value != END) {
+                heads.add(new Head<>(shard, cast(row.value)));
+            }
+        }
+
+        private Row take(BlockingQueue<Object> queue) {
+            Object element;
+            try {
+                element = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancel();
+                throw new IllegalStateException("Interrupted while waiting for shard rows", e);
+            }
+            if (element instanceof Failure failure) {
+                cancel();
+                throw new IllegalStateException("Scatter-gather query failed on " + failure.shard + ": " + failure.sql, failure.cause);
+            }
+            return (Row) element;
+        }
+
+        @SuppressWarnings("unchecked")
+        private T cast(Object value) {
+            return (T) value;
+        }
+
+        private void cancel() {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            next = null;
+            for (ShardCursor cursor : cursors) {
+                PreparedStatement statement = cursor.running;
+                if (statement != null) {
+                    try {
+                        statement.cancel();
+                    } catch (SQLException ignored) {
+                        // The statement finished or its connection is gone already
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class ShardCursor {
+
+        private final int index;
+        private final String name;
+        private final DataSource dataSource;
+        private final ShardStatement statement;
+        private final RowMapper<?> mapper;
+        private final BlockingQueue<Object> queue;
+        private volatile PreparedStatement running;
+
+        private ShardCursor(int index, String name, DataSource dataSource, ShardStatement statement, RowMapper<?> mapper,
+                            BlockingQueue<Object> queue) {
+            this.index = index;
+            this.name = name;
+            this.dataSource = dataSource;
+            this.statement = statement;
+            this.mapper = mapper;
+            this.queue = queue;
+        }
+    }
+
+    private record Row(int shard, Object value) {
+    }
+
+    private record Head<T>(int shard, T value) {
+    }
+
+    private record Failure(String shard, String sql, Throwable cause) {
+    }
+}
@@ -0,0 +1,151 @@
+package sharding.query;
+
+import entity.User;
+import sharding.ShardingTopology;
+import sharding.metrics.ShardMetrics;
+
+import javax.sql.DataSource;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Multi-get by primary key that sends every shard only its own ids.
+ * <p>
+ * The ids are partitioned with the live sharding algorithm of the table, each shard's ids are split into chunks
+ * of at most {@code chunkSize} and all chunks are queried in parallel straight on the shards, as
+ * {@code WHERE id = ANY(?)} with one array parameter, so every chunk size shares one prepared statement.
+ */
+public class ShardedMultiGet<T> implements AutoCloseable {
+
+    private final ShardingTopology topology;
+    private final String logicTable;
+    private final String sql;
+    private final String arrayType;
+    private final RowMapper<T> mapper;
+    private final Function<T, String> idOf;
+    private final int chunkSize;
+    private final Map<String, DataSource> shards;
+    private final ExecutorService executor;
+
+    /**
+     * @param columns   selected columns, in the order the mapper reads them
+     * @param idColumn  sharding column and primary key of the table
+     * @param arrayType SQL type of the id array, e.g. {@code varchar}
+     * @param chunkSize ids per statement at most
+     * @param threads   chunks queried at the same time
+     */
+    public ShardedMultiGet(ShardingTopology topology, String logicTable, String columns, String idColumn, String arrayType,
+                           RowMapper<T> mapper, Function<T, String> idOf, int chunkSize, int threads) {
+        this.topology = topology;
+        this.logicTable = logicTable;
+        this.sql = "SELECT " + columns + " FROM " + logicTable + " WHERE " + idColumn + " = ANY(?)";
+        this.arrayType = arrayType;
+        this.mapper = mapper;
+        this.idOf = idOf;
+        this.chunkSize = chunkSize;
+        this.shards = topology.getShardDataSources(logicTable);
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "multi-get-" + logicTable);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static ShardedMultiGet<User> users(ShardingTopology topology, int chunkSize, int threads) {
+        return new ShardedMultiGet<>(topology, "t_user", "id, username, email", "id", "varchar", resultSet -> {
+            User user = new User();
+            user.setId(resultSet.getString(1));
+            user.setUsername(resultSet.getString(2));
+            user.setEmail(resultSet.getString(3));
+            return user;
+        }, User::getId, chunkSize, threads);
+    }
+
+    /**
+     * Rows of the ids that exist, in the order of the ids. An id given more than once is queried once and
+     * returned at each of its positions.
+     */
+    public List<T> findAllByIds(Collection<String> ids) {
+        Map<String, List<String>> idsPerShard = new LinkedHashMap<>();
+        for (String id : new LinkedHashSet<>(ids)) {
+            idsPerShard.computeIfAbsent(topology.route(logicTable, id), shard -> new ArrayList<>()).add(id);
+        }
+
+        Map<String, T> found = new ConcurrentHashMap<>(ids.size() * 2);
+        List<Future<?>> chunks = new ArrayList<>();
+        for (Map.Entry<String, List<String>> entry : idsPerShard.entrySet()) {
+            String shard = entry.getKey();
+            DataSource dataSource = shards.get(shard);
+            List<String> shardIds = entry.getValue();
+            for (int from = 0; from < shardIds.size(); from += chunkSize) {
+                List<String> chunk = shardIds.subList(from, Math.min(from + chunkSize, shardIds.size()));
+                chunks.add(executor.submit(() -> {
+                    query(shard, dataSource, chunk, found);
+                    return null;
+                }));
+            }
+        }
+        try {
+            for (Future<?> chunk : chunks) {
+                chunk.get();
+            }
+        } catch (ExecutionException e) {
+            chunks.forEach(chunk -> chunk.cancel(true));
+            throw new IllegalStateException("Multi-get on " + logicTable + " failed", e.getCause());
+        } catch (InterruptedException e) {
+            chunks.forEach(chunk -> chunk.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted during multi-get on " + logicTable, e);
+        }
+
+        List<T> result = new ArrayList<>(found.size());
+        for (String id : ids) {
+            T row = found.get(id);
+            if (row != null) {
+                result.add(row);
+            }
+        }
+        return result;
+    }
+
+    private void query(String shard, DataSource dataSource, List<String> ids, Map<String, T> found) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            Array array = connection.createArrayOf(arrayType, ids.toArray());
+            try {
+                statement.setArray(1, array);
+                long rows = 0;
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        T row = mapper.map(resultSet);
+                        found.put(idOf.apply(row), row);
+                        rows++;
+                    }
+                }
+                ShardMetrics.recordRows(shard, rows);
+            } finally {
+                array.free();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
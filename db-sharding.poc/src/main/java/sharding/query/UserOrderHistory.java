@@ -0,0 +1,82 @@
+package sharding.query;
+
+import entity.Order;
+import entity.User;
+import sharding.ShardingTopology;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pages of a user's orders, newest first, with the user: one join on the user's shard, as {@code t_order} is
+ * co-located with {@code t_user}.
+ */
+public class UserOrderHistory implements AutoCloseable {
+
+    // t_user.id holds the numeric ids of sharding.id.ShardedIdGenerator as text, the parsed id is bound for
+    // t_order.user_id so its index is used
+    private static final String SQL = "SELECT u.id, u.username, u.email, o.id, o.user_id, o.total_amount FROM t_user u"
+            + " LEFT JOIN t_order o ON o.user_id = ? AND o.id < ?"
+            + " WHERE u.id = ? ORDER BY o.id DESC LIMIT ?";
+
+    private final ColocatedJoinExecutor joins;
+
+    public UserOrderHistory(ShardingTopology topology) {
+        this.joins = new ColocatedJoinExecutor(topology, "t_user", List.of("t_order"));
+    }
+
+    /**
+     * Orders of the user older than {@code beforeOrderId}; the ids of {@link sharding.id.ShardedIdGenerator} start
+     * with their creation time.
+     *
+     * @param userId        numeric user id
+     * @param beforeOrderId {@link Page#nextBeforeOrderId()} of the previous page, {@code null} for the newest
+     * @throws NumberFormatException if the user id is not numeric
+     */
+    public Page page(String userId, Long beforeOrderId, int pageSize) {
+        List<Object> parameters = List.of(Long.parseLong(userId), beforeOrderId != null ? beforeOrderId : Long.MAX_VALUE, userId, pageSize);
+        List<Row> rows = joins.query(userId, SQL, parameters,
+                resultSet -> {
+                    User user = new User();
+                    user.setId(resultSet.getString(1));
+                    user.setUsername(resultSet.getString(2));
+                    user.setEmail(resultSet.getString(3));
+                    long orderId = resultSet.getLong(4);
+                    if (resultSet.wasNull()) {
+                        return new Row(user, null);
+                    }
+                    Order order = new Order();
+                    order.setId(orderId);
+                    order.setUser_id(resultSet.getLong(5));
+                    order.setTotal_amount((Double) resultSet.getObject(6));
+                    return new Row(user, order);
+                });
+        if (rows.isEmpty()) {
+            return new Page(null, List.of(), null);
+        }
+        List<Order> orders = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            if (row.order() != null) {
+                orders.add(row.order());
+            }
+        }
+        Long next = orders.size() == pageSize ? orders.get(orders.size() - 1).getId() : null;
+        return new Page(rows.get(0).user(), orders, next);
+    }
+
+    @Override
+    public void close() {
+        joins.close();
+    }
+
+    /**
+     * @param user              {@code null} if the user does not exist
+     * @param nextBeforeOrderId cursor of the following page, {@code null} on the last page
+     */
+    public record Page(User user, List<Order> orders, Long nextBeforeOrderId) {
+    }
+
+    // A user left-joined with one of its orders, the order null when the user has none
+    private record Row(User user, Order order) {
+    }
+}
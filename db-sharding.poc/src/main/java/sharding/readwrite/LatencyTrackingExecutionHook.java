@@ -0,0 +1,49 @@
+package sharding.readwrite;
+
+import org.apache.shardingsphere.infra.database.core.connector.ConnectionProperties;
+import org.apache.shardingsphere.infra.executor.sql.hook.SQLExecutionHook;
+
+import java.util.List;
+
+/**
+ * Feeds the {@link ReplicaStats} from every statement ShardingSphere executes: the latency per physical data
+ * source, and in the {@link ReplicaStats.Session} of the calling thread whether it has just written. Registered through
+ * {@code META-INF/services/org.apache.shardingsphere.infra.executor.sql.hook.SQLExecutionHook}.
+ * <p>
+ * A failed statement counts with a tenfold latency, so a failing replica loses its share quickly.
+ */
+public class LatencyTrackingExecutionHook implements SQLExecutionHook {
+
+    private static final int FAILURE_PENALTY = 10;
+
+    private String dataSourceName;
+    private long startNanos;
+
+    @Override
+    public void start(String dataSourceName, String sql, List<Object> parameters, ConnectionProperties connectionProperties, boolean isTrunkThread) {
+        this.dataSourceName = dataSourceName;
+        this.startNanos = System.nanoTime();
+        // Only the trunk thread is the caller's thread, units run on worker threads don't belong to the session
+        if (isTrunkThread && !isRead(sql)) {
+            ReplicaStats.markWrite();
+        }
+    }
+
+    @Override
+    public void finishSuccess() {
+        ReplicaStats.replica(dataSourceName).recordLatency(System.nanoTime() - startNanos);
+    }
+
+    @Override
+    public void finishFailure(Exception cause) {
+        ReplicaStats.replica(dataSourceName).recordLatency((System.nanoTime() - startNanos) * FAILURE_PENALTY);
+    }
+
+    static boolean isRead(String sql) {
+        int start = 0;
+        while (start < sql.length() && (Character.isWhitespace(sql.charAt(start)) || sql.charAt(start) == '(')) {
+            start++;
+        }
+        return sql.regionMatches(true, start, "SELECT", 0, 6) || sql.regionMatches(true, start, "SHOW", 0, 4);
+    }
+}
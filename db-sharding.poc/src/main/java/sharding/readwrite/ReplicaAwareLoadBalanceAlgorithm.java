@@ -0,0 +1,120 @@
+package sharding.readwrite;
+
+import org.apache.shardingsphere.infra.algorithm.loadbalancer.core.LoadBalanceAlgorithm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read load balancer that prefers fast replicas, skips lagging ones and keeps a session on the primary right after
+ * it wrote. Configured in the YAML as:
+ * <pre>
+ * loadBalancers:
+ *   replica_aware:
+ *     type: REPLICA_AWARE
+ *     props:
+ *       max-replication-lag-millis: 1000
+ *       read-your-writes-millis: 2000
+ *       lag-sample-interval-millis: 1000
+ * </pre>
+ * <ul>
+ *     <li>Replicas are picked at random, weighted by the inverse of their moving average latency as measured by
+ *     the {@link LatencyTrackingExecutionHook}.</li>
+ *     <li>Replicas whose lag exceeds the maximum are skipped. The lag is sampled every
+ *     {@code lag-sample-interval-millis} by the {@link ReplicaLagMonitor} that {@link sharding.ShardingTopology#from}
+ *     starts. Lag samples older than {@code lag-sample-max-age-millis} are ignored, so a stopped monitor doesn't
+ *     eject replicas forever. Without a usable replica reads go to the primary.</li>
+ *     <li>For {@code read-your-writes-millis} after a {@link ReplicaStats.Session} wrote its reads go to the
+ *     primary. The primary of a group is known once its {@link ReplicaLagMonitor} started.</li>
+ * </ul>
+ */
+public class ReplicaAwareLoadBalanceAlgorithm implements LoadBalanceAlgorithm {
+
+    public static final String MAX_REPLICATION_LAG_MILLIS_KEY = "max-replication-lag-millis";
+    public static final String READ_YOUR_WRITES_MILLIS_KEY = "read-your-writes-millis";
+    public static final String LAG_SAMPLE_MAX_AGE_MILLIS_KEY = "lag-sample-max-age-millis";
+    public static final String LAG_SAMPLE_INTERVAL_MILLIS_KEY = "lag-sample-interval-millis";
+
+    private static final double UNKNOWN_LATENCY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final double MIN_LATENCY_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+
+    private long maxReplicationLagMillis;
+    private long readYourWritesNanos;
+    private long lagSampleMaxAgeNanos;
+    private long lagSampleIntervalMillis;
+
+    @Override
+    public void init(Properties props) {
+        maxReplicationLagMillis = Long.parseLong(props.getProperty(MAX_REPLICATION_LAG_MILLIS_KEY, "1000"));
+        readYourWritesNanos = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(props.getProperty(READ_YOUR_WRITES_MILLIS_KEY, "2000")));
+        lagSampleMaxAgeNanos = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(props.getProperty(LAG_SAMPLE_MAX_AGE_MILLIS_KEY, "10000")));
+        lagSampleIntervalMillis = Long.parseLong(props.getProperty(LAG_SAMPLE_INTERVAL_MILLIS_KEY, "1000"));
+    }
+
+    public long getLagSampleIntervalMillis() {
+        return lagSampleIntervalMillis;
+    }
+
+    @Override
+    public String getTargetName(String groupName, List<String> availableTargetNames) {
+        String primary = ReplicaStats.primaryOf(groupName);
+        if (primary != null && readYourWritesNanos > 0 && ReplicaStats.wroteWithin(readYourWritesNanos)) {
+            return primary;
+        }
+
+        List<String> candidates = new ArrayList<>(availableTargetNames.size());
+        for (String name : availableTargetNames) {
+            if (!isLagging(ReplicaStats.replica(name))) {
+                candidates.add(name);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return primary != null ? primary : pick(availableTargetNames);
+        }
+        return pick(candidates);
+    }
+
+    private boolean isLagging(ReplicaStats.Replica replica) {
+        return replica.hasRecentLag(lagSampleMaxAgeNanos) && replica.getLagMillis() > maxReplicationLagMillis;
+    }
+
+    private String pick(List<String> candidates) {
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+        double[] latencies = new double[candidates.size()];
+        double knownLatencies = 0;
+        int known = 0;
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = ReplicaStats.replica(candidates.get(i)).getLatencyNanos();
+            if (!Double.isNaN(latencies[i])) {
+                knownLatencies += latencies[i];
+                known++;
+            }
+        }
+        // A replica without statements yet counts with the average latency, so it receives traffic and gets measured
+        double unknownLatency = known > 0 ? knownLatencies / known : UNKNOWN_LATENCY_NANOS;
+        double[] weights = new double[latencies.length];
+        double total = 0;
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = 1 / Math.max(MIN_LATENCY_NANOS, Double.isNaN(latencies[i]) ? unknownLatency : latencies[i]);
+            total += weights[i];
+        }
+        double random = ThreadLocalRandom.current().nextDouble(total);
+        for (int i = 0; i < weights.length; i++) {
+            random -= weights[i];
+            if (random < 0) {
+                return candidates.get(i);
+            }
+        }
+        return candidates.get(candidates.size() - 1);
+    }
+
+    @Override
+    public String getType() {
+        return "REPLICA_AWARE";
+    }
+}
@@ -0,0 +1,134 @@
+package sharding.readwrite;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.apache.shardingsphere.mode.manager.ContextManager;
+import org.apache.shardingsphere.readwritesplitting.rule.ReadwriteSplittingDataSourceGroupRule;
+import org.apache.shardingsphere.readwritesplitting.rule.ReadwriteSplittingRule;
+import sharding.ShardingTopology;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples the replication lag of every read data source of the read/write splitting rule in a fixed interval and
+ * publishes it, together with the primary of each group, to the {@link ReplicaStats} the
+ * {@link ReplicaAwareLoadBalanceAlgorithm} decides with. {@link ShardingTopology#from} starts one per ShardingSphere
+ * context whose groups balance with that algorithm, see {@link #startIfReplicaAware}; it stops by itself once the
+ * data sources of its context are closed.
+ * <p>
+ * The lag is the age of the last replayed transaction, {@code now() - pg_last_xact_replay_timestamp()}, or 0 when
+ * the replica has replayed everything it received, so an idle primary does not look like lag. A replica that
+ * can't be sampled counts as infinitely lagging.
+ */
+public class ReplicaLagMonitor implements AutoCloseable {
+
+    private static final String LAG_SQL = "SELECT CASE WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0"
+            + " ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000, 0) END";
+
+    private static final Map<ContextManager, ReplicaLagMonitor> RUNNING = new ConcurrentHashMap<>();
+
+    private final ContextManager contextManager;
+    private final Map<String, DataSource> replicas = new LinkedHashMap<>();
+    private final ScheduledExecutorService scheduler;
+
+    private ReplicaLagMonitor(ShardingTopology topology, ReadwriteSplittingRule rule) {
+        this.contextManager = topology.getContextManager();
+        for (ReadwriteSplittingDataSourceGroupRule group : rule.getDataSourceRuleGroups().values()) {
+            ReplicaStats.registerPrimary(group.getName(), group.getWriteDataSource());
+            for (String readDataSource : group.getReadwriteSplittingGroup().getReadDataSources()) {
+                replicas.put(readDataSource, topology.getPhysicalDataSource(readDataSource));
+            }
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-lag-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * The running monitor of the topology's ShardingSphere context, started with the given interval if there is none.
+     *
+     * @throws IllegalStateException if the topology has no read/write splitting rule
+     */
+    public static ReplicaLagMonitor start(ShardingTopology topology, long intervalMillis) {
+        ReadwriteSplittingRule rule = topology.getDatabase().getRuleMetaData().findSingleRule(ReadwriteSplittingRule.class)
+                .orElseThrow(() -> new IllegalStateException("No read/write splitting rule configured"));
+        return RUNNING.computeIfAbsent(topology.getContextManager(), key -> {
+            ReplicaLagMonitor monitor = new ReplicaLagMonitor(topology, rule);
+            monitor.scheduler.scheduleWithFixedDelay(monitor::sample, 0, intervalMillis, TimeUnit.MILLISECONDS);
+            return monitor;
+        });
+    }
+
+    /**
+     * Starts the monitor if a group of the read/write splitting rule balances with the
+     * {@link ReplicaAwareLoadBalanceAlgorithm}, at the shortest {@code lag-sample-interval-millis} configured.
+     *
+     * @return the running monitor, {@code null} if no group needs one
+     */
+    public static ReplicaLagMonitor startIfReplicaAware(ShardingTopology topology) {
+        Optional<ReadwriteSplittingRule> rule = topology.getDatabase().getRuleMetaData().findSingleRule(ReadwriteSplittingRule.class);
+        if (rule.isEmpty()) {
+            return null;
+        }
+        long intervalMillis = Long.MAX_VALUE;
+        for (ReadwriteSplittingDataSourceGroupRule group : rule.get().getDataSourceRuleGroups().values()) {
+            if (group.getLoadBalancer() instanceof ReplicaAwareLoadBalanceAlgorithm algorithm) {
+                intervalMillis = Math.min(intervalMillis, algorithm.getLagSampleIntervalMillis());
+            }
+        }
+        return intervalMillis == Long.MAX_VALUE ? null : start(topology, intervalMillis);
+    }
+
+    /**
+     * Samples every replica once.
+     */
+    public void sample() {
+        for (Map.Entry<String, DataSource> entry : replicas.entrySet()) {
+            if (entry.getValue() instanceof HikariDataSource hikari && hikari.isClosed()) {
+                // The context was closed, its replica names may be reused by the next one
+                close();
+                return;
+            }
+            ReplicaStats.replica(entry.getKey()).recordLag(sampleLag(entry.getValue()));
+        }
+    }
+
+    private static long sampleLag(DataSource dataSource) {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.setQueryTimeout(5);
+            try (ResultSet resultSet = statement.executeQuery(LAG_SQL)) {
+                return resultSet.next() ? resultSet.getLong(1) : 0;
+            }
+        } catch (SQLException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Last sampled lag per replica in milliseconds.
+     */
+    public Map<String, Long> getLagMillis() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        replicas.keySet().forEach(name -> result.put(name, ReplicaStats.replica(name).getLagMillis()));
+        return result;
+    }
+
+    @Override
+    public void close() {
+        RUNNING.remove(contextManager, this);
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,129 @@
+package sharding.readwrite;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * What is known about the physical data sources of read/write splitting groups, shared between the
+ * {@link ReplicaAwareLoadBalanceAlgorithm}, the {@link LatencyTrackingExecutionHook} and the
+ * {@link ReplicaLagMonitor}. ShardingSphere creates those as independent SPI instances, so the state is global.
+ */
+public final class ReplicaStats {
+
+    /**
+     * Weight of the newest latency in the moving average, about the last 10 statements dominate.
+     */
+    static final double EWMA_ALPHA = 0.2;
+
+    private static final Map<String, Replica> REPLICAS = new ConcurrentHashMap<>();
+    private static final Map<String, String> PRIMARIES = new ConcurrentHashMap<>();
+    private static final ThreadLocal<Session> SESSION = ThreadLocal.withInitial(Session::new);
+
+    private ReplicaStats() {
+    }
+
+    public static Replica replica(String dataSourceName) {
+        return REPLICAS.computeIfAbsent(dataSourceName, name -> new Replica());
+    }
+
+    /**
+     * Write data source of a read/write splitting group, reads pinned for read-your-writes go there.
+     */
+    public static void registerPrimary(String groupName, String writeDataSourceName) {
+        PRIMARIES.put(groupName, writeDataSourceName);
+    }
+
+    public static String primaryOf(String groupName) {
+        return PRIMARIES.get(groupName);
+    }
+
+    /**
+     * Session bound to the current thread, each thread has its own unless one is {@link #bind bound}.
+     */
+    public static Session currentSession() {
+        return SESSION.get();
+    }
+
+    /**
+     * Binds a session to the current thread, so statements run there on behalf of another thread, e.g. on a virtual
+     * thread of the {@link sharding.async.AsyncShardedRepository}, count as writes and reads of that session.
+     *
+     * @return the session bound before, to be bound again when the work is done
+     */
+    public static Session bind(Session session) {
+        Session previous = SESSION.get();
+        SESSION.set(session);
+        return previous;
+    }
+
+    /**
+     * Records that the session of the current thread has just written.
+     */
+    public static void markWrite() {
+        SESSION.get().markWrite();
+    }
+
+    /**
+     * Whether the session of the current thread wrote within the last {@code windowNanos}.
+     */
+    public static boolean wroteWithin(long windowNanos) {
+        return SESSION.get().wroteWithin(windowNanos);
+    }
+
+    /**
+     * When a unit of work last wrote, shared by all threads it runs on.
+     */
+    public static final class Session {
+
+        private volatile long lastWriteNanos = Long.MIN_VALUE;
+
+        public void markWrite() {
+            lastWriteNanos = System.nanoTime();
+        }
+
+        public boolean wroteWithin(long windowNanos) {
+            long lastWrite = lastWriteNanos;
+            return lastWrite != Long.MIN_VALUE && System.nanoTime() - lastWrite < windowNanos;
+        }
+    }
+
+    public static final class Replica {
+
+        private volatile double latencyNanos = Double.NaN;
+        private volatile long lagMillis;
+        private volatile long lagSampledAtNanos = Long.MIN_VALUE;
+
+        /**
+         * Adds a statement latency to the moving average. Racing updates may drop a sample, which an average
+         * over many statements can afford.
+         */
+        public void recordLatency(long nanos) {
+            double current = latencyNanos;
+            latencyNanos = Double.isNaN(current) ? nanos : current + EWMA_ALPHA * (nanos - current);
+        }
+
+        /**
+         * Moving average of the statement latency, {@code NaN} before the first statement.
+         */
+        public double getLatencyNanos() {
+            return latencyNanos;
+        }
+
+        public void recordLag(long millis) {
+            lagMillis = millis;
+            lagSampledAtNanos = System.nanoTime();
+        }
+
+        public long getLagMillis() {
+            return lagMillis;
+        }
+
+        /**
+         * Whether the last lag sample is younger than {@code maxAgeNanos}.
+         */
+        public boolean hasRecentLag(long maxAgeNanos) {
+            long sampledAt = lagSampledAtNanos;
+            return sampledAt != Long.MIN_VALUE && System.nanoTime() - sampledAt < maxAgeNanos;
+        }
+    }
+}
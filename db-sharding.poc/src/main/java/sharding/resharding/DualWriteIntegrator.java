@@ -0,0 +1,144 @@
+package sharding.resharding;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.spi.BootstrapContext;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PreDeleteEvent;
+import org.hibernate.event.spi.PreDeleteEventListener;
+import org.hibernate.event.spi.PreInsertEvent;
+import org.hibernate.event.spi.PreInsertEventListener;
+import org.hibernate.event.spi.PreUpdateEvent;
+import org.hibernate.event.spi.PreUpdateEventListener;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+
+/**
+ * Registers post-commit listeners that mirror entity writes to the target layout while a
+ * {@link ReshardingCoordinator} is in dual-write. Only committed changes are mirrored, so a rolled back
+ * transaction never reaches the target shard. Pre-write listeners announce every mirrored write to the coordinator
+ * before it reaches its shard, and wait while a {@link ReshardingCoordinator#cutover} fences writes, so the cutover
+ * knows when all mirrors have landed.
+ * <p>
+ * Bulk JPQL {@code UPDATE}/{@code DELETE} statements bypass entity events; rows they change are
+ * reconciled by {@link ReshardingCoordinator#verifyAndRepair}.
+ */
+public class DualWriteIntegrator implements Integrator {
+
+    @Override
+    public void integrate(Metadata metadata, BootstrapContext bootstrapContext, SessionFactoryImplementor sessionFactory) {
+        EventListenerRegistry registry = sessionFactory.getServiceRegistry().getService(EventListenerRegistry.class);
+        DualWriteListener listener = new DualWriteListener();
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, listener);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, listener);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, listener);
+        registry.appendListeners(EventType.PRE_INSERT, listener);
+        registry.appendListeners(EventType.PRE_UPDATE, listener);
+        registry.appendListeners(EventType.PRE_DELETE, listener);
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+    }
+
+    static class DualWriteListener implements PostCommitInsertEventListener, PostCommitUpdateEventListener, PostCommitDeleteEventListener,
+            PreInsertEventListener, PreUpdateEventListener, PreDeleteEventListener {
+
+        @Override
+        public boolean onPreInsert(PreInsertEvent event) {
+            beforeWrite(event.getSession(), event.getEntity());
+            return false;
+        }
+
+        @Override
+        public boolean onPreUpdate(PreUpdateEvent event) {
+            beforeWrite(event.getSession(), event.getEntity());
+            return false;
+        }
+
+        @Override
+        public boolean onPreDelete(PreDeleteEvent event) {
+            beforeWrite(event.getSession(), event.getEntity());
+            return false;
+        }
+
+        @Override
+        public void onPostInsert(PostInsertEvent event) {
+            ReshardingCoordinator coordinator = ReshardingCoordinator.active();
+            if (coordinator != null) {
+                try {
+                    coordinator.mirrorUpsert(event.getEntity());
+                } finally {
+                    coordinator.afterWrite(event.getSession());
+                }
+            }
+        }
+
+        @Override
+        public void onPostUpdate(PostUpdateEvent event) {
+            ReshardingCoordinator coordinator = ReshardingCoordinator.active();
+            if (coordinator != null) {
+                try {
+                    coordinator.mirrorUpsert(event.getEntity());
+                } finally {
+                    coordinator.afterWrite(event.getSession());
+                }
+            }
+        }
+
+        @Override
+        public void onPostDelete(PostDeleteEvent event) {
+            ReshardingCoordinator coordinator = ReshardingCoordinator.active();
+            if (coordinator != null) {
+                try {
+                    coordinator.mirrorDelete(event.getEntity());
+                } finally {
+                    coordinator.afterWrite(event.getSession());
+                }
+            }
+        }
+
+        @Override
+        public void onPostInsertCommitFailed(PostInsertEvent event) {
+            afterWrite(event.getSession());
+        }
+
+        @Override
+        public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+            afterWrite(event.getSession());
+        }
+
+        @Override
+        public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+            afterWrite(event.getSession());
+        }
+
+        @Override
+        public boolean requiresPostCommitHandling(EntityPersister persister) {
+            ReshardingCoordinator coordinator = ReshardingCoordinator.active();
+            return coordinator != null && coordinator.isMirrored(persister.getMappedClass());
+        }
+
+        private static void beforeWrite(Object session, Object entity) {
+            ReshardingCoordinator coordinator = ReshardingCoordinator.active();
+            if (coordinator != null) {
+                coordinator.beforeWrite(session, entity.getClass());
+            }
+        }
+
+        private static void afterWrite(Object session) {
+            ReshardingCoordinator coordinator = ReshardingCoordinator.active();
+            if (coordinator != null) {
+                coordinator.afterWrite(session);
+            }
+        }
+    }
+}
@@ -0,0 +1,699 @@
+package sharding.resharding;
+
+import sharding.ShardingTopology;
+
+import javax.sql.DataSource;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Drives an online resharding of tables routed by {@link ReshardingShardingAlgorithm}:
+ * <ol>
+ *     <li>{@link #startDualWrite} mirrors new writes of moved keys to their target shard
+ *     (see {@link DualWriteIntegrator}),</li>
+ *     <li>{@link #backfill} copies the existing rows of moved keys shard-to-shard in key-range chunks,
+ *     one throttled worker per source shard,</li>
+ *     <li>{@link #verifyAndRepair} compares source and target until a pass finds no difference,</li>
+ *     <li>{@link #cutover} fences entity writes, verifies the keys written since the last full pass began and flips
+ *     routing to the target layout only if none of them needed a repair,</li>
+ *     <li>{@link #cleanup} removes the moved rows from their source shards. It is a step of its own, run once every
+ *     application instance routes with the target layout: the flip only reaches the algorithm of this instance, the
+ *     others keep reading and writing the source shards until they restart with {@code phase: TARGET}. The
+ *     cleanup refuses to run until all of them confirmed that in the shared {@link ReshardingInstances}
+ *     record.</li>
+ * </ol>
+ * Only keys whose shard differs between the two layouts are touched. Growing a jump hash layout from n to m shards
+ * moves (m - n) / m of the rows, switching the hash, e.g. {@code HASH_MOD:2} to {@code JUMP:4}, moves most of
+ * them, ~75% in that case.
+ * <p>
+ * The mirror only sees writes of entities through Hibernate, see {@link DualWriteIntegrator}. Bulk JPQL DML, batch
+ * and copy loaders and other processes writing to the shards are not mirrored, not fenced and not among the keys
+ * the cutover verifies; stop them for the migration, or at least before the last {@link #verifyAndRepair}.
+ */
+public class ReshardingCoordinator {
+
+    private static final System.Logger LOGGER = System.getLogger(ReshardingCoordinator.class.getName());
+    private static final long FENCE_DRAIN_MILLIS = 30_000;
+    private static final int MAX_CUTOVER_ATTEMPTS = 3;
+
+    private static volatile ReshardingCoordinator active;
+
+    private final ShardingTopology topology;
+    private final ReshardingInstances instances;
+    private final int chunkSize;
+    private final Throttle throttle;
+    private final Map<String, ReshardingShardingAlgorithm> algorithms = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> verified = new ConcurrentHashMap<>();
+    // Per table, key and sharding value of the moved keys written since the last full pass began
+    private final Map<String, Map<Object, Object>> dirty = new ConcurrentHashMap<>();
+    // Sessions with entity writes between their flush and the end of their transaction
+    private final Map<Object, Integer> inFlight = new HashMap<>();
+    private final ReentrantLock fenceLock = new ReentrantLock();
+    private final Condition fenceChanged = fenceLock.newCondition();
+    private boolean fenced;
+
+    /**
+     * @param instances        record of the phases all application instances route with, this one included
+     * @param chunkSize        rows read per key-range chunk
+     * @param maxRowsPerSecond upper bound of rows scanned per second over all workers, 0 for unthrottled
+     */
+    public ReshardingCoordinator(ShardingTopology topology, ReshardingInstances instances, int chunkSize, int maxRowsPerSecond) {
+        this.topology = topology;
+        this.instances = instances;
+        this.chunkSize = chunkSize;
+        this.throttle = new Throttle(maxRowsPerSecond);
+    }
+
+    /**
+     * Coordinator whose tables are currently in dual-write, or {@code null}.
+     */
+    public static ReshardingCoordinator active() {
+        return active;
+    }
+
+    /**
+     * Runs the phases up to the cutover for the table and the tables co-located with it: dual-write, backfill,
+     * verification and cutover. A cutover whose fenced pass still had to repair rows is retried after another
+     * verification. The source rows stay until {@link #cleanup} runs, once every instance routes with the target
+     * layout.
+     *
+     * @throws IllegalStateException if no cutover attempt was clean, routing then stays on the source layout
+     */
+    public MigrationResult migrate(ReshardingTable table) {
+        List<ReshardingTable> tables = colocated(table);
+        startDualWrite(table);
+        Map<String, BackfillResult> backfills = new LinkedHashMap<>();
+        for (ReshardingTable each : tables) {
+            backfills.put(each.name(), backfill(each));
+        }
+        Map<String, VerificationResult> verifications = new LinkedHashMap<>();
+        VerificationResult fencedPass = null;
+        for (int attempt = 1; attempt <= MAX_CUTOVER_ATTEMPTS && (fencedPass == null || !fencedPass.clean()); attempt++) {
+            for (ReshardingTable each : tables) {
+                verifications.put(each.name(), verifyAndRepair(each, 5));
+            }
+            if (verifications.values().stream().allMatch(VerificationResult::clean)) {
+                fencedPass = cutover(table);
+            }
+        }
+        if (fencedPass == null || !fencedPass.clean()) {
+            throw new IllegalStateException("No clean cutover of " + table.name() + " after " + MAX_CUTOVER_ATTEMPTS
+                    + " attempts, routing stays on " + algorithm(table).getSourceLayout() + ": " + verifications);
+        }
+        return new MigrationResult(algorithm(table).getTargetLayout(), backfills, verifications, fencedPass);
+    }
+
+    /**
+     * Starts the dual-write of the table and of the tables co-located with it. Co-located tables share one
+     * sharding algorithm, e.g. {@code t_order} routed by {@code user_id} with the algorithm of {@code t_user},
+     * so they switch layouts together and a user and its orders never end up on different shards.
+     */
+    public void startDualWrite(ReshardingTable table) {
+        ReshardingShardingAlgorithm algorithm = algorithm(table);
+        if (algorithm.getPhase() != ReshardingPhase.SOURCE) {
+            throw new IllegalStateException(table.name() + " is already in phase " + algorithm.getPhase());
+        }
+        List<ReshardingTable> tables = colocated(table);
+        for (ReshardingTable each : tables) {
+            instances.confirm(each.name(), ReshardingPhase.DUAL_WRITE);
+        }
+        active = this;
+        for (ReshardingTable each : tables) {
+            verified.put(each.name(), false);
+            dirty.put(each.name(), new ConcurrentHashMap<>());
+        }
+        algorithm.setPhase(ReshardingPhase.DUAL_WRITE);
+    }
+
+    /**
+     * Copies the rows of moved keys from every source shard to their target shard. Rows already written
+     * by the dual-write are newer and are kept.
+     */
+    public BackfillResult backfill(ReshardingTable table) {
+        ReshardingShardingAlgorithm algorithm = requirePhase(table, ReshardingPhase.DUAL_WRITE);
+        ShardLayout source = algorithm.getSourceLayout();
+        ShardLayout target = algorithm.getTargetLayout();
+        long start = System.currentTimeMillis();
+
+        List<long[]> results = runPerShard(source, shard -> {
+            long[] counts = new long[2];
+            forEachChunk(table, shard, rows -> {
+                Map<String, List<Object[]>> moved = groupMovedRows(table, rows, shard, target);
+                for (Map.Entry<String, List<Object[]>> entry : moved.entrySet()) {
+                    counts[1] += executeBatch(entry.getKey(), table.insertIgnoreSql(), entry.getValue());
+                }
+                counts[0] += rows.size();
+            });
+            return counts;
+        });
+
+        long scanned = results.stream().mapToLong(counts -> counts[0]).sum();
+        long copied = results.stream().mapToLong(counts -> counts[1]).sum();
+        return new BackfillResult(scanned, copied, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Compares the moved rows of source and target shards and repairs differences, until a pass is clean
+     * or {@code maxPasses} is reached. Only a clean pass allows the {@link #cutover}. Writes run on meanwhile;
+     * the keys they touch from the start of a pass on are left to the cutover to verify.
+     */
+    public VerificationResult verifyAndRepair(ReshardingTable table, int maxPasses) {
+        ReshardingShardingAlgorithm algorithm = requirePhase(table, ReshardingPhase.DUAL_WRITE);
+        long start = System.currentTimeMillis();
+        long totalRepaired = 0;
+        for (int pass = 1; pass <= maxPasses; pass++) {
+            long repaired = verifyPass(table, algorithm.getSourceLayout(), algorithm.getTargetLayout());
+            totalRepaired += repaired;
+            if (repaired == 0) {
+                verified.put(table.name(), true);
+                return new VerificationResult(pass, totalRepaired, true, System.currentTimeMillis() - start);
+            }
+        }
+        return new VerificationResult(maxPasses, totalRepaired, false, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Flips routing of the table and the tables co-located with it to the target layout, once all of them had a
+     * clean verification pass. Entity writes are fenced for the flip: new ones wait, those already flushed are
+     * let commit and mirror, then only the keys written since the clean pass began are compared, not the whole
+     * tables, so the fence lasts as long as the writes since then take to check. If any of them needed a repair,
+     * a mirror failed or fell behind and routing stays on the source layout; the tables need another
+     * {@link #verifyAndRepair} before the next attempt.
+     *
+     * @return the fenced verification pass, not clean if the flip was refused
+     */
+    public VerificationResult cutover(ReshardingTable table) {
+        ReshardingShardingAlgorithm algorithm = requirePhase(table, ReshardingPhase.DUAL_WRITE);
+        List<ReshardingTable> tables = colocated(table);
+        for (ReshardingTable each : tables) {
+            if (!verified.getOrDefault(each.name(), false)) {
+                throw new IllegalStateException(each.name() + " has no clean verification pass, refusing to flip routing");
+            }
+        }
+        long start = System.currentTimeMillis();
+        fence();
+        try {
+            long repaired = 0;
+            for (ReshardingTable each : tables) {
+                repaired += verifyKeys(each, algorithm.getSourceLayout(), algorithm.getTargetLayout(), dirty.get(each.name()));
+            }
+            if (repaired > 0) {
+                for (ReshardingTable each : tables) {
+                    verified.put(each.name(), false);
+                }
+                LOGGER.log(System.Logger.Level.WARNING, "Fenced pass of {0} repaired {1} rows, refusing to flip routing",
+                        table.name(), repaired);
+                return new VerificationResult(1, repaired, false, System.currentTimeMillis() - start);
+            }
+            algorithm.setPhase(ReshardingPhase.TARGET);
+            if (algorithms.values().stream().noneMatch(each -> each.getPhase().mirrorsWrites())) {
+                active = null;
+            }
+        } finally {
+            unfence();
+        }
+        for (ReshardingTable each : tables) {
+            try {
+                instances.confirm(each.name(), ReshardingPhase.TARGET);
+            } catch (IllegalStateException e) {
+                // Routing flipped regardless, the cleanup waits until the instance confirms again
+                LOGGER.log(System.Logger.Level.WARNING, "Could not confirm the cutover of " + each.name(), e);
+            }
+        }
+        return new VerificationResult(1, 0, true, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Deletes the rows of moved keys from their source shards once every instance routes with the target layout.
+     *
+     * @throws IllegalStateException if this instance has not cut over, or another instance has not confirmed
+     *                               {@link ReshardingPhase#TARGET} in the {@link ReshardingInstances} record
+     */
+    public long cleanup(ReshardingTable table) {
+        ReshardingShardingAlgorithm algorithm = requirePhase(table, ReshardingPhase.TARGET);
+        Map<String, ReshardingPhase> lagging = instances.lagging(table.name(), ReshardingPhase.TARGET);
+        if (!lagging.isEmpty()) {
+            throw new IllegalStateException("Instances still route " + table.name() + " with " + lagging
+                    + ", refusing to delete the source rows");
+        }
+        ShardLayout target = algorithm.getTargetLayout();
+        return runPerShard(algorithm.getSourceLayout(), shard -> {
+            long[] removed = new long[1];
+            forEachChunk(table, shard, rows -> {
+                List<Object> keys = new ArrayList<>();
+                int keyIndex = table.columns().indexOf(table.keyColumn());
+                for (Object[] row : rows) {
+                    if (!target.targetName(table.shardingValue(row)).equals(shard)) {
+                        keys.add(row[keyIndex]);
+                    }
+                }
+                removed[0] += executeWithKeys(shard, table.deleteByKeysSql(), keys);
+            });
+            return removed[0];
+        }).stream().mapToLong(Long::longValue).sum();
+    }
+
+    /**
+     * Mirrors an insert or update committed on the source shard to the target shard of the key.
+     */
+    public void mirrorUpsert(Object entity) {
+        mirror(entity, true);
+    }
+
+    /**
+     * Mirrors a delete committed on the source shard to the target shard of the key.
+     */
+    public void mirrorDelete(Object entity) {
+        mirror(entity, false);
+    }
+
+    public boolean isMirrored(Class<?> entityClass) {
+        return findTable(entityClass) != null;
+    }
+
+    /**
+     * Called before an entity write of the session reaches its shard. Waits while a {@link #cutover} is fenced,
+     * unless the session already has writes in flight, which the cutover is waiting for.
+     */
+    public void beforeWrite(Object session, Class<?> entityClass) {
+        if (!isMirrored(entityClass)) {
+            return;
+        }
+        fenceLock.lock();
+        try {
+            while (fenced && !inFlight.containsKey(session)) {
+                fenceChanged.awaitUninterruptibly();
+            }
+            inFlight.merge(session, 1, Integer::sum);
+        } finally {
+            fenceLock.unlock();
+        }
+    }
+
+    /**
+     * Called once the transaction of a write announced with {@link #beforeWrite} committed and mirrored, or failed.
+     */
+    public void afterWrite(Object session) {
+        fenceLock.lock();
+        try {
+            if (inFlight.computeIfPresent(session, (key, count) -> count > 1 ? count - 1 : null) == null) {
+                fenceChanged.signalAll();
+            }
+        } finally {
+            fenceLock.unlock();
+        }
+    }
+
+    private void mirror(Object entity, boolean upsert) {
+        ReshardingTable table = findTable(entity.getClass());
+        if (table == null) {
+            return;
+        }
+        ReshardingShardingAlgorithm algorithm = algorithms.get(table.name());
+        Object[] row = table.toRow(entity);
+        Object key = table.key(row);
+        Object shardingValue = table.shardingValue(row);
+        String targetShard = algorithm.getTargetLayout().targetName(shardingValue);
+        if (targetShard.equals(algorithm.getSourceLayout().targetName(shardingValue))) {
+            return;
+        }
+        // Recorded first, so the key is verified under the fence even if the mirror fails
+        dirty.get(table.name()).put(key, shardingValue);
+        try {
+            if (upsert) {
+                executeBatch(targetShard, table.upsertSql(), List.<Object[]>of(row));
+            } else {
+                executeBatch(targetShard, table.deleteSql(), List.<Object[]>of(new Object[]{key}));
+            }
+        } catch (SQLException e) {
+            // The source commit stands, the table needs another verification pass before it can cut over
+            verified.put(table.name(), false);
+            LOGGER.log(System.Logger.Level.WARNING, "Dual-write of " + table.name() + " key " + key + " to " + targetShard + " failed", e);
+        }
+    }
+
+    private void fence() {
+        fenceLock.lock();
+        try {
+            fenced = true;
+            long remaining = TimeUnit.MILLISECONDS.toNanos(FENCE_DRAIN_MILLIS);
+            while (!inFlight.isEmpty()) {
+                if (remaining <= 0) {
+                    fenced = false;
+                    fenceChanged.signalAll();
+                    throw new IllegalStateException(inFlight.size() + " sessions still have writes in flight after "
+                            + FENCE_DRAIN_MILLIS + " ms, refusing to flip routing");
+                }
+                remaining = fenceChanged.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fenced = false;
+            fenceChanged.signalAll();
+            throw new IllegalStateException("Interrupted fencing writes", e);
+        } finally {
+            fenceLock.unlock();
+        }
+    }
+
+    private void unfence() {
+        fenceLock.lock();
+        try {
+            fenced = false;
+            fenceChanged.signalAll();
+        } finally {
+            fenceLock.unlock();
+        }
+    }
+
+    private ReshardingTable findTable(Class<?> entityClass) {
+        for (ReshardingTable table : ReshardingTable.ALL) {
+            ReshardingShardingAlgorithm algorithm = algorithms.get(table.name());
+            if (table.entityClass().isAssignableFrom(entityClass) && algorithm != null && algorithm.getPhase().mirrorsWrites()) {
+                return table;
+            }
+        }
+        return null;
+    }
+
+    private long verifyPass(ReshardingTable table, ShardLayout source, ShardLayout target) {
+        // Writes committed before the pass reads their rows are seen by it, later ones are recorded again
+        dirty.get(table.name()).clear();
+        int keyIndex = table.columns().indexOf(table.keyColumn());
+        // Moved rows on their source shard must exist with the same values on the target shard
+        long repaired = runPerShard(source, shard -> {
+            long[] count = new long[1];
+            forEachChunk(table, shard, rows -> {
+                for (Map.Entry<String, List<Object[]>> entry : groupMovedRows(table, rows, shard, target).entrySet()) {
+                    Map<Object, Object[]> actual = selectByKeys(entry.getKey(), table, keys(entry.getValue(), keyIndex));
+                    List<Object[]> mismatched = new ArrayList<>();
+                    for (Object[] expected : entry.getValue()) {
+                        if (!Arrays.equals(expected, actual.get(expected[keyIndex]))) {
+                            mismatched.add(expected);
+                        }
+                    }
+                    count[0] += executeBatch(entry.getKey(), table.upsertSql(), mismatched);
+                }
+            });
+            return count[0];
+        }).stream().mapToLong(Long::longValue).sum();
+
+        // Moved rows on their target shard whose source row is gone were deleted while the backfill ran
+        repaired += runPerShard(target, shard -> {
+            long[] count = new long[1];
+            forEachChunk(table, shard, rows -> {
+                Map<String, List<Object>> keysBySource = new HashMap<>();
+                for (Object[] row : rows) {
+                    Object shardingValue = table.shardingValue(row);
+                    String sourceShard = source.targetName(shardingValue);
+                    if (target.targetName(shardingValue).equals(shard) && !sourceShard.equals(shard)) {
+                        keysBySource.computeIfAbsent(sourceShard, k -> new ArrayList<>()).add(row[keyIndex]);
+                    }
+                }
+                for (Map.Entry<String, List<Object>> entry : keysBySource.entrySet()) {
+                    Map<Object, Object[]> existing = selectByKeys(entry.getKey(), table, entry.getValue());
+                    List<Object> orphans = entry.getValue().stream().filter(key -> !existing.containsKey(key)).toList();
+                    count[0] += executeWithKeys(shard, table.deleteByKeysSql(), orphans);
+                }
+            });
+            return count[0];
+        }).stream().mapToLong(Long::longValue).sum();
+        return repaired;
+    }
+
+    // Compares and repairs the given keys only, each on its source and target shard
+    private long verifyKeys(ReshardingTable table, ShardLayout source, ShardLayout target, Map<Object, Object> keys) {
+        Map<List<String>, List<Object>> keysByShards = new HashMap<>();
+        keys.forEach((key, shardingValue) -> keysByShards.computeIfAbsent(
+                List.of(source.targetName(shardingValue), target.targetName(shardingValue)), k -> new ArrayList<>()).add(key));
+        long repaired = 0;
+        try {
+            for (Map.Entry<List<String>, List<Object>> entry : keysByShards.entrySet()) {
+                String sourceShard = entry.getKey().get(0);
+                String targetShard = entry.getKey().get(1);
+                Map<Object, Object[]> expected = selectByKeys(sourceShard, table, entry.getValue());
+                Map<Object, Object[]> actual = selectByKeys(targetShard, table, entry.getValue());
+                List<Object[]> mismatched = new ArrayList<>();
+                List<Object> orphans = new ArrayList<>();
+                for (Object key : entry.getValue()) {
+                    Object[] row = expected.get(key);
+                    if (row == null && actual.containsKey(key)) {
+                        orphans.add(key);
+                    } else if (row != null && !Arrays.equals(row, actual.get(key))) {
+                        mismatched.add(row);
+                    }
+                }
+                repaired += executeBatch(targetShard, table.upsertSql(), mismatched);
+                repaired += executeWithKeys(targetShard, table.deleteByKeysSql(), orphans);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Verifying " + keys.size() + " written keys of " + table.name() + " failed", e);
+        }
+        return repaired;
+    }
+
+    private Map<String, List<Object[]>> groupMovedRows(ReshardingTable table, List<Object[]> rows, String shard, ShardLayout target) {
+        Map<String, List<Object[]>> result = new LinkedHashMap<>();
+        for (Object[] row : rows) {
+            String targetShard = target.targetName(table.shardingValue(row));
+            if (!targetShard.equals(shard)) {
+                result.computeIfAbsent(targetShard, k -> new ArrayList<>()).add(row);
+            }
+        }
+        return result;
+    }
+
+    private void forEachChunk(ReshardingTable table, String shard, ChunkConsumer consumer) throws SQLException, InterruptedException {
+        try (Connection connection = dataSource(shard).getConnection();
+             PreparedStatement first = connection.prepareStatement(table.selectFirstChunkSql());
+             PreparedStatement next = connection.prepareStatement(table.selectChunkSql())) {
+            int keyIndex = table.columns().indexOf(table.keyColumn());
+            Object lastKey = null;
+            while (true) {
+                PreparedStatement statement = lastKey == null ? first : next;
+                if (lastKey == null) {
+                    statement.setInt(1, chunkSize);
+                } else {
+                    statement.setObject(1, lastKey);
+                    statement.setInt(2, chunkSize);
+                }
+                List<Object[]> rows = readRows(statement, table.columns().size());
+                if (rows.isEmpty()) {
+                    return;
+                }
+                consumer.accept(rows);
+                throttle.acquire(rows.size());
+                if (rows.size() < chunkSize) {
+                    return;
+                }
+                lastKey = rows.get(rows.size() - 1)[keyIndex];
+            }
+        }
+    }
+
+    private Map<Object, Object[]> selectByKeys(String shard, ReshardingTable table, List<Object> keys) throws SQLException {
+        Map<Object, Object[]> result = new HashMap<>();
+        if (keys.isEmpty()) {
+            return result;
+        }
+        int keyIndex = table.columns().indexOf(table.keyColumn());
+        try (Connection connection = dataSource(shard).getConnection();
+             PreparedStatement statement = connection.prepareStatement(table.selectByKeysSql())) {
+            statement.setArray(1, toArray(connection, keys));
+            for (Object[] row : readRows(statement, table.columns().size())) {
+                result.put(row[keyIndex], row);
+            }
+        }
+        return result;
+    }
+
+    private int executeBatch(String shard, String sql, List<Object[]> rows) throws SQLException {
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        try (Connection connection = dataSource(shard).getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                for (Object[] row : rows) {
+                    for (int i = 0; i < row.length; i++) {
+                        statement.setObject(i + 1, row[i]);
+                    }
+                    statement.addBatch();
+                }
+                int affected = Arrays.stream(statement.executeBatch()).map(count -> Math.max(count, 0)).sum();
+                connection.commit();
+                return affected;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    private int executeWithKeys(String shard, String sql, List<Object> keys) throws SQLException {
+        if (keys.isEmpty()) {
+            return 0;
+        }
+        try (Connection connection = dataSource(shard).getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setArray(1, toArray(connection, keys));
+            return statement.executeUpdate();
+        }
+    }
+
+    private static Array toArray(Connection connection, List<Object> keys) throws SQLException {
+        String type = keys.get(0) instanceof Number ? "bigint" : "varchar";
+        return connection.createArrayOf(type, keys.toArray());
+    }
+
+    private static List<Object[]> readRows(PreparedStatement statement, int columnCount) throws SQLException {
+        List<Object[]> rows = new ArrayList<>();
+        try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                Object[] row = new Object[columnCount];
+                for (int i = 0; i < columnCount; i++) {
+                    row[i] = resultSet.getObject(i + 1);
+                }
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    private static List<Object> keys(List<Object[]> rows, int keyIndex) {
+        List<Object> result = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            result.add(row[keyIndex]);
+        }
+        return result;
+    }
+
+    private <T> List<T> runPerShard(ShardLayout layout, ShardTask<T> task) {
+        ExecutorService executor = Executors.newFixedThreadPool(layout.shardCount());
+        try {
+            List<Future<T>> futures = new ArrayList<>();
+            for (int i = 0; i < layout.shardCount(); i++) {
+                String shard = layout.targetPrefix() + i;
+                futures.add(executor.submit((Callable<T>) () -> task.run(shard)));
+            }
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Resharding interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Resharding worker failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private ReshardingShardingAlgorithm algorithm(ReshardingTable table) {
+        return algorithms.computeIfAbsent(table.name(), name -> {
+            if (!(topology.getShardingAlgorithm(name) instanceof ReshardingShardingAlgorithm algorithm)) {
+                throw new IllegalStateException(name + " is not routed by " + ReshardingShardingAlgorithm.class.getSimpleName());
+            }
+            return algorithm;
+        });
+    }
+
+    // The table and the tables routed by the same algorithm instance
+    private List<ReshardingTable> colocated(ReshardingTable table) {
+        ReshardingShardingAlgorithm algorithm = algorithm(table);
+        List<ReshardingTable> result = new ArrayList<>();
+        for (ReshardingTable each : ReshardingTable.ALL) {
+            if (each == table || topology.getShardingAlgorithm(each.name()) == algorithm) {
+                algorithms.putIfAbsent(each.name(), algorithm);
+                result.add(each);
+            }
+        }
+        return result;
+    }
+
+    private ReshardingShardingAlgorithm requirePhase(ReshardingTable table, ReshardingPhase phase) {
+        ReshardingShardingAlgorithm algorithm = algorithm(table);
+        if (algorithm.getPhase() != phase) {
+            throw new IllegalStateException(table.name() + " is in phase " + algorithm.getPhase() + ", expected " + phase);
+        }
+        return algorithm;
+    }
+
+    private DataSource dataSource(String shard) {
+        return topology.getWriteDataSource(shard);
+    }
+
+    @FunctionalInterface
+    private interface ShardTask<T> {
+        T run(String shard) throws Exception;
+    }
+
+    @FunctionalInterface
+    private interface ChunkConsumer {
+        void accept(List<Object[]> rows) throws SQLException;
+    }
+
+    public record BackfillResult(long scannedRows, long copiedRows, long elapsedMillis) {
+    }
+
+    public record VerificationResult(int passes, long repairedRows, boolean clean, long elapsedMillis) {
+    }
+
+    /**
+     * @param fencedPass the verification pass that ran while writes were fenced for the cutover
+     */
+    public record MigrationResult(ShardLayout targetLayout, Map<String, BackfillResult> backfills,
+                                  Map<String, VerificationResult> verifications, VerificationResult fencedPass) {
+    }
+
+    /**
+     * Shared rows-per-second budget of all workers, keeps the backfill from starving the online traffic.
+     */
+    private static final class Throttle {
+
+        private final int maxRowsPerSecond;
+        private long nextFreeNanos = System.nanoTime();
+
+        private Throttle(int maxRowsPerSecond) {
+            this.maxRowsPerSecond = maxRowsPerSecond;
+        }
+
+        void acquire(int rows) throws InterruptedException {
+            if (maxRowsPerSecond <= 0) {
+                return;
+            }
+            long waitNanos;
+            synchronized (this) {
+                long now = System.nanoTime();
+                long start = Math.max(now, nextFreeNanos);
+                nextFreeNanos = start + rows * 1_000_000_000L / maxRowsPerSecond;
+                waitNanos = start - now;
+            }
+            if (waitNanos > 0) {
+                Thread.sleep(waitNanos / 1_000_000, (int) (waitNanos % 1_000_000));
+            }
+        }
+    }
+}
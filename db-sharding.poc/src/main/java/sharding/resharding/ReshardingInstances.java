@@ -0,0 +1,141 @@
+package sharding.resharding;
+
+import sharding.ShardingTopology;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Shared record of the phase every application instance routes the resharded tables with, kept in one table all
+ * instances reach:
+ * <pre>
+ * CREATE TABLE resharding_instance (
+ *     instance_id  VARCHAR(200) NOT NULL,
+ *     table_name   VARCHAR(200) NOT NULL,
+ *     phase        VARCHAR(20)  NOT NULL,
+ *     confirmed_at BIGINT       NOT NULL,
+ *     PRIMARY KEY (instance_id, table_name)
+ * )
+ * </pre>
+ * The {@link ReshardingShardingAlgorithm} of an instance only learns a new phase when the instance restarts with it
+ * in the YAML, so after a {@link ReshardingCoordinator#cutover} the other instances keep using the source shards
+ * until then. Every instance {@link #confirm confirms} the phases it routes with once its topology is up and
+ * {@link #remove removes} its rows when it shuts down; {@link ReshardingCoordinator#cleanup} refuses to delete
+ * source rows while any instance has not confirmed {@link ReshardingPhase#TARGET}. An instance that died without
+ * removing its rows holds up the cleanup until it is removed by hand.
+ */
+public class ReshardingInstances {
+
+    private final DataSource dataSource;
+    private final String instanceId;
+    private volatile boolean tableCreated;
+
+    /**
+     * @param instanceId id of this instance, unique among all instances sharing the record
+     */
+    public ReshardingInstances(DataSource dataSource, String instanceId) {
+        this.dataSource = dataSource;
+        this.instanceId = instanceId;
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    /**
+     * Records the phase this instance routes every resharded table of the topology with.
+     */
+    public void confirm(ShardingTopology topology) {
+        for (ReshardingTable table : ReshardingTable.ALL) {
+            if (topology.getShardingAlgorithm(table.name()) instanceof ReshardingShardingAlgorithm algorithm) {
+                confirm(table.name(), algorithm.getPhase());
+            }
+        }
+    }
+
+    /**
+     * Records the phase this instance routes the table with.
+     */
+    public void confirm(String table, ReshardingPhase phase) {
+        try (Connection connection = connection()) {
+            int updated;
+            try (PreparedStatement statement = connection.prepareStatement("UPDATE resharding_instance"
+                    + " SET phase = ?, confirmed_at = ? WHERE instance_id = ? AND table_name = ?")) {
+                statement.setString(1, phase.name());
+                statement.setLong(2, System.currentTimeMillis());
+                statement.setString(3, instanceId);
+                statement.setString(4, table);
+                updated = statement.executeUpdate();
+            }
+            if (updated == 0) {
+                // Only this instance writes its rows, nobody inserts them concurrently
+                try (PreparedStatement statement = connection.prepareStatement("INSERT INTO resharding_instance"
+                        + " (instance_id, table_name, phase, confirmed_at) VALUES (?, ?, ?, ?)")) {
+                    statement.setString(1, instanceId);
+                    statement.setString(2, table);
+                    statement.setString(3, phase.name());
+                    statement.setLong(4, System.currentTimeMillis());
+                    statement.executeUpdate();
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Confirming phase " + phase + " of " + table + " for " + instanceId + " failed", e);
+        }
+    }
+
+    /**
+     * Instances that confirmed a different phase of the table, with the phase they confirmed.
+     */
+    public Map<String, ReshardingPhase> lagging(String table, ReshardingPhase phase) {
+        Map<String, ReshardingPhase> result = new LinkedHashMap<>();
+        try (Connection connection = connection();
+             PreparedStatement statement = connection.prepareStatement("SELECT instance_id, phase FROM resharding_instance"
+                     + " WHERE table_name = ? AND phase <> ? ORDER BY instance_id")) {
+            statement.setString(1, table);
+            statement.setString(2, phase.name());
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    result.put(resultSet.getString(1), ReshardingPhase.valueOf(resultSet.getString(2)));
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Reading the instances of " + table + " failed", e);
+        }
+        return result;
+    }
+
+    /**
+     * Removes the rows of an instance that no longer routes, this one on shutdown or one that died.
+     */
+    public void remove(String instanceId) {
+        try (Connection connection = connection();
+             PreparedStatement statement = connection.prepareStatement("DELETE FROM resharding_instance WHERE instance_id = ?")) {
+            statement.setString(1, instanceId);
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Removing instance " + instanceId + " failed", e);
+        }
+    }
+
+    private Connection connection() throws SQLException {
+        Connection connection = dataSource.getConnection();
+        if (!tableCreated) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TABLE IF NOT EXISTS resharding_instance (instance_id VARCHAR(200) NOT NULL,"
+                        + " table_name VARCHAR(200) NOT NULL, phase VARCHAR(20) NOT NULL, confirmed_at BIGINT NOT NULL,"
+                        + " PRIMARY KEY (instance_id, table_name))");
+            } catch (SQLException e) {
+                connection.close();
+                throw e;
+            }
+            tableCreated = true;
+        }
+        return connection;
+    }
+}
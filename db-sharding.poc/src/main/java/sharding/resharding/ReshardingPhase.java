@@ -0,0 +1,24 @@
+package sharding.resharding;
+
+/**
+ * Phases of an online resharding, in order.
+ */
+public enum ReshardingPhase {
+
+    /** Reads and writes use the source layout only. */
+    SOURCE,
+
+    /** Writes are mirrored to the target layout while the backfill copies existing rows. */
+    DUAL_WRITE,
+
+    /** Routing uses the target layout, rows left behind on their source shards can be cleaned up. */
+    TARGET;
+
+    public boolean routesToTarget() {
+        return this == TARGET;
+    }
+
+    public boolean mirrorsWrites() {
+        return this == DUAL_WRITE;
+    }
+}
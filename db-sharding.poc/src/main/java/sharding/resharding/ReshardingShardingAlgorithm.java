@@ -0,0 +1,77 @@
+package sharding.resharding;
+
+import org.apache.shardingsphere.sharding.api.sharding.standard.PreciseShardingValue;
+import org.apache.shardingsphere.sharding.api.sharding.standard.RangeShardingValue;
+import org.apache.shardingsphere.sharding.api.sharding.standard.StandardShardingAlgorithm;
+import sharding.metrics.HotKeyTracker;
+
+import java.util.Collection;
+import java.util.Properties;
+
+/**
+ * Standard sharding algorithm that routes with a source layout until the {@link ReshardingCoordinator}
+ * flips it to the target layout. The layouts are configured in the YAML:
+ * <pre>
+ * type: CLASS_BASED
+ * props:
+ *   strategy: STANDARD
+ *   algorithmClassName: sharding.resharding.ReshardingShardingAlgorithm
+ *   source-layout: HASH_MOD:2
+ *   target-layout: JUMP:4
+ *   phase: SOURCE
+ * </pre>
+ * {@code actualDataNodes} has to cover the shards of both layouts. Every point route is recorded in the
+ * {@link HotKeyTracker} of the logic table.
+ */
+public class ReshardingShardingAlgorithm implements StandardShardingAlgorithm<Comparable<?>> {
+
+    public static final String SOURCE_LAYOUT_KEY = "source-layout";
+    public static final String TARGET_LAYOUT_KEY = "target-layout";
+    public static final String TARGET_PREFIX_KEY = "target-prefix";
+    public static final String PHASE_KEY = "phase";
+
+    private ShardLayout sourceLayout;
+    private ShardLayout targetLayout;
+    private volatile ReshardingPhase phase;
+
+    @Override
+    public void init(Properties props) {
+        String targetPrefix = props.getProperty(TARGET_PREFIX_KEY, "ds_");
+        sourceLayout = ShardLayout.parse(props.getProperty(SOURCE_LAYOUT_KEY, "HASH_MOD:2"), targetPrefix);
+        targetLayout = ShardLayout.parse(props.getProperty(TARGET_LAYOUT_KEY, sourceLayout.toString()), targetPrefix);
+        phase = ReshardingPhase.valueOf(props.getProperty(PHASE_KEY, ReshardingPhase.SOURCE.name()).toUpperCase());
+    }
+
+    @Override
+    public String doSharding(Collection<String> availableTargetNames, PreciseShardingValue<Comparable<?>> shardingValue) {
+        String target = getRoutingLayout().targetName(shardingValue.getValue());
+        HotKeyTracker.forTable(shardingValue.getLogicTableName()).record(shardingValue.getValue(), target, availableTargetNames);
+        return target;
+    }
+
+    @Override
+    public Collection<String> doSharding(Collection<String> availableTargetNames, RangeShardingValue<Comparable<?>> shardingValue) {
+        // Hashed layouts do not preserve order, ranges hit every shard
+        return availableTargetNames;
+    }
+
+    public ShardLayout getRoutingLayout() {
+        return phase.routesToTarget() ? targetLayout : sourceLayout;
+    }
+
+    public ShardLayout getSourceLayout() {
+        return sourceLayout;
+    }
+
+    public ShardLayout getTargetLayout() {
+        return targetLayout;
+    }
+
+    public ReshardingPhase getPhase() {
+        return phase;
+    }
+
+    void setPhase(ReshardingPhase phase) {
+        this.phase = phase;
+    }
+}
@@ -0,0 +1,82 @@
+package sharding.resharding;
+
+import entity.Order;
+import entity.User;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Physical table a resharding moves rows of, with the column layout used for copying rows between shards.
+ * The key column is the primary key, the sharding column decides the shard of a row.
+ */
+public record ReshardingTable(String name, String keyColumn, String shardingColumn, List<String> columns, Class<?> entityClass,
+                              Function<Object, Object[]> rowExtractor) {
+
+    public static final ReshardingTable USERS = new ReshardingTable("t_user", "id", "id", List.of("id", "username", "email"), User.class,
+            entity -> {
+                User user = (User) entity;
+                return new Object[]{user.getId(), user.getUsername(), user.getEmail()};
+            });
+
+    public static final ReshardingTable ORDERS = new ReshardingTable("t_order", "id", "user_id", List.of("id", "user_id", "total_amount"), Order.class,
+            entity -> {
+                Order order = (Order) entity;
+                return new Object[]{order.getId(), order.getUser_id(), order.getTotal_amount()};
+            });
+
+    /**
+     * Tables the coordinator migrates.
+     */
+    public static final List<ReshardingTable> ALL = List.of(USERS, ORDERS);
+
+    public Object[] toRow(Object entity) {
+        return rowExtractor.apply(entity);
+    }
+
+    Object key(Object[] row) {
+        return row[columns.indexOf(keyColumn)];
+    }
+
+    Object shardingValue(Object[] row) {
+        return row[columns.indexOf(shardingColumn)];
+    }
+
+    String selectChunkSql() {
+        return "SELECT " + String.join(", ", columns) + " FROM " + name
+                + " WHERE " + keyColumn + " > ? ORDER BY " + keyColumn + " LIMIT ?";
+    }
+
+    String selectFirstChunkSql() {
+        return "SELECT " + String.join(", ", columns) + " FROM " + name + " ORDER BY " + keyColumn + " LIMIT ?";
+    }
+
+    String selectByKeysSql() {
+        return "SELECT " + String.join(", ", columns) + " FROM " + name + " WHERE " + keyColumn + " = ANY(?)";
+    }
+
+    String insertIgnoreSql() {
+        return insertSql() + " ON CONFLICT (" + keyColumn + ") DO NOTHING";
+    }
+
+    String upsertSql() {
+        return insertSql() + " ON CONFLICT (" + keyColumn + ") DO UPDATE SET " + columns.stream()
+                .filter(column -> !column.equals(keyColumn))
+                .map(column -> column + " = EXCLUDED." + column)
+                .collect(Collectors.joining(", "));
+    }
+
+    String deleteSql() {
+        return "DELETE FROM " + name + " WHERE " + keyColumn + " = ?";
+    }
+
+    String deleteByKeysSql() {
+        return "DELETE FROM " + name + " WHERE " + keyColumn + " = ANY(?)";
+    }
+
+    private String insertSql() {
+        return "INSERT INTO " + name + " (" + String.join(", ", columns) + ") VALUES ("
+                + columns.stream().map(column -> "?").collect(Collectors.joining(", ")) + ")";
+    }
+}
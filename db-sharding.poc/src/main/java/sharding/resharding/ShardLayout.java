@@ -0,0 +1,72 @@
+package sharding.resharding;
+
+import sharding.JumpHashComplexShardingAlgorithm;
+import sharding.id.ShardedIdLayout;
+
+/**
+ * Maps a sharding value to a shard index. A resharding moves a table from a source layout to a target layout,
+ * e.g. from {@code HASH_MOD:2} (the old {@code Math.abs(id.hashCode()) % 2} expression) to {@code JUMP:4}.
+ */
+public record ShardLayout(Type type, int shardCount, String targetPrefix) {
+
+    public enum Type {
+        /**
+         * {@code abs(value.toString().hashCode()) % n}, what the INLINE expressions in sharding.yaml computed for
+         * the string ids of {@code t_user}. Hashing the string form places the numeric {@code t_order.user_id} on
+         * the shard of its user.
+         */
+        HASH_MOD,
+        /** {@code value % n} for numeric values. */
+        MOD,
+        /** Jump consistent hash of the value, see {@link JumpHashComplexShardingAlgorithm}. */
+        JUMP,
+        /**
+         * Shard bits of an id generated in the {@link ShardedIdLayout#DEFAULT} layout, no hashing. Only for tables
+         * whose sharding column holds such generated ids; assigned ids like {@code 1, 2, 3} all land on shard 0.
+         */
+        ID_BITS
+    }
+
+    public ShardLayout {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Shard count must be positive: " + shardCount);
+        }
+    }
+
+    /**
+     * Parses {@code TYPE:count}, e.g. {@code JUMP:4}.
+     */
+    public static ShardLayout parse(String spec, String targetPrefix) {
+        String[] parts = spec.trim().split(":");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Expected TYPE:count but got " + spec);
+        }
+        return new ShardLayout(Type.valueOf(parts[0].trim().toUpperCase()), Integer.parseInt(parts[1].trim()), targetPrefix);
+    }
+
+    public int shardIndex(Object value) {
+        switch (type) {
+            case HASH_MOD:
+                return Math.abs(value.toString().hashCode() % shardCount);
+            case MOD:
+                return (int) Math.floorMod(((Number) value).longValue(), (long) shardCount);
+            case JUMP:
+                return JumpHashComplexShardingAlgorithm.jumpConsistentHash(
+                        JumpHashComplexShardingAlgorithm.hash(value.toString(), null), shardCount);
+            case ID_BITS:
+                long id = value instanceof Number number ? number.longValue() : Long.parseLong(value.toString());
+                return ShardedIdLayout.DEFAULT.shardOf(id) % shardCount;
+            default:
+                throw new IllegalStateException("Unknown layout type: " + type);
+        }
+    }
+
+    public String targetName(Object value) {
+        return targetPrefix + shardIndex(value);
+    }
+
+    @Override
+    public String toString() {
+        return type + ":" + shardCount;
+    }
+}
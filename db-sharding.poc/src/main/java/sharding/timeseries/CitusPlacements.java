@@ -0,0 +1,81 @@
+package sharding.timeseries;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Groups head ids by the Citus shard they hash to, with the worker holding the shard and the shard table of every
+ * table asked for. The tables have to be co-located, a head's shards of all of them on the same worker; that is
+ * the default for tables distributed by a column of the same type with the same shard count.
+ */
+final class CitusPlacements {
+
+    private final DataSource coordinator;
+
+    CitusPlacements(DataSource coordinator) {
+        this.coordinator = coordinator;
+    }
+
+    /**
+     * The shard groups of the heads, each head in exactly one.
+     */
+    List<ShardGroup> lookup(Collection<String> headIds, List<String> tables) {
+        StringBuilder sql = new StringBuilder("SELECT DISTINCT ON (h.head_id) h.head_id, s0.nodename, s0.nodeport");
+        for (int i = 0; i < tables.size(); i++) {
+            sql.append(", s").append(i).append(".shard_name");
+        }
+        sql.append(" FROM unnest(?) AS h(head_id)");
+        for (int i = 0; i < tables.size(); i++) {
+            sql.append(" JOIN citus_shards s").append(i).append(" ON s").append(i)
+                    .append(".shardid = get_shard_id_for_distribution_column(?::regclass, h.head_id)");
+            if (i > 0) {
+                sql.append(" AND s").append(i).append(".nodename = s0.nodename AND s").append(i).append(".nodeport = s0.nodeport");
+            }
+        }
+        sql.append(" ORDER BY h.head_id, s0.nodename, s0.nodeport");
+
+        Map<List<String>, ShardGroup> groups = new LinkedHashMap<>();
+        Collection<String> distinctHeads = new LinkedHashSet<>(headIds);
+        try (Connection connection = coordinator.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql.toString())) {
+            statement.setArray(1, connection.createArrayOf("varchar", distinctHeads.toArray()));
+            for (int i = 0; i < tables.size(); i++) {
+                statement.setString(i + 2, tables.get(i));
+            }
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    String worker = resultSet.getString(2) + ":" + resultSet.getInt(3);
+                    List<String> shardNames = new ArrayList<>(tables.size());
+                    for (int i = 0; i < tables.size(); i++) {
+                        shardNames.add(resultSet.getString(i + 4));
+                    }
+                    groups.computeIfAbsent(shardNames, key -> new ShardGroup(worker, shardNames, new ArrayList<>()))
+                            .headIds().add(resultSet.getString(1));
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Looking up the shards of " + distinctHeads.size() + " heads in " + tables + " failed", e);
+        }
+
+        int placed = groups.values().stream().mapToInt(group -> group.headIds().size()).sum();
+        if (placed != distinctHeads.size()) {
+            throw new IllegalStateException("Shards of " + tables + " are not co-located on the same workers");
+        }
+        return new ArrayList<>(groups.values());
+    }
+
+    /**
+     * Heads sharing one shard of every table, the shard names in the order of the tables.
+     */
+    record ShardGroup(String worker, List<String> shardNames, List<String> headIds) {
+    }
+}
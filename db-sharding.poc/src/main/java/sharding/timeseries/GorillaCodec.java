@@ -0,0 +1,238 @@
+package sharding.timeseries;
+
+import java.util.Arrays;
+
+/**
+ * Compression of a block of {@code (timestamp, value)} points as in Facebook's Gorilla: timestamps as
+ * delta-of-deltas and values as the XOR with the previous value, both bit-packed.
+ * <p>
+ * Points arriving at a fixed interval have a delta-of-delta of 0 and cost one bit per timestamp, a value equal
+ * to the previous one costs one bit, and slowly changing values share the leading and trailing zero bits of
+ * their XOR with the previous one. The layout of an encoded block:
+ * <pre>
+ * version (8 bits) | count (32 bits) | first timestamp (64 bits) | first value (64 bits)
+ * then per further point: timestamp delta-of-delta, value XOR
+ * </pre>
+ */
+public final class GorillaCodec {
+
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 5;
+
+    private GorillaCodec() {
+    }
+
+    /**
+     * Encodes the first {@code count} points.
+     */
+    public static byte[] encode(long[] timestamps, double[] values, int count) {
+        if (count < 0 || count > timestamps.length || count > values.length) {
+            throw new IllegalArgumentException("Count " + count + " exceeds the points given");
+        }
+        // Regular series take about two bytes per point, the writer grows for others
+        BitWriter out = new BitWriter(HEADER_BYTES + 16 + count * 2);
+        out.write(VERSION, 8);
+        out.write(count, 32);
+        if (count == 0) {
+            return out.toByteArray();
+        }
+        out.write(timestamps[0], 64);
+        long previousBits = Double.doubleToRawLongBits(values[0]);
+        out.write(previousBits, 64);
+
+        long previousTimestamp = timestamps[0];
+        long previousDelta = 0;
+        int previousLeading = Integer.MAX_VALUE;
+        int previousTrailing = 0;
+        for (int i = 1; i < count; i++) {
+            long delta = timestamps[i] - previousTimestamp;
+            writeDeltaOfDelta(out, delta - previousDelta);
+            previousTimestamp = timestamps[i];
+            previousDelta = delta;
+
+            long bits = Double.doubleToRawLongBits(values[i]);
+            long xor = bits ^ previousBits;
+            previousBits = bits;
+            if (xor == 0) {
+                out.write(0, 1);
+                continue;
+            }
+            out.write(1, 1);
+            int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+            int trailing = Long.numberOfTrailingZeros(xor);
+            if (previousLeading != Integer.MAX_VALUE && leading >= previousLeading && trailing >= previousTrailing) {
+                // The meaningful bits fit the window of the previous value
+                out.write(0, 1);
+                out.write(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+            } else {
+                int meaningful = 64 - leading - trailing;
+                out.write(1, 1);
+                out.write(leading, 5);
+                out.write(meaningful - 1, 6);
+                out.write(xor >>> trailing, meaningful);
+                previousLeading = leading;
+                previousTrailing = trailing;
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Number of points of an encoded block, without decoding it.
+     */
+    public static int count(byte[] encoded) {
+        checkVersion(encoded);
+        return ((encoded[1] & 0xff) << 24) | ((encoded[2] & 0xff) << 16) | ((encoded[3] & 0xff) << 8) | (encoded[4] & 0xff);
+    }
+
+    /**
+     * Decodes a block into arrays of at least {@link #count} points.
+     */
+    public static void decode(byte[] encoded, long[] timestamps, double[] values) {
+        int count = count(encoded);
+        if (timestamps.length < count || values.length < count) {
+            throw new IllegalArgumentException("Arrays too small for " + count + " points");
+        }
+        if (count == 0) {
+            return;
+        }
+        BitReader in = new BitReader(encoded, HEADER_BYTES * 8);
+        long timestamp = in.read(64);
+        long bits = in.read(64);
+        timestamps[0] = timestamp;
+        values[0] = Double.longBitsToDouble(bits);
+
+        long delta = 0;
+        int leading = 0;
+        int trailing = 0;
+        for (int i = 1; i < count; i++) {
+            delta += readDeltaOfDelta(in);
+            timestamp += delta;
+            timestamps[i] = timestamp;
+
+            if (in.read(1) != 0) {
+                if (in.read(1) != 0) {
+                    leading = (int) in.read(5);
+                    int meaningful = (int) in.read(6) + 1;
+                    trailing = 64 - leading - meaningful;
+                }
+                bits ^= in.read(64 - leading - trailing) << trailing;
+            }
+            values[i] = Double.longBitsToDouble(bits);
+        }
+    }
+
+    // 0 | 10 + 7 bits | 110 + 9 bits | 1110 + 12 bits | 1111 + 64 bits, two's complement
+    private static void writeDeltaOfDelta(BitWriter out, long deltaOfDelta) {
+        if (deltaOfDelta == 0) {
+            out.write(0, 1);
+        } else if (fits(deltaOfDelta, 7)) {
+            out.write(0b10, 2);
+            out.write(deltaOfDelta, 7);
+        } else if (fits(deltaOfDelta, 9)) {
+            out.write(0b110, 3);
+            out.write(deltaOfDelta, 9);
+        } else if (fits(deltaOfDelta, 12)) {
+            out.write(0b1110, 4);
+            out.write(deltaOfDelta, 12);
+        } else {
+            out.write(0b1111, 4);
+            out.write(deltaOfDelta, 64);
+        }
+    }
+
+    private static long readDeltaOfDelta(BitReader in) {
+        if (in.read(1) == 0) {
+            return 0;
+        }
+        if (in.read(1) == 0) {
+            return signExtend(in.read(7), 7);
+        }
+        if (in.read(1) == 0) {
+            return signExtend(in.read(9), 9);
+        }
+        if (in.read(1) == 0) {
+            return signExtend(in.read(12), 12);
+        }
+        return in.read(64);
+    }
+
+    private static boolean fits(long value, int bits) {
+        return value >= -(1L << (bits - 1)) && value < (1L << (bits - 1));
+    }
+
+    private static long signExtend(long value, int bits) {
+        return (value << (64 - bits)) >> (64 - bits);
+    }
+
+    private static void checkVersion(byte[] encoded) {
+        if (encoded.length < HEADER_BYTES || encoded[0] != VERSION) {
+            throw new IllegalArgumentException("Not a time-series block of version " + VERSION);
+        }
+    }
+
+    /**
+     * Appends bits most significant first.
+     */
+    static final class BitWriter {
+
+        private byte[] bytes;
+        private int bitLength;
+
+        BitWriter(int initialBytes) {
+            this.bytes = new byte[Math.max(initialBytes, 16)];
+        }
+
+        /**
+         * Appends the lowest {@code bits} bits of the value, {@code 0} to {@code 64} bits.
+         */
+        void write(long value, int bits) {
+            if (bitLength + bits > (long) bytes.length * 8) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, (bitLength + bits) / 8 + 1));
+            }
+            for (int remaining = bits; remaining > 0; ) {
+                int index = bitLength >>> 3;
+                int free = 8 - (bitLength & 7);
+                int take = Math.min(free, remaining);
+                int chunk = (int) (value >>> (remaining - take)) & ((1 << take) - 1);
+                bytes[index] |= (byte) (chunk << (free - take));
+                bitLength += take;
+                remaining -= take;
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, (bitLength + 7) >>> 3);
+        }
+    }
+
+    /**
+     * Reads bits most significant first.
+     */
+    static final class BitReader {
+
+        private final byte[] bytes;
+        private int position;
+
+        BitReader(byte[] bytes, int position) {
+            this.bytes = bytes;
+            this.position = position;
+        }
+
+        long read(int bits) {
+            if (position + bits > (long) bytes.length * 8) {
+                throw new IllegalArgumentException("Time-series block is truncated");
+            }
+            long result = 0;
+            for (int remaining = bits; remaining > 0; ) {
+                int available = 8 - (position & 7);
+                int take = Math.min(available, remaining);
+                int chunk = ((bytes[position >>> 3] & 0xff) >>> (available - take)) & ((1 << take) - 1);
+                result = (result << take) | chunk;
+                position += take;
+                remaining -= take;
+            }
+            return result;
+        }
+    }
+}
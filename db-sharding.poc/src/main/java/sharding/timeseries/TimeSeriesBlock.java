@@ -0,0 +1,92 @@
+package sharding.timeseries;
+
+/**
+ * One block of a time series as stored in a {@code ts_data} row, {@code data_werte} holding its points encoded
+ * by the {@link GorillaCodec}.
+ * <p>
+ * A block read from the database keeps the encoded bytes and decodes them on the first access to its points,
+ * so blocks that are only passed on or filtered by their bounds are never decoded. The decoded arrays are shared,
+ * not copied; callers must not modify them.
+ */
+public final class TimeSeriesBlock {
+
+    private final String headId;
+    private final long blockStart;
+    private final long blockEnd;
+    private final byte[] encoded;
+    private volatile Points points;
+
+    /**
+     * A block as read from a row.
+     */
+    public TimeSeriesBlock(String headId, long blockStart, long blockEnd, byte[] encoded) {
+        this.headId = headId;
+        this.blockStart = blockStart;
+        this.blockEnd = blockEnd;
+        this.encoded = encoded;
+    }
+
+    /**
+     * Encodes points with strictly increasing timestamps, the block spans the first to the last timestamp. The
+     * arrays are kept as the points of the block.
+     */
+    public static TimeSeriesBlock of(String headId, long[] timestamps, double[] values) {
+        if (timestamps.length == 0 || timestamps.length != values.length) {
+            throw new IllegalArgumentException("A block needs the same number of timestamps and values, at least one");
+        }
+        for (int i = 1; i < timestamps.length; i++) {
+            if (timestamps[i] <= timestamps[i - 1]) {
+                throw new IllegalArgumentException("Timestamps of " + headId + " not increasing at index " + i);
+            }
+        }
+        TimeSeriesBlock block = new TimeSeriesBlock(headId, timestamps[0], timestamps[timestamps.length - 1],
+                GorillaCodec.encode(timestamps, values, timestamps.length));
+        block.points = new Points(timestamps, values);
+        return block;
+    }
+
+    public String headId() {
+        return headId;
+    }
+
+    public long blockStart() {
+        return blockStart;
+    }
+
+    public long blockEnd() {
+        return blockEnd;
+    }
+
+    /**
+     * The {@code data_werte} bytes.
+     */
+    public byte[] encoded() {
+        return encoded;
+    }
+
+    public int size() {
+        return GorillaCodec.count(encoded);
+    }
+
+    public long[] timestamps() {
+        return points().timestamps;
+    }
+
+    public double[] values() {
+        return points().values;
+    }
+
+    private Points points() {
+        Points result = points;
+        if (result == null) {
+            int count = GorillaCodec.count(encoded);
+            result = new Points(new long[count], new double[count]);
+            GorillaCodec.decode(encoded, result.timestamps, result.values);
+            points = result;
+        }
+        return result;
+    }
+
+    private record Points(long[] timestamps, double[] values) {
+    }
+}
@@ -0,0 +1,132 @@
+package sharding.timeseries;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads and writes {@link TimeSeriesBlock}s of a {@code ts_data} table through the Citus coordinator.
+ * <p>
+ * Blocks are encoded on write and stored as {@code bytea} in {@code data_werte}; reads return the encoded blocks
+ * and decode nothing until a block's points are accessed. For the tables keyed by
+ * {@code (data_head_id, data_block_start)}: {@code ts_data} and {@code ts_data_versioned_current}.
+ * <p>
+ * The DAO refuses tables whose {@code data_werte} is still {@code TEXT}, those are converted by
+ * {@code db/postgres/migrate_data_werte_to_bytea.sql}.
+ */
+public class TimeSeriesBlockDao {
+
+    private final DataSource dataSource;
+    private final String upsertSql;
+    private final String selectSql;
+    private final String selectOverlappingSql;
+
+    /**
+     * @throws IllegalStateException if {@code data_werte} of the table is not {@code bytea}
+     */
+    public TimeSeriesBlockDao(DataSource dataSource, String table) {
+        requireByteaBlocks(dataSource, table);
+        this.dataSource = dataSource;
+        this.upsertSql = "INSERT INTO " + table + " (data_head_id, data_block_start, data_block_end, data_werte) VALUES (?, ?, ?, ?)"
+                + " ON CONFLICT (data_head_id, data_block_start) DO UPDATE SET data_block_end = EXCLUDED.data_block_end,"
+                + " data_werte = EXCLUDED.data_werte";
+        this.selectSql = "SELECT data_head_id, data_block_start, data_block_end, data_werte FROM " + table
+                + " WHERE data_head_id = ? AND data_block_start = ?";
+        this.selectOverlappingSql = "SELECT data_head_id, data_block_start, data_block_end, data_werte FROM " + table
+                + " WHERE data_head_id = ? AND data_block_start <= ? AND data_block_end >= ? ORDER BY data_block_start";
+    }
+
+    /**
+     * Writes the points as one block, replacing a block of the head with the same start.
+     */
+    public TimeSeriesBlock write(String headId, long[] timestamps, double[] values) {
+        TimeSeriesBlock block = TimeSeriesBlock.of(headId, timestamps, values);
+        writeAll(List.of(block));
+        return block;
+    }
+
+    /**
+     * Writes the blocks in one batch and transaction.
+     */
+    public void writeAll(List<TimeSeriesBlock> blocks) {
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(upsertSql)) {
+                for (TimeSeriesBlock block : blocks) {
+                    statement.setString(1, block.headId());
+                    statement.setLong(2, block.blockStart());
+                    statement.setLong(3, block.blockEnd());
+                    statement.setBytes(4, block.encoded());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Writing " + blocks.size() + " time-series blocks failed", e);
+        }
+    }
+
+    /**
+     * The block of the head starting at {@code blockStart}, or {@code null}.
+     */
+    public TimeSeriesBlock find(String headId, long blockStart) {
+        List<TimeSeriesBlock> blocks = query(selectSql, headId, blockStart, null);
+        return blocks.isEmpty() ? null : blocks.get(0);
+    }
+
+    /**
+     * Blocks of the head overlapping {@code [from, to]}, ordered by start. Points outside the range are not
+     * filtered out of the blocks.
+     */
+    public List<TimeSeriesBlock> findOverlapping(String headId, long from, long to) {
+        return query(selectOverlappingSql, headId, to, from);
+    }
+
+    private static void requireByteaBlocks(DataSource dataSource, String table) {
+        String type;
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT format_type(atttypid, atttypmod) FROM pg_attribute"
+                     + " WHERE attrelid = ?::regclass AND attname = 'data_werte' AND NOT attisdropped")) {
+            statement.setString(1, table);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                type = resultSet.next() ? resultSet.getString(1) : null;
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Checking the block column of " + table + " failed", e);
+        }
+        if (!"bytea".equals(type)) {
+            throw new IllegalStateException("data_werte of " + table + " is " + (type == null ? "missing" : type)
+                    + ", blocks are stored as bytea; convert it with db/postgres/migrate_data_werte_to_bytea.sql");
+        }
+    }
+
+    private List<TimeSeriesBlock> query(String sql, String headId, long first, Long second) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, headId);
+            statement.setLong(2, first);
+            if (second != null) {
+                statement.setLong(3, second);
+            }
+            List<TimeSeriesBlock> result = new ArrayList<>();
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    result.add(new TimeSeriesBlock(resultSet.getString(1), resultSet.getLong(2), resultSet.getLong(3), resultSet.getBytes(4)));
+                }
+            }
+            return result;
+        } catch (SQLException e) {
+            throw new IllegalStateException("Reading time-series blocks of " + headId + " failed", e);
+        }
+    }
+}
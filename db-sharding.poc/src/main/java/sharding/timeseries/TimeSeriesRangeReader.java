@@ -0,0 +1,99 @@
+package sharding.timeseries;
+
+import sharding.query.ScatterGatherExecutor;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Streams the blocks of many series in a time range straight from the Citus workers.
+ * <p>
+ * The heads are grouped by the shard Citus places them in, looked up once per read on the coordinator. Every
+ * worker then runs a single query over its shards of the table, all workers in parallel, each reading through a
+ * server-side cursor of {@code fetchSize} rows into a bounded buffer, and the workers' results are merged into one
+ * stream ordered by {@code (data_head_id, data_block_start)}. Memory stays bounded by the buffers however many
+ * blocks the range has; the blocks are decoded when their points are accessed.
+ * <p>
+ * Workers sort the heads with the {@code "C"} collation, the byte order of the ASCII head ids that is also the
+ * order of {@link String#compareTo}, so the merge sees every worker's rows in its own order.
+ */
+public class TimeSeriesRangeReader implements AutoCloseable {
+
+    private static final Comparator<TimeSeriesBlock> BLOCK_ORDER = Comparator.comparing(TimeSeriesBlock::headId)
+            .thenComparingLong(TimeSeriesBlock::blockStart);
+
+    private final CitusPlacements placements;
+    private final Map<String, DataSource> workers;
+    private final String table;
+    private final ScatterGatherExecutor executor;
+
+    /**
+     * @param workers                 data source of every worker, keyed by {@code nodename:nodeport} as in
+     *                                {@code citus_shards}
+     * @param table                   distributed table keyed by {@code (data_head_id, data_block_start)}, e.g.
+     *                                {@code ts_data}
+     * @param fetchSize               blocks fetched per round trip from a worker
+     * @param bufferedBlocksPerWorker blocks read ahead per worker before it waits for the consumer
+     */
+    public TimeSeriesRangeReader(DataSource coordinator, Map<String, DataSource> workers, String table, int fetchSize,
+                                 int bufferedBlocksPerWorker) {
+        this.placements = new CitusPlacements(coordinator);
+        this.workers = workers;
+        this.table = table;
+        this.executor = new ScatterGatherExecutor(workers, fetchSize, bufferedBlocksPerWorker);
+    }
+
+    /**
+     * Blocks of the heads overlapping {@code [from, to)}, ordered by head and block start. Points outside the range
+     * are not filtered out of the blocks. Close the stream when it is not consumed to the end.
+     */
+    public Stream<TimeSeriesBlock> read(Collection<String> headIds, long from, long to) {
+        Map<String, Map<String, List<String>>> placements = placements(headIds);
+        for (String worker : placements.keySet()) {
+            if (!workers.containsKey(worker)) {
+                throw new IllegalStateException("No data source for Citus worker " + worker);
+            }
+        }
+        return executor.streamPerShard(worker -> {
+            Map<String, List<String>> shards = placements.get(worker);
+            return shards == null ? null : workerStatement(shards, from, to);
+        }, resultSet -> new TimeSeriesBlock(resultSet.getString(1), resultSet.getLong(2), resultSet.getLong(3),
+                resultSet.getBytes(4)), BLOCK_ORDER, 0).map(ScatterGatherExecutor.ShardRow::row);
+    }
+
+    @Override
+    public void close() {
+        executor.close();
+    }
+
+    // One query over all shards of a worker, each shard asked only for its own heads
+    private ScatterGatherExecutor.ShardStatement workerStatement(Map<String, List<String>> shards, long from, long to) {
+        List<String> selects = new ArrayList<>();
+        List<Object> parameters = new ArrayList<>();
+        for (Map.Entry<String, List<String>> shard : shards.entrySet()) {
+            selects.add("SELECT data_head_id, data_block_start, data_block_end, data_werte FROM " + shard.getKey()
+                    + " WHERE data_head_id = ANY(?) AND data_block_start < ? AND COALESCE(data_block_end, data_block_start) >= ?");
+            parameters.add(shard.getValue().toArray(new String[0]));
+            parameters.add(to);
+            parameters.add(from);
+        }
+        String sql = "SELECT * FROM (" + String.join(" UNION ALL ", selects) + ") blocks"
+                + " ORDER BY data_head_id COLLATE \"C\", data_block_start";
+        return new ScatterGatherExecutor.ShardStatement(sql, parameters);
+    }
+
+    // Worker -> shard table -> heads, from the shard placements of the coordinator
+    private Map<String, Map<String, List<String>>> placements(Collection<String> headIds) {
+        Map<String, Map<String, List<String>>> result = new TreeMap<>();
+        for (CitusPlacements.ShardGroup group : placements.lookup(headIds, List.of(table))) {
+            result.computeIfAbsent(group.worker(), key -> new TreeMap<>()).put(group.shardNames().get(0), group.headIds());
+        }
+        return result;
+    }
+}
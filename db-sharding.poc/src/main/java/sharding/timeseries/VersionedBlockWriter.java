@@ -0,0 +1,258 @@
+package sharding.timeseries;
+
+import javax.sql.DataSource;
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Writes new versions of time-series blocks to a versioned table pair, moving the blocks they supersede from the
+ * current to the archive table.
+ * <p>
+ * All blocks of a head given to one {@link #write} become one new version of the head, numbered on from its
+ * version column in {@code ts_head}, which each pair has its own of. The heads are grouped by their Citus shard, and every shard group is written
+ * straight on its worker in one local transaction, all groups in parallel: the superseded rows are copied to the archive by a single
+ * {@code INSERT ... SELECT} and removed by a single {@code DELETE}, the new blocks inserted by one statement and
+ * one checkpoint row per head appended, each statement taking the whole group as array parameters. The current,
+ * archive, checkpoint and head tables are distributed by the head id and co-located, so a head's rows of all of
+ * them sit in shards on the same worker and no statement leaves it.
+ * <p>
+ * An archived row carries the last version it was current in. A checkpoint only records the block starts its
+ * version wrote, as 8 bytes each in {@code chkp_block_starts}; the blocks of an older version are those of its
+ * checkpoint and the ones before it, taken from the archive where they were superseded later. The starts live in
+ * a column of the distributed checkpoint table rather than a large object, which would only exist on the worker
+ * that wrote it, so they are read through the coordinator and move with their shard. Writers of the same head are
+ * serialized by the lock on its {@code ts_head} row. Each pair has its own checkpoint table, so a version number
+ * always names the same blocks.
+ */
+public class VersionedBlockWriter implements AutoCloseable {
+
+    private final CitusPlacements placements;
+    private final Map<String, DataSource> workers;
+    private final VersionedTables tables;
+    private final ExecutorService executor;
+
+    /**
+     * @param workers data source of every worker, keyed by {@code nodename:nodeport} as in {@code citus_shards}
+     * @param threads shard groups written at the same time
+     */
+    public VersionedBlockWriter(DataSource coordinator, Map<String, DataSource> workers, VersionedTables tables, int threads) {
+        this.placements = new CitusPlacements(coordinator);
+        this.workers = workers;
+        this.tables = tables;
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "versioned-writer-" + tables.current());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Writes the blocks as a new version of each of their heads.
+     *
+     * @param extVersion external version stored with the blocks, required by tables with
+     *                   {@code data_ext_version} and ignored otherwise
+     * @return the new version of every head
+     */
+    public Map<String, Long> write(Collection<TimeSeriesBlock> blocks, String extVersion) {
+        if (tables.extVersion() && extVersion == null) {
+            throw new IllegalArgumentException(tables.current() + " needs an external version");
+        }
+        Map<String, List<TimeSeriesBlock>> blocksPerHead = new LinkedHashMap<>();
+        Set<String> keys = new HashSet<>();
+        for (TimeSeriesBlock block : blocks) {
+            if (!keys.add(block.headId() + '\u0000' + block.blockStart())) {
+                throw new IllegalArgumentException("Block of " + block.headId() + " at " + block.blockStart() + " given twice");
+            }
+            blocksPerHead.computeIfAbsent(block.headId(), key -> new ArrayList<>()).add(block);
+        }
+        if (blocksPerHead.isEmpty()) {
+            return Map.of();
+        }
+
+        List<CitusPlacements.ShardGroup> groups = placements.lookup(blocksPerHead.keySet(),
+                List.of(tables.current(), tables.archive(), tables.checkpoint(), "ts_head"));
+        Map<String, Long> versions = new HashMap<>();
+        List<Future<Map<String, Long>>> writes = new ArrayList<>();
+        for (CitusPlacements.ShardGroup group : groups) {
+            DataSource worker = workers.get(group.worker());
+            if (worker == null) {
+                throw new IllegalStateException("No data source for Citus worker " + group.worker());
+            }
+            writes.add(executor.submit(() -> writeShard(worker, group, blocksPerHead, extVersion)));
+        }
+        try {
+            for (Future<Map<String, Long>> write : writes) {
+                versions.putAll(write.get());
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Writing versions of " + blocksPerHead.size() + " heads to "
+                    + tables.current() + " failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted writing versions to " + tables.current(), e);
+        }
+        return versions;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    // One transaction on the worker for all heads of a shard group
+    private Map<String, Long> writeShard(DataSource worker, CitusPlacements.ShardGroup group,
+                                        Map<String, List<TimeSeriesBlock>> blocksPerHead, String extVersion) throws SQLException {
+        String current = group.shardNames().get(0);
+        String archive = group.shardNames().get(1);
+        String checkpoint = group.shardNames().get(2);
+        String headTable = group.shardNames().get(3);
+        String[] heads = group.headIds().toArray(new String[0]);
+
+        try (Connection connection = worker.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                Map<String, Long> previous = lockVersions(connection, headTable, tables.versionColumn(), heads);
+
+                int count = 0;
+                for (String headId : heads) {
+                    count += blocksPerHead.get(headId).size();
+                }
+                String[] blockHeads = new String[count];
+                Long[] starts = new Long[count];
+                Long[] ends = new Long[count];
+                Long[] previousVersions = new Long[count];
+                byte[][] values = new byte[count][];
+                Long[] versions = new Long[heads.length];
+                byte[][] checkpoints = new byte[heads.length][];
+                Map<String, Long> result = new HashMap<>();
+                int i = 0;
+                for (int h = 0; h < heads.length; h++) {
+                    List<TimeSeriesBlock> headBlocks = blocksPerHead.get(heads[h]);
+                    long last = previous.get(heads[h]);
+                    ByteBuffer written = ByteBuffer.allocate(headBlocks.size() * Long.BYTES);
+                    for (TimeSeriesBlock block : headBlocks) {
+                        blockHeads[i] = block.headId();
+                        starts[i] = block.blockStart();
+                        ends[i] = block.blockEnd();
+                        previousVersions[i] = last;
+                        values[i] = block.encoded();
+                        written.putLong(block.blockStart());
+                        i++;
+                    }
+                    versions[h] = last + 1;
+                    checkpoints[h] = written.array();
+                    result.put(heads[h], last + 1);
+                }
+
+                String extColumn = tables.extVersion() ? ", data_ext_version" : "";
+                try (PreparedStatement statement = connection.prepareStatement("INSERT INTO " + archive
+                        + " (data_head_id, data_block_start, data_block_end, data_version, data_werte" + extColumn + ")"
+                        + " SELECT c.data_head_id, c.data_block_start, c.data_block_end, n.version, c.data_werte"
+                        + (tables.extVersion() ? ", c.data_ext_version" : "")
+                        + " FROM " + current + " c JOIN unnest(?::varchar[], ?::bigint[], ?::bigint[]) AS n(head_id, block_start, version)"
+                        + " ON c.data_head_id = n.head_id AND c.data_block_start = n.block_start")) {
+                    statement.setArray(1, connection.createArrayOf("varchar", blockHeads));
+                    statement.setArray(2, connection.createArrayOf("bigint", starts));
+                    statement.setArray(3, connection.createArrayOf("bigint", previousVersions));
+                    statement.executeUpdate();
+                }
+                try (PreparedStatement statement = connection.prepareStatement("DELETE FROM " + current + " c"
+                        + " USING unnest(?::varchar[], ?::bigint[]) AS n(head_id, block_start)"
+                        + " WHERE c.data_head_id = n.head_id AND c.data_block_start = n.block_start")) {
+                    statement.setArray(1, connection.createArrayOf("varchar", blockHeads));
+                    statement.setArray(2, connection.createArrayOf("bigint", starts));
+                    statement.executeUpdate();
+                }
+                try (PreparedStatement statement = connection.prepareStatement("INSERT INTO " + current
+                        + " (data_head_id, data_block_start, data_block_end, data_werte" + extColumn + ")"
+                        + " SELECT n.*" + (tables.extVersion() ? ", ?" : "")
+                        + " FROM unnest(?::varchar[], ?::bigint[], ?::bigint[], ?::bytea[]) AS n")) {
+                    int parameter = 1;
+                    if (tables.extVersion()) {
+                        statement.setString(parameter++, extVersion);
+                    }
+                    statement.setArray(parameter++, connection.createArrayOf("varchar", blockHeads));
+                    statement.setArray(parameter++, connection.createArrayOf("bigint", starts));
+                    statement.setArray(parameter++, connection.createArrayOf("bigint", ends));
+                    statement.setArray(parameter, connection.createArrayOf("bytea", values));
+                    statement.executeUpdate();
+                }
+                try (PreparedStatement statement = connection.prepareStatement("INSERT INTO " + checkpoint
+                        + " (chkp_head_id, chkp_version, chkp_block_starts)"
+                        + " SELECT * FROM unnest(?::varchar[], ?::bigint[], ?::bytea[])")) {
+                    statement.setArray(1, connection.createArrayOf("varchar", heads));
+                    statement.setArray(2, connection.createArrayOf("bigint", versions));
+                    statement.setArray(3, connection.createArrayOf("bytea", checkpoints));
+                    statement.executeUpdate();
+                }
+                try (PreparedStatement statement = connection.prepareStatement("UPDATE " + headTable + " h SET " + tables.versionColumn() + " = n.version"
+                        + " FROM unnest(?::varchar[], ?::bigint[]) AS n(head_id, version) WHERE h.head_id = n.head_id")) {
+                    statement.setArray(1, connection.createArrayOf("varchar", heads));
+                    statement.setArray(2, connection.createArrayOf("bigint", versions));
+                    statement.executeUpdate();
+                }
+                connection.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    // Locks the heads' rows, sorted so two writers of overlapping heads lock in the same order
+    private static Map<String, Long> lockVersions(Connection connection, String headTable, String versionColumn,
+                                                  String[] heads) throws SQLException {
+        Map<String, Long> result = new HashMap<>();
+        try (PreparedStatement statement = connection.prepareStatement("SELECT head_id, " + versionColumn + " FROM " + headTable
+                + " WHERE head_id = ANY(?) ORDER BY head_id COLLATE \"C\" FOR UPDATE")) {
+            statement.setArray(1, connection.createArrayOf("varchar", heads));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    result.put(resultSet.getString(1), resultSet.getLong(2));
+                }
+            }
+        }
+        for (String headId : heads) {
+            if (!result.containsKey(headId)) {
+                throw new IllegalStateException("No ts_head row for " + headId);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * A current/archive table pair, the checkpoint table recording their versions and the {@code ts_head} column
+     * counting them. No two pairs may share a checkpoint table or version column.
+     *
+     * @param extVersion whether both tables carry {@code data_ext_version}
+     */
+    public record VersionedTables(String current, String archive, String checkpoint, String versionColumn, boolean extVersion) {
+
+        public static final VersionedTables VERSIONED = new VersionedTables("ts_data_versioned_current",
+                "ts_data_versioned_archive", "ts_checkpoint_versioned", "head_version", false);
+
+        /**
+         * The pair with external versions.
+         */
+        public static final VersionedTables INT_EXT = new VersionedTables("ts_data_int_ext_ver_curr",
+                "ts_data_int_ext_ver_archive", "ts_checkpoint_int_ext_ver", "head_int_ext_version", true);
+    }
+}
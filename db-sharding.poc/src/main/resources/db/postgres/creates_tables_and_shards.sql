@@ -1,5 +1,6 @@
 DROP TABLE IF EXISTS ts_data_int_ext_ver_curr CASCADE;
 DROP TABLE IF EXISTS ts_data_int_ext_ver_archive CASCADE;
+DROP TABLE IF EXISTS ts_checkpoint_int_ext_ver CASCADE;
 DROP TABLE IF EXISTS ts_checkpoint_versioned CASCADE;
 DROP TABLE IF EXISTS ts_data_versioned_archive CASCADE;
 DROP TABLE IF EXISTS ts_data_versioned_current CASCADE;
@@ -19,7 +20,8 @@ DROP TABLE IF EXISTS ts_head CASCADE;
 -- Enable Citus extension if not already enabled
 CREATE EXTENSION IF NOT EXISTS citus;
 
--- Create the ts_head table
+-- Create the ts_head table, head_version counts the versions of ts_data_versioned_current and
+-- head_int_ext_version those of ts_data_int_ext_ver_curr
 CREATE TABLE IF NOT EXISTS ts_head (
                                        head_id VARCHAR(36) PRIMARY KEY,
                                        head_timeseriestype VARCHAR(100) NOT NULL,
@@ -37,18 +39,20 @@ CREATE TABLE IF NOT EXISTS ts_head (
                                        head_external_id VARCHAR(400),
                                        head_trc_data_write BOOLEAN DEFAULT false NOT NULL,
                                        head_default_value VARCHAR(400),
-                                       head_version BIGINT DEFAULT 0 NOT NULL
+                                       head_version BIGINT DEFAULT 0 NOT NULL,
+                                       head_int_ext_version BIGINT DEFAULT 0 NOT NULL
 );
 
 -- Shard the ts_head table using hash-based sharding on head_id
 SELECT create_distributed_table('ts_head', 'head_id', 'hash');
 
--- Create the ts_data table
+-- Create the ts_data table, data_werte holds the points of a block encoded by sharding.timeseries.GorillaCodec
+-- (databases created with TEXT blocks are converted by migrate_data_werte_to_bytea.sql)
 CREATE TABLE IF NOT EXISTS ts_data (
                                        data_block_start BIGINT NOT NULL,
                                        data_block_end BIGINT,
                                        data_head_id VARCHAR(36) NOT NULL REFERENCES ts_head(head_id),
-                                       data_werte TEXT,
+                                       data_werte BYTEA,
                                        PRIMARY KEY (data_head_id, data_block_start)
 );
 
@@ -174,7 +178,7 @@ CREATE TABLE IF NOT EXISTS ts_data_versioned_current (
                                                          data_head_id VARCHAR(36) NOT NULL REFERENCES ts_head(head_id),
                                                          data_block_start BIGINT NOT NULL,
                                                          data_block_end BIGINT,
-                                                         data_werte TEXT,
+                                                         data_werte BYTEA,
                                                          PRIMARY KEY (data_head_id, data_block_start)
 );
 
@@ -188,18 +192,19 @@ CREATE TABLE IF NOT EXISTS ts_data_versioned_archive (
                                                          data_block_start BIGINT NOT NULL,
                                                          data_block_end BIGINT,
                                                          data_version BIGINT NOT NULL,
-                                                         data_werte TEXT,
+                                                         data_werte BYTEA,
                                                          PRIMARY KEY (data_head_id, data_block_start, data_version)
 );
 
 -- Shard the ts_data_versioned_archive table using hash-based sharding on data_head_id
 SELECT create_distributed_table('ts_data_versioned_archive', 'data_head_id', 'hash');
 
--- Create the ts_checkpoint_versioned table
+-- Create the ts_checkpoint_versioned table, chkp_block_starts holds the block starts a version wrote, 8 bytes each
 CREATE TABLE IF NOT EXISTS ts_checkpoint_versioned (
                                                        chkp_head_id VARCHAR(36) NOT NULL REFERENCES ts_head(head_id),
                                                        chkp_version BIGINT NOT NULL,
                                                        chkp_rows OID,
+                                                       chkp_block_starts BYTEA,
                                                        PRIMARY KEY (chkp_head_id, chkp_version)
 );
 
@@ -212,7 +217,7 @@ CREATE TABLE IF NOT EXISTS ts_data_int_ext_ver_curr (
                                                         data_block_start BIGINT NOT NULL,
                                                         data_block_end BIGINT,
                                                         data_ext_version TEXT NOT NULL,
-                                                        data_werte TEXT,
+                                                        data_werte BYTEA,
                                                         PRIMARY KEY (data_head_id, data_block_start)
 );
 
@@ -227,9 +232,21 @@ CREATE TABLE IF NOT EXISTS ts_data_int_ext_ver_archive (
                                                            data_block_end BIGINT,
                                                            data_version BIGINT NOT NULL,
                                                            data_ext_version TEXT NOT NULL,
-                                                           data_werte TEXT,
+                                                           data_werte BYTEA,
                                                            PRIMARY KEY (data_head_id, data_version, data_block_start)
 );
 
 -- Shard the ts_data_int_ext_ver_archive table using hash-based sharding on data_head_id
 SELECT create_distributed_table('ts_data_int_ext_ver_archive', 'data_head_id', 'hash');
+
+-- Create the ts_checkpoint_int_ext_ver table, the checkpoints of the ts_data_int_ext_ver tables
+-- (databases whose pairs shared ts_checkpoint_versioned get it from migrate_int_ext_checkpoints.sql)
+CREATE TABLE IF NOT EXISTS ts_checkpoint_int_ext_ver (
+                                                         chkp_head_id VARCHAR(36) NOT NULL REFERENCES ts_head(head_id),
+                                                         chkp_version BIGINT NOT NULL,
+                                                         chkp_block_starts BYTEA,
+                                                         PRIMARY KEY (chkp_head_id, chkp_version)
+);
+
+-- Shard the ts_checkpoint_int_ext_ver table using hash-based sharding on chkp_head_id
+SELECT create_distributed_table('ts_checkpoint_int_ext_ver', 'chkp_head_id', 'hash');
@@ -0,0 +1,21 @@
+-- Converts data_werte of the ts_data tables created before sharding.timeseries.GorillaCodec from TEXT to BYTEA.
+-- TEXT blocks have no format the codec could read, so a table still holding any stops the migration and has to be
+-- emptied and reloaded first; tables without blocks are converted in place. Run on the Citus coordinator, tables
+-- already converted are skipped.
+DO $$
+DECLARE
+    data_table TEXT;
+    has_blocks BOOLEAN;
+BEGIN
+    FOREACH data_table IN ARRAY ARRAY['ts_data', 'ts_data_versioned_current', 'ts_data_versioned_archive',
+                                      'ts_data_int_ext_ver_curr', 'ts_data_int_ext_ver_archive'] LOOP
+        IF (SELECT format_type(atttypid, atttypmod) FROM pg_attribute
+            WHERE attrelid = to_regclass(data_table) AND attname = 'data_werte' AND NOT attisdropped) = 'text' THEN
+            EXECUTE format('SELECT EXISTS (SELECT 1 FROM %I WHERE data_werte IS NOT NULL)', data_table) INTO has_blocks;
+            IF has_blocks THEN
+                RAISE EXCEPTION '% still holds TEXT blocks, empty it and reload them through TimeSeriesBlockDao', data_table;
+            END IF;
+            EXECUTE format('ALTER TABLE %I ALTER COLUMN data_werte TYPE BYTEA USING NULL::BYTEA', data_table);
+        END IF;
+    END LOOP;
+END $$;
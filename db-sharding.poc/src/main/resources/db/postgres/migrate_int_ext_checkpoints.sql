@@ -0,0 +1,19 @@
+-- Gives the ts_data_int_ext_ver tables a checkpoint table and version counter of their own, databases created
+-- before kept the checkpoints of both pairs in ts_checkpoint_versioned and counted both in head_version. The new counter
+-- starts at head_version, so the versions of the int_ext pair keep growing past the ones its archive already carries;
+-- checkpoints written before stay in ts_checkpoint_versioned. Run on the Citus coordinator, safe to run again.
+ALTER TABLE ts_head ADD COLUMN IF NOT EXISTS head_int_ext_version BIGINT DEFAULT 0 NOT NULL;
+
+DO $$
+BEGIN
+    IF to_regclass('ts_checkpoint_int_ext_ver') IS NULL THEN
+        UPDATE ts_head SET head_int_ext_version = head_version;
+        CREATE TABLE ts_checkpoint_int_ext_ver (
+            chkp_head_id VARCHAR(36) NOT NULL REFERENCES ts_head(head_id),
+            chkp_version BIGINT NOT NULL,
+            chkp_block_starts BYTEA,
+            PRIMARY KEY (chkp_head_id, chkp_version)
+        );
+        PERFORM create_distributed_table('ts_checkpoint_int_ext_ver', 'chkp_head_id', 'hash');
+    END IF;
+END $$;
@@ -0,0 +1,44 @@
+import org.junit.jupiter.api.Test;
+import sharding.batch.AimdSize;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AimdSizeTest {
+
+    private static final long TARGET_NANOS = 10_000_000;
+
+    @Test
+    public void testGrowsUntilLatencyTarget() {
+        AimdSize size = new AimdSize(10, 1000, 10, 10, TARGET_NANOS, 0.5);
+        for (int i = 0; i < 500; i++) {
+            // 1 ms fixed cost plus 20 µs per row: throughput keeps rising, the target caps it at 450 rows
+            int rows = size.get();
+            size.onSample(rows, 1_000_000 + rows * 20_000L, true);
+        }
+        assertTrue(size.get() >= 220 && size.get() <= 450, "expected to oscillate below the target but got " + size.get());
+    }
+
+    @Test
+    public void testShrinksOnFailureAndIgnoresPartialSamples() {
+        AimdSize size = new AimdSize(10, 1000, 400, 10, TARGET_NANOS, 0.5);
+        size.onSample(5, 1_000, true);
+        assertEquals(400, size.get());
+        size.onSample(400, 1_000, false);
+        assertEquals(200, size.get());
+        size.onSample(200, TARGET_NANOS + 1, true);
+        assertEquals(100, size.get());
+        for (int i = 0; i < 100; i++) {
+            size.onSample(size.get(), TARGET_NANOS * 10, true);
+        }
+        assertEquals(10, size.get());
+    }
+
+    @Test
+    public void testFixedNeverChanges() {
+        AimdSize size = AimdSize.fixed(50);
+        size.onSample(50, 1, true);
+        size.onSample(50, Long.MAX_VALUE, false);
+        assertEquals(50, size.get());
+    }
+}
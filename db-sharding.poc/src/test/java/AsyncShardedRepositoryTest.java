@@ -0,0 +1,27 @@
+import entity.Order;
+import entity.User;
+import org.junit.jupiter.api.Test;
+import sharding.async.AsyncShardedRepository;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class AsyncShardedRepositoryTest {
+
+    @Test
+    public void testUnroutableCallsFailTheirFuture() {
+        try (AsyncShardedRepository repository = new AsyncShardedRepository(null, null)) {
+            assertFails(IllegalArgumentException.class, repository.saveUser(new User()));
+            assertFails(IllegalArgumentException.class, repository.saveOrder(new Order()));
+            assertFails(NumberFormatException.class, repository.findUserWithOrders("user-1"));
+        }
+    }
+
+    private static void assertFails(Class<? extends Throwable> type, CompletableFuture<?> future) {
+        CompletionException failure = assertThrows(CompletionException.class, future::join);
+        assertInstanceOf(type, failure.getCause());
+    }
+}
@@ -1,4 +1,5 @@
 
+import entity.User;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityManagerFactory;
 import jakarta.persistence.EntityTransaction;
@@ -7,6 +8,11 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.TestInstance;
+import sharding.ShardingTopology;
+import sharding.batch.BatchTable;
+import sharding.batch.ShardedBatchWriter;
+
+import java.util.function.Supplier;
 
 
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
@@ -34,10 +40,130 @@ public abstract class BasePerformanceTest {
         int deletedUsers = em.createQuery("DELETE FROM User").executeUpdate();
         System.out.println("Deleted " + deletedUsers + " users from User table.");
 
-        // Add other entities if necessary
-        // For example: em.createQuery("DELETE FROM Order").executeUpdate();
+        int deletedOrders = em.createNativeQuery("DELETE FROM t_order").executeUpdate();
+        System.out.println("Deleted " + deletedOrders + " orders from Order table.");
+
+        transaction.commit();
+    }
 
+    /**
+     * Loads the records of the workload as users and runs it, every driver thread works with its own EntityManager.
+     */
+    protected WorkloadDriver.WorkloadResult runWorkload(Workload workload) throws InterruptedException {
+        EntityTransaction transaction = em.getTransaction();
+        transaction.begin();
+        for (int i = 0; i < workload.getRecords(); i++) {
+            em.persist(newUser(String.valueOf(i)));
+            if (i % 500 == 499) {
+                em.flush();
+                em.clear();
+            }
+        }
         transaction.commit();
+        em.clear();
+
+        WorkloadDriver.WorkloadResult result = new WorkloadDriver(workload, () -> new EntityManagerOperations(emf.createEntityManager())).run();
+        result.print();
+        return result;
+    }
+
+    /**
+     * Writes the users {@code 0} to {@code n - 1} through a {@link ShardedBatchWriter}, all of them stored when it returns.
+     */
+    protected void seedUsers(int n) throws InterruptedException {
+        try (ShardedBatchWriter<User> writer = new ShardedBatchWriter<>(ShardingTopology.from(emf), BatchTable.USERS, 500, 50, 5000)) {
+            seedUsers(writer, n);
+        }
+    }
+
+    /**
+     * Writes the users {@code 0} to {@code n - 1} with the writer and flushes it.
+     */
+    protected static void seedUsers(ShardedBatchWriter<User> writer, int n) throws InterruptedException {
+        for (int i = 0; i < n; i++) {
+            writer.write(newUser(String.valueOf(i)));
+        }
+        writer.flush();
+    }
+
+    private static User newUser(String id) {
+        User user = new User();
+        user.setId(id);
+        user.setUsername("User" + id);
+        user.setEmail("user" + id + "@example.com");
+        return user;
+    }
+
+    private static class EntityManagerOperations implements WorkloadDriver.Operations {
+
+        private final EntityManager em;
+
+        private EntityManagerOperations(EntityManager em) {
+            this.em = em;
+        }
+
+        @Override
+        public boolean read(String key) {
+            try {
+                return em.find(User.class, key) != null;
+            } finally {
+                em.clear();
+            }
+        }
+
+        @Override
+        public boolean update(String key) {
+            return inTransaction(() -> {
+                User user = em.find(User.class, key);
+                if (user == null) {
+                    return false;
+                }
+                user.setEmail("updated" + System.nanoTime() + "@example.com");
+                return true;
+            });
+        }
+
+        @Override
+        public void insert(String key) {
+            inTransaction(() -> {
+                em.persist(newUser(key));
+                return true;
+            });
+        }
+
+        @Override
+        public boolean delete(String key) {
+            return inTransaction(() -> {
+                User user = em.find(User.class, key);
+                if (user == null) {
+                    return false;
+                }
+                em.remove(user);
+                return true;
+            });
+        }
+
+        private boolean inTransaction(Supplier<Boolean> work) {
+            EntityTransaction transaction = em.getTransaction();
+            transaction.begin();
+            try {
+                boolean result = work.get();
+                transaction.commit();
+                return result;
+            } catch (RuntimeException e) {
+                if (transaction.isActive()) {
+                    transaction.rollback();
+                }
+                throw e;
+            } finally {
+                em.clear();
+            }
+        }
+
+        @Override
+        public void close() {
+            em.close();
+        }
     }
 
     protected abstract String getPersistenceUnitName();
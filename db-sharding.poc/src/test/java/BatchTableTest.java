@@ -0,0 +1,56 @@
+import entity.Order;
+import org.junit.jupiter.api.Test;
+import sharding.batch.AdaptiveBatchController;
+import sharding.batch.BatchTable;
+import sharding.batch.ShardedBatchWriter;
+import sharding.id.ShardedIdLayout;
+
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class BatchTableTest {
+
+    @Test
+    public void testOrderWithoutIdGetsOne() throws Exception {
+        Map<Integer, Object> parameters = new HashMap<>();
+        PreparedStatement statement = (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("setObject")) {
+                        parameters.put((Integer) args[0], args[1]);
+                    }
+                    return null;
+                });
+        long userId = 3;
+        Order order = new Order();
+        order.setUser_id(userId);
+        order.setTotal_amount(9.5);
+
+        BatchTable.ORDERS.binder().bind(statement, 4, order);
+
+        assertNotNull(order.getId());
+        assertEquals(order.getId(), parameters.get(4));
+        assertEquals(userId, parameters.get(5));
+        // Routed by the user id, the order id keeps to shard 0
+        assertEquals(0, ShardedIdLayout.DEFAULT.shardOf(order.getId()));
+
+        // An assigned id is kept
+        order.setId(42L);
+        BatchTable.ORDERS.binder().bind(statement, 1, order);
+        assertEquals(42L, parameters.get(1));
+    }
+
+    @Test
+    public void testRejectsBatchesBeyondTheBindParameterLimit() {
+        assertEquals(21845, BatchTable.USERS.maxRowsPerStatement());
+        assertThrows(IllegalArgumentException.class, () -> new ShardedBatchWriter<>(null, BatchTable.USERS, 21846, 50, 100));
+        AdaptiveBatchController controller = new AdaptiveBatchController(16, 30000, 20, 64, 60000, 100, TimeUnit.MILLISECONDS);
+        assertThrows(IllegalArgumentException.class, () -> new ShardedBatchWriter<>(null, BatchTable.ORDERS, controller, 50, 100));
+    }
+}
@@ -0,0 +1,131 @@
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A data source without a database: every statement it runs is recorded with its parameters, SQL arrays as their
+ * elements, and queries return the rows the answer function gives for their SQL.
+ */
+final class FakeJdbc {
+
+    private final Answer answer;
+    private final List<Executed> executed = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger commits = new AtomicInteger();
+    private final AtomicInteger rollbacks = new AtomicInteger();
+
+    FakeJdbc(Answer answer) {
+        this.answer = answer;
+    }
+
+    /**
+     * A database whose queries return no rows.
+     */
+    FakeJdbc() {
+        this(sql -> List.of());
+    }
+
+    DataSource dataSource() {
+        return proxy(DataSource.class, (proxy, method, args) ->
+                method.getName().equals("getConnection") ? connection() : defaultValue(method));
+    }
+
+    List<Executed> executed() {
+        return new ArrayList<>(executed);
+    }
+
+    int commits() {
+        return commits.get();
+    }
+
+    int rollbacks() {
+        return rollbacks.get();
+    }
+
+    private Connection connection() {
+        return proxy(Connection.class, (proxy, method, args) -> switch (method.getName()) {
+            case "prepareStatement" -> statement((String) args[0]);
+            case "createArrayOf" -> array((Object[]) args[1]);
+            case "commit" -> {
+                commits.incrementAndGet();
+                yield null;
+            }
+            case "rollback" -> {
+                rollbacks.incrementAndGet();
+                yield null;
+            }
+            default -> defaultValue(method);
+        });
+    }
+
+    private PreparedStatement statement(String sql) {
+        Map<Integer, Object> parameters = new TreeMap<>();
+        return proxy(PreparedStatement.class, (proxy, method, args) -> switch (method.getName()) {
+            case "setArray" -> parameters.put((Integer) args[0], ((Array) args[1]).getArray());
+            case "setString", "setLong", "setObject" -> parameters.put((Integer) args[0], args[1]);
+            case "executeQuery" -> resultSet(answer.rows(record(sql, parameters)));
+            case "executeUpdate" -> answer.rows(record(sql, parameters)).size();
+            default -> defaultValue(method);
+        });
+    }
+
+    private String record(String sql, Map<Integer, Object> parameters) {
+        executed.add(new Executed(sql, new TreeMap<>(parameters)));
+        return sql;
+    }
+
+    private static Array array(Object[] elements) {
+        return proxy(Array.class, (proxy, method, args) ->
+                method.getName().equals("getArray") ? elements : defaultValue(method));
+    }
+
+    private static ResultSet resultSet(List<Object[]> rows) {
+        int[] row = {-1};
+        return proxy(ResultSet.class, (proxy, method, args) -> switch (method.getName()) {
+            case "next" -> ++row[0] < rows.size();
+            case "getString", "getBytes" -> rows.get(row[0])[(Integer) args[0] - 1];
+            case "getInt" -> ((Number) rows.get(row[0])[(Integer) args[0] - 1]).intValue();
+            case "getLong" -> ((Number) rows.get(row[0])[(Integer) args[0] - 1]).longValue();
+            default -> defaultValue(method);
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(FakeJdbc.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private static Object defaultValue(Method method) {
+        Class<?> type = method.getReturnType();
+        if (type == boolean.class) {
+            return false;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        }
+        return null;
+    }
+
+    /**
+     * Rows of a statement, for an update as many as it changed; may throw to fail the statement.
+     */
+    interface Answer {
+
+        List<Object[]> rows(String sql) throws SQLException;
+    }
+
+    record Executed(String sql, Map<Integer, Object> parameters) {
+    }
+}
@@ -0,0 +1,97 @@
+import org.junit.jupiter.api.Test;
+import sharding.timeseries.GorillaCodec;
+import sharding.timeseries.TimeSeriesBlock;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GorillaCodecTest {
+
+    @Test
+    public void testRegularSeriesCompresses() {
+        int count = 96 * 30;
+        long[] timestamps = new long[count];
+        double[] values = new double[count];
+        for (int i = 0; i < count; i++) {
+            // Quarter-hourly meter readings, repeating values and a few jumps
+            timestamps[i] = 1_700_000_000_000L + i * 900_000L;
+            values[i] = 20.0 + (i / 8) % 5 * 0.25;
+        }
+
+        byte[] encoded = GorillaCodec.encode(timestamps, values, count);
+        System.out.println(count + " points in " + encoded.length + " bytes");
+        assertTrue(encoded.length < count, "expected less than a byte per point but got " + encoded.length);
+        assertRoundTrip(timestamps, values, encoded);
+    }
+
+    @Test
+    public void testIrregularSeriesRoundTrips() {
+        Random random = new Random(42);
+        int count = 10000;
+        long[] timestamps = new long[count];
+        double[] values = new double[count];
+        long timestamp = -5_000_000L;
+        for (int i = 0; i < count; i++) {
+            // Gaps of every delta-of-delta width, including ones that need all 64 bits
+            timestamp += switch (i % 5) {
+                case 0 -> 1;
+                case 1 -> 1 + random.nextInt(200);
+                case 2 -> 1 + random.nextInt(3000);
+                case 3 -> 1 + random.nextInt(1 << 20);
+                default -> 1L << 40;
+            };
+            timestamps[i] = timestamp;
+            values[i] = random.nextGaussian() * Math.pow(10, random.nextInt(20) - 10);
+        }
+        values[10] = Double.NaN;
+        values[11] = Double.POSITIVE_INFINITY;
+        values[12] = -0.0;
+        values[13] = Double.MIN_VALUE;
+
+        assertRoundTrip(timestamps, values, GorillaCodec.encode(timestamps, values, count));
+    }
+
+    @Test
+    public void testSingleAndNoPoint() {
+        assertRoundTrip(new long[]{Long.MIN_VALUE}, new double[]{-1.5}, GorillaCodec.encode(new long[]{Long.MIN_VALUE}, new double[]{-1.5}, 1));
+        assertEquals(0, GorillaCodec.count(GorillaCodec.encode(new long[0], new double[0], 0)));
+    }
+
+    @Test
+    public void testBlockDecodesLazily() {
+        TimeSeriesBlock written = TimeSeriesBlock.of("head-1", new long[]{10, 20, 30}, new double[]{1, 2, 3});
+        TimeSeriesBlock read = new TimeSeriesBlock("head-1", written.blockStart(), written.blockEnd(), written.encoded());
+
+        assertEquals(10, read.blockStart());
+        assertEquals(30, read.blockEnd());
+        assertEquals(3, read.size());
+        assertArrayEquals(new long[]{10, 20, 30}, read.timestamps());
+        assertArrayEquals(new double[]{1, 2, 3}, read.values());
+        assertThrows(IllegalArgumentException.class, () -> TimeSeriesBlock.of("head-1", new long[]{2, 1}, new double[]{1, 2}));
+    }
+
+    @Test
+    public void testRejectsTruncatedBlock() {
+        byte[] encoded = GorillaCodec.encode(new long[]{1, 2, 4, 8}, new double[]{1, 3, 5, 7}, 4);
+        byte[] truncated = Arrays.copyOf(encoded, encoded.length - 3);
+        assertThrows(IllegalArgumentException.class, () -> GorillaCodec.decode(truncated, new long[4], new double[4]));
+        assertThrows(IllegalArgumentException.class, () -> GorillaCodec.count(new byte[]{7, 0, 0, 0, 1}));
+    }
+
+    private static void assertRoundTrip(long[] timestamps, double[] values, byte[] encoded) {
+        int count = GorillaCodec.count(encoded);
+        assertEquals(timestamps.length, count);
+        long[] decodedTimestamps = new long[count];
+        double[] decodedValues = new double[count];
+        GorillaCodec.decode(encoded, decodedTimestamps, decodedValues);
+        assertArrayEquals(timestamps, decodedTimestamps);
+        for (int i = 0; i < count; i++) {
+            assertEquals(Double.doubleToRawLongBits(values[i]), Double.doubleToRawLongBits(decodedValues[i]), "value " + i);
+        }
+    }
+}
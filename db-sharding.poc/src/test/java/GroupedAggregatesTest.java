@@ -0,0 +1,70 @@
+import org.junit.jupiter.api.Test;
+import sharding.query.Aggregate;
+import sharding.query.GroupedAggregates;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GroupedAggregatesTest {
+
+    private static final List<Aggregate> AGGREGATES = List.of(Aggregate.sum("amount"), Aggregate.count(),
+            Aggregate.avg("amount"), Aggregate.min("amount"), Aggregate.max("amount"));
+
+    @Test
+    public void testCombinesPartialsOfShards() {
+        GroupedAggregates aggregates = new GroupedAggregates(AGGREGATES);
+        assertEquals(6, aggregates.partialWidth());
+        // sum, count, avg sum, avg count, min, max
+        aggregates.merge(42, new double[]{10, 2, 10, 2, 4, 6});
+        aggregates.merge(42, new double[]{20, 3, 20, 3, 1, 9});
+
+        assertEquals(30, aggregates.get(42, 0));
+        assertEquals(5, aggregates.get(42, 1));
+        assertEquals(6, aggregates.get(42, 2));
+        assertEquals(1, aggregates.get(42, 3));
+        assertEquals(9, aggregates.get(42, 4));
+    }
+
+    @Test
+    public void testNullPartialsDoNotChangeTheAggregate() {
+        GroupedAggregates aggregates = new GroupedAggregates(AGGREGATES);
+        // A shard with rows of the group, but only NULL amounts
+        aggregates.merge(1, new double[]{Double.NaN, 3, Double.NaN, 0, Double.NaN, Double.NaN});
+        assertTrue(Double.isNaN(aggregates.get(1, 0)));
+        assertTrue(Double.isNaN(aggregates.get(1, 2)));
+
+        aggregates.merge(1, new double[]{-5, 1, -5, 1, -5, -5});
+        assertEquals(-5, aggregates.get(1, 0));
+        assertEquals(4, aggregates.get(1, 1));
+        assertEquals(-5, aggregates.get(1, 2));
+        assertEquals(-5, aggregates.get(1, 3));
+        assertEquals(-5, aggregates.get(1, 4));
+    }
+
+    @Test
+    public void testGrowsToManyGroups() {
+        GroupedAggregates aggregates = new GroupedAggregates(List.of(Aggregate.sum("amount")));
+        int groups = 100000;
+        for (int round = 0; round < 2; round++) {
+            for (long group = 0; group < groups; group++) {
+                aggregates.merge(group * 1024, new double[]{group});
+            }
+        }
+
+        assertEquals(groups, aggregates.size());
+        for (long group = 0; group < groups; group++) {
+            assertEquals(2.0 * group, aggregates.get(group * 1024, 0));
+        }
+        assertFalse(aggregates.contains(1));
+        assertTrue(Double.isNaN(aggregates.get(1, 0)));
+        long[] keys = aggregates.groups();
+        Arrays.sort(keys);
+        assertArrayEquals(LongStream.range(0, groups).map(group -> group * 1024).toArray(), keys);
+    }
+}
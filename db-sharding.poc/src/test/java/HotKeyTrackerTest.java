@@ -0,0 +1,100 @@
+import org.junit.jupiter.api.Test;
+import sharding.metrics.HotKeyTracker;
+
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HotKeyTrackerTest {
+
+    @Test
+    public void testFindsHotKeysAndShard() {
+        HotKeyTracker tracker = new HotKeyTracker("hot_keys_skewed", 1024, 4, 4, Long.MAX_VALUE);
+        Random random = new Random(7);
+        for (int i = 0; i < 200_000; i++) {
+            // A celebrity on ds_0 with a quarter of the load, two warm keys, a long uniform tail over both shards
+            int draw = random.nextInt(100);
+            String key = draw < 25 ? "celebrity" : draw < 30 ? "warm-1" : draw < 35 ? "warm-2" : "user-" + random.nextInt(50_000);
+            String shard = key.equals("celebrity") || Math.floorMod(key.hashCode(), 2) == 0 ? "ds_0" : "ds_1";
+            tracker.record(key, shard);
+        }
+
+        List<HotKeyTracker.HotKey> hot = tracker.hotKeys();
+        assertEquals("celebrity", hot.get(0).key());
+        assertEquals("ds_0", hot.get(0).shard());
+        assertEquals(0.25, hot.get(0).share(), 0.02);
+        Set<String> top3 = hot.stream().limit(3).map(HotKeyTracker.HotKey::key).collect(Collectors.toSet());
+        assertEquals(Set.of("celebrity", "warm-1", "warm-2"), top3);
+        assertTrue(tracker.estimate("warm-1") >= 9_000, "estimate must not undercount");
+        assertTrue(tracker.imbalance() > 1.2, "expected ds_0 to be busier but got " + tracker.shardLoad());
+    }
+
+    @Test
+    public void testIdleShardsCountIntoImbalance() {
+        HotKeyTracker tracker = new HotKeyTracker("hot_keys_idle", 1024, 4, 4, Long.MAX_VALUE);
+        List<String> shards = List.of("ds_0", "ds_1", "ds_2", "ds_3");
+        for (int i = 0; i < 1000; i++) {
+            tracker.record("user-" + i, "ds_" + i % 2, shards);
+        }
+
+        assertEquals(0L, tracker.shardLoad().get("ds_3"));
+        assertEquals(4, tracker.shardLoad().size());
+        // Half of the shards take all accesses, twice the mean
+        assertEquals(2.0, tracker.imbalance(), 0.001);
+    }
+
+    @Test
+    public void testUniformLoadKeepsHotKeysBounded() {
+        HotKeyTracker tracker = new HotKeyTracker("hot_keys_uniform", 1024, 4, 8, Long.MAX_VALUE);
+        for (int i = 0; i < 200_000; i++) {
+            tracker.record("user-" + i % 20_000, "ds_0");
+        }
+
+        List<HotKeyTracker.HotKey> hot = tracker.hotKeys();
+        assertEquals(8, hot.size());
+        for (int i = 1; i < hot.size(); i++) {
+            assertTrue(hot.get(i - 1).count() >= hot.get(i).count());
+        }
+    }
+
+    @Test
+    public void testDecayFollowsRecentLoad() {
+        HotKeyTracker tracker = new HotKeyTracker("hot_keys_decay", 1024, 4, 2, 10_000);
+        for (int i = 0; i < 10_000; i++) {
+            tracker.record("old", "ds_0");
+        }
+        tracker.decayIfDue();
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 10_000; i++) {
+                tracker.record(i % 2 == 0 ? "new" : "other-" + i, "ds_1");
+            }
+            tracker.decayIfDue();
+        }
+
+        assertEquals("new", tracker.hotKeys().get(0).key());
+        assertTrue(tracker.estimate("old") < 2_000, "old load must fade, was " + tracker.estimate("old"));
+        assertTrue(tracker.shardLoad().get("ds_1") > tracker.shardLoad().get("ds_0"));
+    }
+
+    @Test
+    public void testLateDecayHalvesOncePerInterval() {
+        HotKeyTracker tracker = new HotKeyTracker("hot_keys_late_decay", 1024, 4, 2, 10_000);
+        for (int i = 0; i < 9_999; i++) {
+            tracker.record("key", "ds_0");
+        }
+        tracker.decayIfDue();
+        assertEquals(9_999, tracker.total());
+
+        // Three intervals since the last check give three halvings
+        for (int i = 0; i < 20_001; i++) {
+            tracker.record("key", "ds_0");
+        }
+        tracker.decayIfDue();
+        assertEquals(30_000 >>> 3, tracker.estimate("key"));
+        assertEquals(30_000 >>> 3, tracker.total());
+    }
+}
@@ -0,0 +1,75 @@
+import org.apache.shardingsphere.sharding.api.sharding.complex.ComplexKeysShardingValue;
+import org.junit.jupiter.api.Test;
+import sharding.JumpHashComplexShardingAlgorithm;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JumpHashComplexShardingAlgorithmTest {
+
+    @Test
+    public void testOnlyAboutOneNthOfKeysMoveWhenAShardIsAdded() {
+        int n = 100000;
+        int moved = 0;
+        for (int i = 0; i < n; i++) {
+            long key = JumpHashComplexShardingAlgorithm.hash(String.valueOf(i), null);
+            int before = JumpHashComplexShardingAlgorithm.jumpConsistentHash(key, 2);
+            int after = JumpHashComplexShardingAlgorithm.jumpConsistentHash(key, 3);
+            if (before != after) {
+                // Keys may only move to the new shard
+                assertEquals(2, after);
+                moved++;
+            }
+        }
+        // Expect ~1/3, the old modulo routing would move ~2/3
+        assertTrue(Math.abs(moved - n / 3) < n / 50, "Moved keys: " + moved);
+    }
+
+    @Test
+    public void testKeysAreSpreadEvenly() {
+        int n = 100000;
+        int[] counts = new int[4];
+        for (int i = 0; i < n; i++) {
+            counts[JumpHashComplexShardingAlgorithm.shardIndex(String.valueOf(i), "User" + i, 4)]++;
+        }
+        for (int count : counts) {
+            assertTrue(Math.abs(count - n / 4) < n / 50, "Shard size: " + count);
+        }
+    }
+
+    @Test
+    public void testDoShardingRoutesToPrecomputedTarget() {
+        JumpHashComplexShardingAlgorithm algorithm = new JumpHashComplexShardingAlgorithm();
+        algorithm.init(new Properties());
+        List<String> targets = List.of("ds_0", "ds_1");
+
+        Collection<String> first = algorithm.doSharding(targets, value(Map.of("id", List.of("42"))));
+        Collection<String> second = algorithm.doSharding(targets, value(Map.of("id", List.of("42"))));
+
+        assertSame(first, second);
+        assertEquals("ds_" + JumpHashComplexShardingAlgorithm.shardIndex("42", null, 2), first.iterator().next());
+    }
+
+    @Test
+    public void testInListRoutesToUnionOfShards() {
+        JumpHashComplexShardingAlgorithm algorithm = new JumpHashComplexShardingAlgorithm();
+        algorithm.init(new Properties());
+        List<String> targets = List.of("ds_0", "ds_1");
+
+        Collection<String> result = algorithm.doSharding(targets, value(Map.of("id", List.of("1", "2", "3", "4", "5"))));
+
+        assertEquals(2, result.size());
+        assertEquals(targets, algorithm.doSharding(targets, value(Collections.emptyMap())));
+    }
+
+    private static ComplexKeysShardingValue<String> value(Map<String, Collection<String>> values) {
+        return new ComplexKeysShardingValue<>("t_user", values, Collections.emptyMap());
+    }
+}
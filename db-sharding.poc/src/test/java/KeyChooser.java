@@ -0,0 +1,139 @@
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Picks the key of the next operation, keys are {@code 0} up to the last inserted key. Inserts take their keys
+ * from {@link #nextInsertKey()}, so the key space grows while the workload runs.
+ */
+abstract class KeyChooser {
+
+    private final AtomicLong keyCount;
+
+    private KeyChooser(long records) {
+        this.keyCount = new AtomicLong(records);
+    }
+
+    static KeyChooser of(Workload.Distribution distribution, long records) {
+        return switch (distribution) {
+            case UNIFORM -> new Uniform(records);
+            case ZIPFIAN -> new Zipfian(records);
+            case LATEST -> new Latest(records);
+        };
+    }
+
+    /**
+     * Key of a read, update or delete.
+     */
+    abstract long nextKey(ThreadLocalRandom random);
+
+    long nextInsertKey() {
+        return keyCount.getAndIncrement();
+    }
+
+    long keyCount() {
+        return keyCount.get();
+    }
+
+    private static final class Uniform extends KeyChooser {
+
+        private Uniform(long records) {
+            super(records);
+        }
+
+        @Override
+        long nextKey(ThreadLocalRandom random) {
+            return random.nextLong(keyCount());
+        }
+    }
+
+    /**
+     * Scrambled zipfian like YCSB: popularity follows a zipfian distribution over the initial records, the popular
+     * keys are hashed over the whole key space instead of clustering at the low ids.
+     */
+    private static final class Zipfian extends KeyChooser {
+
+        private final ZipfianRanks ranks;
+
+        private Zipfian(long records) {
+            super(records);
+            this.ranks = new ZipfianRanks(records);
+        }
+
+        @Override
+        long nextKey(ThreadLocalRandom random) {
+            return Math.floorMod(fnv64(ranks.next(random)), keyCount());
+        }
+
+        private static long fnv64(long value) {
+            long hash = 0xCBF29CE484222325L;
+            for (int i = 0; i < 8; i++) {
+                hash ^= value & 0xFF;
+                hash *= 0x100000001B3L;
+                value >>>= 8;
+            }
+            return hash;
+        }
+    }
+
+    /**
+     * Zipfian over the distance to the last inserted key, recently inserted keys are the most popular.
+     */
+    private static final class Latest extends KeyChooser {
+
+        private final ZipfianRanks ranks;
+
+        private Latest(long records) {
+            super(records);
+            this.ranks = new ZipfianRanks(records);
+        }
+
+        @Override
+        long nextKey(ThreadLocalRandom random) {
+            long last = keyCount() - 1;
+            return Math.max(0, last - ranks.next(random));
+        }
+    }
+
+    /**
+     * Zipfian ranks {@code 0..items-1} with constant 0.99, rank 0 is the most popular ("Quickly Generating
+     * Billion-Record Synthetic Databases", Gray et al.).
+     */
+    private static final class ZipfianRanks {
+
+        private static final double THETA = 0.99;
+
+        private final long items;
+        private final double zetaN;
+        private final double alpha;
+        private final double eta;
+        private final double secondThreshold;
+
+        private ZipfianRanks(long items) {
+            this.items = items;
+            this.zetaN = zeta(items);
+            this.alpha = 1 / (1 - THETA);
+            this.eta = (1 - Math.pow(2.0 / items, 1 - THETA)) / (1 - zeta(2) / zetaN);
+            this.secondThreshold = 1 + Math.pow(0.5, THETA);
+        }
+
+        private long next(ThreadLocalRandom random) {
+            double u = random.nextDouble();
+            double uz = u * zetaN;
+            if (uz < 1) {
+                return 0;
+            }
+            if (uz < secondThreshold) {
+                return 1;
+            }
+            return Math.min(items - 1, (long) (items * Math.pow(eta * u - eta + 1, alpha)));
+        }
+
+        private static double zeta(long n) {
+            double sum = 0;
+            for (long i = 1; i <= n; i++) {
+                sum += 1 / Math.pow(i, THETA);
+            }
+            return sum;
+        }
+    }
+}
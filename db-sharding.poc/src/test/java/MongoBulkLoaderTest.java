@@ -0,0 +1,25 @@
+import org.junit.jupiter.api.Test;
+import org.mongo.MongoBulkLoader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class MongoBulkLoaderTest {
+
+    @Test
+    public void testHashedValueMatchesConvertShardKeyToHashed() {
+        // convertShardKeyToHashed(NumberLong(1)) in mongosh
+        assertEquals(5902408780260971510L, MongoBulkLoader.hashedValue(1));
+    }
+
+    @Test
+    public void testRangeOfSplitsTheSignedHashSpaceEvenly() {
+        assertEquals(0, MongoBulkLoader.rangeOf(Long.MIN_VALUE, 4));
+        assertEquals(1, MongoBulkLoader.rangeOf(-1, 4));
+        assertEquals(2, MongoBulkLoader.rangeOf(0, 4));
+        assertEquals(3, MongoBulkLoader.rangeOf(Long.MAX_VALUE, 4));
+        assertEquals(3, MongoBulkLoader.rangeOf(MongoBulkLoader.hashedValue(1), 4));
+        assertEquals(0, MongoBulkLoader.rangeOf(Long.MAX_VALUE, 1));
+        // Uneven counts still cover the whole space
+        assertEquals(2, MongoBulkLoader.rangeOf(Long.MAX_VALUE, 3));
+    }
+}
@@ -0,0 +1,156 @@
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.apache.shardingsphere.driver.api.yaml.YamlShardingSphereDataSourceFactory;
+import org.apache.shardingsphere.driver.jdbc.core.connection.ShardingSphereConnection;
+import org.junit.jupiter.api.Test;
+import sharding.ShardingTopology;
+import sharding.metrics.PoolUsage;
+import sharding.pool.PoolAutosizer;
+import sharding.pool.ShardBulkhead;
+import sharding.pool.ShardBulkheads;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+public class PoolAutosizerTest {
+
+    private static final String YAML = """
+            databaseName: autosize_test
+            dataSources:
+              autosize_ds:
+                dataSourceClassName: com.zaxxer.hikari.HikariDataSource
+                driverClassName: org.h2.Driver
+                jdbcUrl: jdbc:h2:mem:autosize_ds;DB_CLOSE_DELAY=-1
+                username: sa
+                password:
+                maxPoolSize: 10
+                minimumIdle: 1
+                connectionTimeout: 5000
+            """;
+
+    @Test
+    public void testResizesPoolAndBulkheadToUsage() throws Exception {
+        DataSource dataSource = YamlShardingSphereDataSourceFactory.createDataSource(YAML.getBytes(StandardCharsets.UTF_8));
+        try {
+            ShardingTopology topology = topology(dataSource);
+            HikariDataSource pool = (HikariDataSource) topology.getWriteDataSource("autosize_ds");
+            ShardBulkheads bulkheads = new ShardBulkheads(topology, 1, TimeUnit.SECONDS);
+            assertEquals(10, bulkheads.bulkhead("autosize_ds").getLimit());
+
+            PoolAutosizer autosizer = new PoolAutosizer(topology, bulkheads, 2, 1.5);
+            assertNotNull(PoolUsage.find("autosize_ds"));
+            // The first pass only takes the baseline
+            autosizer.resize();
+            assertEquals(10, pool.getMaximumPoolSize());
+
+            // Idle: shrinks by a quarter, the bulkhead with it
+            Thread.sleep(10);
+            autosizer.resize();
+            assertEquals(8, pool.getMaximumPoolSize());
+            assertEquals(8, bulkheads.bulkhead("autosize_ds").getLimit());
+            assertEquals(Map.of("autosize_ds", 8), autosizer.getPoolSizes());
+
+            // All 8 connections in use and 2 threads waiting: grows back to the configured maximum at once
+            List<Connection> held = new ArrayList<>();
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int i = 0; i < 8; i++) {
+                    held.add(pool.getConnection());
+                }
+                List<Future<Connection>> waiting = new ArrayList<>();
+                for (int i = 0; i < 2; i++) {
+                    waiting.add(executor.submit(() -> pool.getConnection()));
+                }
+                HikariPoolMXBean poolBean = pool.getHikariPoolMXBean();
+                while (poolBean.getThreadsAwaitingConnection() < 2) {
+                    Thread.sleep(1);
+                }
+                Thread.sleep(10);
+                autosizer.resize();
+                assertEquals(10, pool.getMaximumPoolSize());
+                assertEquals(10, bulkheads.bulkhead("autosize_ds").getLimit());
+                // Hikari opens the extra connections on its housekeeping run; the waiting threads get the released ones
+                closeAll(held);
+                for (Future<Connection> connection : waiting) {
+                    held.add(connection.get(5, TimeUnit.SECONDS));
+                }
+            } finally {
+                closeAll(held);
+            }
+            assertEquals(10, PoolUsage.find("autosize_ds").borrows());
+            autosizer.close();
+        } finally {
+            ((AutoCloseable) dataSource).close();
+        }
+    }
+
+    @Test
+    public void testGrowsForCallersWaitingAtTheBulkhead() throws Exception {
+        DataSource dataSource = YamlShardingSphereDataSourceFactory.createDataSource(
+                YAML.replace("autosize_ds", "autosize_bulkhead_ds").getBytes(StandardCharsets.UTF_8));
+        try {
+            ShardingTopology topology = topology(dataSource);
+            HikariDataSource pool = (HikariDataSource) topology.getWriteDataSource("autosize_bulkhead_ds");
+            ShardBulkheads bulkheads = new ShardBulkheads(topology, 5, TimeUnit.SECONDS);
+            ShardBulkhead bulkhead = bulkheads.bulkhead("autosize_bulkhead_ds");
+            // Without headroom only the waiting callers can grow a shrunk pool
+            PoolAutosizer autosizer = new PoolAutosizer(topology, bulkheads, 2, 1);
+            autosizer.resize();
+            Thread.sleep(10);
+            autosizer.resize();
+            assertEquals(8, pool.getMaximumPoolSize());
+
+            // 8 calls hold a slot and a connection each, so the 2 callers beyond them wait at the bulkhead
+            List<Connection> held = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                bulkhead.acquire();
+                held.add(pool.getConnection());
+            }
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int i = 0; i < 2; i++) {
+                    executor.submit(() -> bulkhead.call(() -> null));
+                }
+                while (bulkhead.getWaiting() < 2) {
+                    Thread.sleep(1);
+                }
+                assertEquals(0, pool.getHikariPoolMXBean().getThreadsAwaitingConnection());
+                Thread.sleep(10);
+                autosizer.resize();
+                assertEquals(10, pool.getMaximumPoolSize());
+                assertEquals(10, bulkhead.getLimit());
+            } finally {
+                closeAll(held);
+                for (int i = 0; i < 8; i++) {
+                    bulkhead.release();
+                }
+            }
+            autosizer.close();
+        } finally {
+            ((AutoCloseable) dataSource).close();
+        }
+    }
+
+    private static void closeAll(List<Connection> connections) throws Exception {
+        for (Connection connection : connections) {
+            connection.close();
+        }
+        connections.clear();
+    }
+
+    private static ShardingTopology topology(DataSource dataSource) throws Exception {
+        try (Connection connection = dataSource.getConnection()) {
+            ShardingSphereConnection shardingConnection = connection.unwrap(ShardingSphereConnection.class);
+            return new ShardingTopology(shardingConnection.getContextManager(), shardingConnection.getCurrentDatabaseName());
+        }
+    }
+}
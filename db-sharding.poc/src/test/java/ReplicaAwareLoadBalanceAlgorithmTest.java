@@ -0,0 +1,95 @@
+import org.apache.shardingsphere.infra.algorithm.loadbalancer.core.LoadBalanceAlgorithm;
+import org.apache.shardingsphere.infra.spi.type.typed.TypedSPILoader;
+import org.junit.jupiter.api.Test;
+import sharding.readwrite.ReplicaAwareLoadBalanceAlgorithm;
+import sharding.readwrite.ReplicaStats;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ReplicaAwareLoadBalanceAlgorithmTest {
+
+    @Test
+    public void testLoadedByType() {
+        LoadBalanceAlgorithm algorithm = TypedSPILoader.getService(LoadBalanceAlgorithm.class, "REPLICA_AWARE", new Properties());
+        assertTrue(algorithm instanceof ReplicaAwareLoadBalanceAlgorithm);
+    }
+
+    @Test
+    public void testFasterReplicaGetsMoreReads() {
+        ReplicaStats.replica("latency_fast").recordLatency(1_000_000);
+        ReplicaStats.replica("latency_slow").recordLatency(9_000_000);
+        ReplicaAwareLoadBalanceAlgorithm algorithm = newAlgorithm();
+
+        int fast = 0;
+        for (int i = 0; i < 10000; i++) {
+            if ("latency_fast".equals(algorithm.getTargetName("latency_group", List.of("latency_fast", "latency_slow")))) {
+                fast++;
+            }
+        }
+        // Expected share is 9 / 10
+        assertTrue(fast > 8500 && fast < 9500, "fast replica got " + fast);
+    }
+
+    @Test
+    public void testLaggingReplicaIsSkipped() {
+        ReplicaStats.registerPrimary("lag_group", "lag_primary");
+        ReplicaStats.replica("lag_behind").recordLag(5000);
+        ReplicaStats.replica("lag_current").recordLag(0);
+        ReplicaAwareLoadBalanceAlgorithm algorithm = newAlgorithm();
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals("lag_current", algorithm.getTargetName("lag_group", List.of("lag_behind", "lag_current")));
+        }
+        ReplicaStats.replica("lag_current").recordLag(5000);
+        assertEquals("lag_primary", algorithm.getTargetName("lag_group", List.of("lag_behind", "lag_current")));
+    }
+
+    @Test
+    public void testReadsAfterWriteGoToPrimary() throws Exception {
+        ReplicaStats.registerPrimary("ryw_group", "ryw_primary");
+        ReplicaAwareLoadBalanceAlgorithm algorithm = newAlgorithm();
+
+        ReplicaStats.markWrite();
+        assertEquals("ryw_primary", algorithm.getTargetName("ryw_group", List.of("ryw_replica")));
+        // Other threads haven't written
+        assertEquals("ryw_replica", CompletableFuture.supplyAsync(
+                () -> algorithm.getTargetName("ryw_group", List.of("ryw_replica"))).get());
+    }
+
+    @Test
+    public void testWritesOfBoundSessionCountForItsOwner() throws Exception {
+        ReplicaStats.registerPrimary("session_group", "session_primary");
+        ReplicaAwareLoadBalanceAlgorithm algorithm = newAlgorithm();
+        ReplicaStats.Session session = new ReplicaStats.Session();
+        ReplicaStats.Session previous = ReplicaStats.bind(session);
+        try {
+            assertEquals("session_replica", algorithm.getTargetName("session_group", List.of("session_replica")));
+            // Written on another thread on behalf of the session, like a call of the AsyncShardedRepository
+            CompletableFuture.runAsync(() -> {
+                ReplicaStats.Session before = ReplicaStats.bind(session);
+                try {
+                    ReplicaStats.markWrite();
+                } finally {
+                    ReplicaStats.bind(before);
+                }
+            }).get();
+            assertEquals("session_primary", algorithm.getTargetName("session_group", List.of("session_replica")));
+        } finally {
+            ReplicaStats.bind(previous);
+        }
+    }
+
+    private static ReplicaAwareLoadBalanceAlgorithm newAlgorithm() {
+        Properties props = new Properties();
+        props.setProperty(ReplicaAwareLoadBalanceAlgorithm.MAX_REPLICATION_LAG_MILLIS_KEY, "1000");
+        props.setProperty(ReplicaAwareLoadBalanceAlgorithm.READ_YOUR_WRITES_MILLIS_KEY, "60000");
+        ReplicaAwareLoadBalanceAlgorithm algorithm = new ReplicaAwareLoadBalanceAlgorithm();
+        algorithm.init(props);
+        return algorithm;
+    }
+}
@@ -0,0 +1,127 @@
+import org.apache.shardingsphere.driver.api.yaml.YamlShardingSphereDataSourceFactory;
+import org.apache.shardingsphere.driver.jdbc.core.connection.ShardingSphereConnection;
+import org.junit.jupiter.api.Test;
+import sharding.ShardingTopology;
+import sharding.readwrite.ReplicaAwareLoadBalanceAlgorithm;
+import sharding.readwrite.ReplicaLagMonitor;
+import sharding.readwrite.ReplicaStats;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class ReplicaLagMonitorTest {
+
+    private static final String YAML = """
+            databaseName: lag_monitor_test
+            dataSources:
+              lag_primary:
+                dataSourceClassName: com.zaxxer.hikari.HikariDataSource
+                driverClassName: org.h2.Driver
+                jdbcUrl: jdbc:h2:mem:lag_primary;DB_CLOSE_DELAY=-1
+                username: sa
+                password:
+                maxPoolSize: 2
+                minimumIdle: 1
+              lag_replica:
+                dataSourceClassName: com.zaxxer.hikari.HikariDataSource
+                driverClassName: org.h2.Driver
+                jdbcUrl: jdbc:h2:mem:lag_replica;DB_CLOSE_DELAY=-1
+                username: sa
+                password:
+                maxPoolSize: 2
+                minimumIdle: 1
+            rules:
+              - !READWRITE_SPLITTING
+                dataSourceGroups:
+                  lag_group:
+                    writeDataSourceName: lag_primary
+                    readDataSourceNames:
+                      - lag_replica
+                    loadBalancerName: LOAD_BALANCER
+                loadBalancers:
+                  replica_aware:
+                    type: REPLICA_AWARE
+                    props:
+                      lag-sample-interval-millis: 50
+                  round_robin:
+                    type: ROUND_ROBIN
+            """;
+
+    @Test
+    public void testStartedForReplicaAwareGroups() throws Exception {
+        DataSource dataSource = dataSource("replica_aware");
+        try {
+            ShardingTopology topology = topology(dataSource);
+            ReplicaLagMonitor monitor = ReplicaLagMonitor.startIfReplicaAware(topology);
+            assertNotNull(monitor);
+            assertSame(monitor, ReplicaLagMonitor.startIfReplicaAware(topology));
+            assertEquals("lag_primary", ReplicaStats.primaryOf("lag_group"));
+
+            // H2 has no replication functions, so the replica can't be sampled and counts as lagging
+            long deadline = System.nanoTime() + 5_000_000_000L;
+            while (!ReplicaStats.replica("lag_replica").hasRecentLag(1_000_000_000L) && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(Long.MAX_VALUE, monitor.getLagMillis().get("lag_replica"));
+            assertEquals("lag_primary", newAlgorithm().getTargetName("lag_group", List.of("lag_replica")));
+
+            monitor.close();
+            ReplicaLagMonitor restarted = ReplicaLagMonitor.startIfReplicaAware(topology);
+            assertNotSame(monitor, restarted);
+            restarted.close();
+        } finally {
+            ((AutoCloseable) dataSource).close();
+        }
+    }
+
+    @Test
+    public void testNotStartedForOtherLoadBalancers() throws Exception {
+        DataSource dataSource = dataSource("round_robin");
+        try {
+            assertNull(ReplicaLagMonitor.startIfReplicaAware(topology(dataSource)));
+        } finally {
+            ((AutoCloseable) dataSource).close();
+        }
+    }
+
+    @Test
+    public void testStopsOnceTheDataSourcesAreClosed() throws Exception {
+        DataSource dataSource = dataSource("replica_aware");
+        ShardingTopology topology = topology(dataSource);
+        ReplicaLagMonitor monitor = ReplicaLagMonitor.start(topology, 60_000);
+        ((AutoCloseable) dataSource).close();
+        monitor.sample();
+
+        // A closed monitor is replaced on the next start
+        ReplicaLagMonitor next = ReplicaLagMonitor.start(topology, 60_000);
+        assertNotSame(monitor, next);
+        next.close();
+    }
+
+    private static DataSource dataSource(String loadBalancer) throws Exception {
+        return YamlShardingSphereDataSourceFactory.createDataSource(
+                YAML.replace("LOAD_BALANCER", loadBalancer).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static ShardingTopology topology(DataSource dataSource) throws Exception {
+        try (Connection connection = dataSource.getConnection()) {
+            ShardingSphereConnection shardingConnection = connection.unwrap(ShardingSphereConnection.class);
+            return new ShardingTopology(shardingConnection.getContextManager(), shardingConnection.getCurrentDatabaseName());
+        }
+    }
+
+    private static ReplicaAwareLoadBalanceAlgorithm newAlgorithm() {
+        ReplicaAwareLoadBalanceAlgorithm algorithm = new ReplicaAwareLoadBalanceAlgorithm();
+        algorithm.init(new Properties());
+        return algorithm;
+    }
+}
@@ -0,0 +1,37 @@
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+import sharding.resharding.ReshardingInstances;
+import sharding.resharding.ReshardingPhase;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ReshardingInstancesTest {
+
+    @Test
+    public void testInstancesLagUntilTheyConfirmThePhase() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:resharding_instances;DB_CLOSE_DELAY=-1");
+        ReshardingInstances coordinating = new ReshardingInstances(dataSource, "app-1");
+        ReshardingInstances other = new ReshardingInstances(dataSource, "app-2");
+
+        coordinating.confirm("t_user", ReshardingPhase.DUAL_WRITE);
+        other.confirm("t_user", ReshardingPhase.SOURCE);
+        other.confirm("t_order", ReshardingPhase.SOURCE);
+        coordinating.confirm("t_user", ReshardingPhase.TARGET);
+
+        // The cutover only reached the coordinating instance
+        assertEquals(Map.of("app-2", ReshardingPhase.SOURCE), coordinating.lagging("t_user", ReshardingPhase.TARGET));
+
+        // Restarted with phase: TARGET
+        other.confirm("t_user", ReshardingPhase.TARGET);
+        assertTrue(coordinating.lagging("t_user", ReshardingPhase.TARGET).isEmpty());
+        assertEquals(Map.of("app-2", ReshardingPhase.SOURCE), coordinating.lagging("t_order", ReshardingPhase.TARGET));
+
+        // An instance that shut down no longer counts
+        coordinating.remove("app-2");
+        assertTrue(coordinating.lagging("t_order", ReshardingPhase.TARGET).isEmpty());
+    }
+}
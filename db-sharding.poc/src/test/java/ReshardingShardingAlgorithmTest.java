@@ -0,0 +1,93 @@
+import org.apache.shardingsphere.sharding.api.sharding.standard.PreciseShardingValue;
+import org.junit.jupiter.api.Test;
+import sharding.JumpHashComplexShardingAlgorithm;
+import sharding.resharding.ReshardingShardingAlgorithm;
+import sharding.resharding.ShardLayout;
+
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ReshardingShardingAlgorithmTest {
+
+    private static final List<String> TARGETS = List.of("ds_0", "ds_1", "ds_2", "ds_3");
+
+    @Test
+    public void testHashModMatchesFormerInlineExpression() {
+        ShardLayout layout = ShardLayout.parse("HASH_MOD:2", "ds_");
+        for (int i = -1000; i < 1000; i++) {
+            String id = "user-" + i;
+            assertEquals(Math.abs(id.hashCode()) % 2, layout.shardIndex(id));
+        }
+        // Integer.MIN_VALUE, whose Math.abs stays negative
+        assertEquals(0, layout.shardIndex("polygenelubricants"));
+        // The numeric t_order.user_id hashes like the string id of its user
+        assertEquals(layout.shardIndex("42"), layout.shardIndex(42L));
+        assertEquals("ds_0", layout.targetName("42"));
+    }
+
+    @Test
+    public void testModAndJumpLayouts() {
+        ShardLayout mod = ShardLayout.parse(" mod : 4 ", "ds_");
+        assertEquals(2, mod.shardIndex(6L));
+        assertEquals(3, mod.shardIndex(-1L));
+
+        ShardLayout jump = ShardLayout.parse("JUMP:4", "ds_");
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(JumpHashComplexShardingAlgorithm.shardIndex(String.valueOf(i), null, 4), jump.shardIndex(i));
+        }
+        assertEquals("JUMP:4", jump.toString());
+    }
+
+    @Test
+    public void testRejectsInvalidLayouts() {
+        assertThrows(IllegalArgumentException.class, () -> ShardLayout.parse("JUMP", "ds_"));
+        assertThrows(IllegalArgumentException.class, () -> ShardLayout.parse("JUMP:0", "ds_"));
+        assertThrows(IllegalArgumentException.class, () -> ShardLayout.parse("RANGE:2", "ds_"));
+    }
+
+    @Test
+    public void testRoutesWithSourceLayoutUntilTargetPhase() {
+        for (String phase : List.of("SOURCE", "dual_write")) {
+            ReshardingShardingAlgorithm algorithm = algorithm(phase);
+            for (int i = 0; i < 100; i++) {
+                String id = String.valueOf(i);
+                assertEquals("ds_" + Math.abs(id.hashCode()) % 2, algorithm.doSharding(TARGETS, value(id)));
+            }
+        }
+
+        ReshardingShardingAlgorithm algorithm = algorithm("TARGET");
+        for (int i = 0; i < 100; i++) {
+            String id = String.valueOf(i);
+            assertEquals("ds_" + JumpHashComplexShardingAlgorithm.shardIndex(id, null, 4), algorithm.doSharding(TARGETS, value(id)));
+        }
+    }
+
+    @Test
+    public void testTargetLayoutDefaultsToSourceLayout() {
+        ReshardingShardingAlgorithm algorithm = new ReshardingShardingAlgorithm();
+        Properties props = new Properties();
+        props.setProperty(ReshardingShardingAlgorithm.SOURCE_LAYOUT_KEY, "HASH_MOD:2");
+        props.setProperty(ReshardingShardingAlgorithm.TARGET_PREFIX_KEY, "readwrite_ds_");
+        algorithm.init(props);
+
+        assertEquals(algorithm.getSourceLayout(), algorithm.getTargetLayout());
+        assertEquals("readwrite_ds_0", algorithm.doSharding(List.of("readwrite_ds_0", "readwrite_ds_1"), value("42")));
+    }
+
+    private static ReshardingShardingAlgorithm algorithm(String phase) {
+        ReshardingShardingAlgorithm algorithm = new ReshardingShardingAlgorithm();
+        Properties props = new Properties();
+        props.setProperty(ReshardingShardingAlgorithm.SOURCE_LAYOUT_KEY, "HASH_MOD:2");
+        props.setProperty(ReshardingShardingAlgorithm.TARGET_LAYOUT_KEY, "JUMP:4");
+        props.setProperty(ReshardingShardingAlgorithm.PHASE_KEY, phase);
+        algorithm.init(props);
+        return algorithm;
+    }
+
+    private static PreciseShardingValue<Comparable<?>> value(Comparable<?> value) {
+        return new PreciseShardingValue<>("t_resharding_test", "id", null, value);
+    }
+}
@@ -0,0 +1,78 @@
+import org.junit.jupiter.api.Test;
+import sharding.pool.PoolAutosizer;
+import sharding.pool.ShardBulkhead;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ShardBulkheadTest {
+
+    @Test
+    public void testRejectsBeyondLimitAndResizes() throws Exception {
+        ShardBulkhead bulkhead = new ShardBulkhead("bulkhead_ds_0", 2, 0, TimeUnit.MILLISECONDS);
+        CountDownLatch running = new CountDownLatch(2);
+        CountDownLatch finish = new CountDownLatch(1);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 2; i++) {
+                executor.submit(() -> bulkhead.call(() -> {
+                    running.countDown();
+                    awaitQuietly(finish);
+                    return null;
+                }));
+            }
+            running.await();
+            assertEquals(2, bulkhead.getRunning());
+            assertThrows(ShardBulkhead.RejectedException.class, () -> bulkhead.call(() -> "rejected"));
+
+            bulkhead.setLimit(3);
+            assertEquals("admitted", bulkhead.call(() -> "admitted"));
+
+            // Lowered below the running calls: nothing new gets in until they finish
+            bulkhead.setLimit(1);
+            assertThrows(ShardBulkhead.RejectedException.class, () -> bulkhead.call(() -> "rejected"));
+            finish.countDown();
+        }
+        assertEquals(0, bulkhead.getRunning());
+        assertEquals("after", bulkhead.call(() -> "after"));
+    }
+
+    @Test
+    public void testWaitsForSlotWithinTimeout() throws Exception {
+        ShardBulkhead bulkhead = new ShardBulkhead("bulkhead_ds_1", 1, 5, TimeUnit.SECONDS);
+        bulkhead.acquire();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<String> waiting = executor.submit(() -> bulkhead.call(() -> "waited"));
+            while (bulkhead.getWaiting() == 0) {
+                Thread.onSpinWait();
+            }
+            bulkhead.release();
+            assertEquals("waited", waiting.get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void testAutosizerTargetFollowsLittlesLaw() {
+        // 8 s of connection time in 1 s is 8 busy connections, 12 with 1.5 headroom
+        assertEquals(12, PoolAutosizer.targetSize(8_000, 1_000, 3, 0, 5, 2, 100, 1.5));
+        // Waiting threads grow the pool at once even when the average is low
+        assertEquals(20, PoolAutosizer.targetSize(100, 1_000, 10, 10, 10, 2, 100, 1.5));
+        // Shrinks by at most a quarter per interval, never below the minimum or above the maximum
+        assertEquals(75, PoolAutosizer.targetSize(0, 1_000, 0, 0, 100, 2, 100, 1.5));
+        assertEquals(2, PoolAutosizer.targetSize(0, 1_000, 0, 0, 2, 2, 100, 1.5));
+        assertEquals(100, PoolAutosizer.targetSize(500_000, 1_000, 0, 0, 50, 2, 100, 1.5));
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sharding.metrics.MetricsExecutionHook;
+import sharding.metrics.ShardMetrics;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ShardMetricsTest {
+
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    public void addRegistry() {
+        registry = new SimpleMeterRegistry();
+        Metrics.addRegistry(registry);
+    }
+
+    @AfterEach
+    public void removeRegistry() {
+        Metrics.removeRegistry(registry);
+    }
+
+    @Test
+    public void testExecuteIsTimedPerDataSource() {
+        execute("metrics_ds_0", true);
+        execute("metrics_ds_0", true);
+        execute("metrics_ds_1", false);
+
+        Timer ds0 = registry.get("sharding.execute").tags("datasource", "metrics_ds_0", "outcome", "success").timer();
+        Timer ds1 = registry.get("sharding.execute").tags("datasource", "metrics_ds_1", "outcome", "failure").timer();
+        assertEquals(2, ds0.count());
+        assertEquals(1, ds1.count());
+    }
+
+    @Test
+    public void testBatchSizesPerDataSource() {
+        ShardMetrics.recordBatch("metrics_ds_0", 500);
+        ShardMetrics.recordBatch("metrics_ds_0", 100);
+
+        assertEquals(600, registry.get("sharding.batch.size").tag("datasource", "metrics_ds_0").summary().totalAmount());
+    }
+
+    @Test
+    public void testExecuteEventIsRecorded() throws Exception {
+        Path file = Files.createTempFile("sharding", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("sharding.Execute");
+            recording.start();
+            execute("metrics_ds_2", true);
+            recording.stop();
+            recording.dump(file);
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                    .filter(event -> "metrics_ds_2".equals(event.getString("dataSource")))
+                    .toList();
+            assertEquals(1, events.size());
+            assertEquals("SELECT 1", events.get(0).getString("sql"));
+            assertTrue(events.get(0).getBoolean("success"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static void execute(String dataSource, boolean success) {
+        MetricsExecutionHook hook = new MetricsExecutionHook();
+        hook.start(dataSource, "SELECT 1", List.of(), null, true);
+        if (success) {
+            hook.finishSuccess();
+        } else {
+            hook.finishFailure(new SQLException("failed"));
+        }
+    }
+}
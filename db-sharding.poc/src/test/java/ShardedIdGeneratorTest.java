@@ -0,0 +1,115 @@
+import org.apache.shardingsphere.infra.algorithm.core.context.AlgorithmSQLContext;
+import org.apache.shardingsphere.infra.algorithm.keygen.core.KeyGenerateAlgorithm;
+import org.apache.shardingsphere.infra.spi.type.typed.TypedSPILoader;
+import org.junit.jupiter.api.Test;
+import sharding.id.ShardedIdGenerator;
+import sharding.id.ShardedIdLayout;
+import sharding.resharding.ShardLayout;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ShardedIdGeneratorTest {
+
+    @Test
+    public void testIdsAreUniqueAcrossThreads() throws Exception {
+        ShardedIdGenerator generator = ShardedIdGenerator.of(ShardedIdLayout.DEFAULT, 1, 64);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                tasks.add(executor.submit(() -> {
+                    for (int i = 0; i < 100000; i++) {
+                        ids.add(generator.nextIdRoundRobin(2));
+                    }
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(800000, ids.size());
+    }
+
+    @Test
+    public void testVirtualThreadsReserveSingleIds() throws Exception {
+        ShardedIdGenerator generator = ShardedIdGenerator.of(ShardedIdLayout.DEFAULT, 5, 64);
+        long previous = -1;
+        for (int i = 0; i < 10000; i++) {
+            // A fresh virtual thread per id, like a task of the AsyncShardedRepository
+            Future<Long> id;
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                id = executor.submit(() -> generator.nextId(0));
+            }
+            long current = id.get();
+            if (previous >= 0 && ShardedIdLayout.DEFAULT.timestampMillisOf(current) == ShardedIdLayout.DEFAULT.timestampMillisOf(previous)) {
+                assertEquals(previous + 1, current);
+            }
+            previous = current;
+        }
+        // Without blocks the sequence numbers don't run ahead of the clock
+        assertTrue(ShardedIdLayout.DEFAULT.timestampMillisOf(previous) <= System.currentTimeMillis());
+    }
+
+    @Test
+    public void testShardIsReadFromTheIdBits() {
+        ShardedIdGenerator generator = ShardedIdGenerator.of(ShardedIdLayout.DEFAULT, 2, 64);
+        ShardLayout idBits = ShardLayout.parse("ID_BITS:4", "ds_");
+        for (int shard = 0; shard < 4; shard++) {
+            long id = generator.nextId(shard);
+            assertEquals(shard, ShardedIdLayout.DEFAULT.shardOf(id));
+            assertEquals("ds_" + shard, idBits.targetName(id));
+            assertEquals("ds_" + shard, idBits.targetName(String.valueOf(id)));
+            assertTrue(Math.abs(ShardedIdLayout.DEFAULT.timestampMillisOf(id) - System.currentTimeMillis()) < 60000);
+        }
+    }
+
+    @Test
+    public void testKeyGenerateAlgorithmSpreadsOverShards() {
+        Properties props = new Properties();
+        props.setProperty("shard-count", "2");
+        props.setProperty("worker-id", "3");
+        KeyGenerateAlgorithm algorithm = TypedSPILoader.getService(KeyGenerateAlgorithm.class, "SHARDED_SNOWFLAKE", props);
+
+        Collection<? extends Comparable<?>> keys = algorithm.generateKeys(new AlgorithmSQLContext("sharding_demo", "public", "t_order", "id"), 1000);
+        int[] perShard = new int[2];
+        for (Comparable<?> key : keys) {
+            perShard[ShardedIdLayout.DEFAULT.shardOf((Long) key)]++;
+        }
+        assertEquals(500, perShard[0]);
+        assertEquals(500, perShard[1]);
+    }
+
+    @Test
+    public void testWorkerIdMustBeConfigured() {
+        String configured = System.getProperty(ShardedIdGenerator.WORKER_ID_PROPERTY);
+        try {
+            System.clearProperty(ShardedIdGenerator.WORKER_ID_PROPERTY);
+            assertThrows(IllegalStateException.class, () -> ShardedIdGenerator.configuredWorkerId(ShardedIdLayout.DEFAULT));
+            System.setProperty(ShardedIdGenerator.WORKER_ID_PROPERTY, "64");
+            assertThrows(IllegalStateException.class, () -> ShardedIdGenerator.configuredWorkerId(ShardedIdLayout.DEFAULT));
+            System.setProperty(ShardedIdGenerator.WORKER_ID_PROPERTY, "7");
+            assertEquals(7, ShardedIdGenerator.configuredWorkerId(ShardedIdLayout.DEFAULT));
+        } finally {
+            if (configured != null) {
+                System.setProperty(ShardedIdGenerator.WORKER_ID_PROPERTY, configured);
+            } else {
+                System.clearProperty(ShardedIdGenerator.WORKER_ID_PROPERTY);
+            }
+        }
+    }
+}
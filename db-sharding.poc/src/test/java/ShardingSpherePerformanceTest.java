@@ -1,7 +1,17 @@
+import org.junit.jupiter.api.BeforeAll;
+import sharding.ShardingTopology;
+import sharding.metrics.ShardMetrics;
 
 public class ShardingSpherePerformanceTest extends BasePerformanceTest {
     @Override
     protected String getPersistenceUnitName() {
         return "shardingspherePU";
     }
+
+    // Per-shard meters in the JMX "metrics" domain, e.g. for JConsole while a test runs
+    @BeforeAll
+    public void enableShardMetrics() {
+        ShardMetrics.enableJmx();
+        ShardMetrics.instrumentPools(ShardingTopology.from(emf));
+    }
 }
@@ -0,0 +1,30 @@
+import org.junit.jupiter.api.Test;
+import sharding.timeseries.TimeSeriesBlockDao;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TimeSeriesBlockDaoTest {
+
+    @Test
+    public void testRefusesTablesWithTextBlocks() {
+        FakeJdbc database = new FakeJdbc(sql -> List.<Object[]>of(new Object[]{"text"}));
+        IllegalStateException failure = assertThrows(IllegalStateException.class,
+                () -> new TimeSeriesBlockDao(database.dataSource(), "ts_data"));
+        assertTrue(failure.getMessage().contains("migrate_data_werte_to_bytea.sql"));
+        assertEquals("ts_data", database.executed().get(0).parameters().get(1));
+
+        FakeJdbc missing = new FakeJdbc();
+        assertThrows(IllegalStateException.class, () -> new TimeSeriesBlockDao(missing.dataSource(), "ts_data"));
+    }
+
+    @Test
+    public void testAcceptsByteaBlocks() {
+        FakeJdbc database = new FakeJdbc(sql -> List.<Object[]>of(new Object[]{"bytea"}));
+        new TimeSeriesBlockDao(database.dataSource(), "ts_data_versioned_current");
+        assertEquals(1, database.executed().size());
+    }
+}
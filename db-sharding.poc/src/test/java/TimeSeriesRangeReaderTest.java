@@ -0,0 +1,70 @@
+import org.junit.jupiter.api.Test;
+import sharding.timeseries.TimeSeriesBlock;
+import sharding.timeseries.TimeSeriesRangeReader;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TimeSeriesRangeReaderTest {
+
+    // a and c in two shards of worker_1, b in a shard of worker_2
+    private final FakeJdbc coordinator = new FakeJdbc(sql -> List.of(
+            VersionedBlockWriterTest.placement("a", "worker_1", List.of("ts_data_102010")),
+            VersionedBlockWriterTest.placement("b", "worker_2", List.of("ts_data_102011")),
+            VersionedBlockWriterTest.placement("c", "worker_1", List.of("ts_data_102012"))));
+    private final FakeJdbc worker1 = new FakeJdbc(sql -> List.of(row("a", 0), row("c", 0)));
+    private final FakeJdbc worker2 = new FakeJdbc(sql -> List.of(row("b", 0), row("b", 3600)));
+
+    @Test
+    public void testMergesOneQueryPerWorkerInHeadOrder() {
+        List<TimeSeriesBlock> blocks;
+        try (TimeSeriesRangeReader reader = reader(Map.of("worker_1:5432", worker1.dataSource(), "worker_2:5432", worker2.dataSource()));
+             Stream<TimeSeriesBlock> stream = reader.read(List.of("c", "b", "a"), 0, 7200)) {
+            blocks = stream.collect(Collectors.toList());
+        }
+        assertEquals(List.of("a@0", "b@0", "b@3600", "c@0"), blocks.stream()
+                .map(block -> block.headId() + "@" + block.blockStart()).collect(Collectors.toList()));
+        assertEquals("ts_data", coordinator.executed().get(0).parameters().get(2));
+
+        // Both shards of worker_1 in one statement, each asked only for its own heads
+        assertEquals(1, worker1.executed().size());
+        FakeJdbc.Executed statement = worker1.executed().get(0);
+        assertTrue(statement.sql().contains("FROM ts_data_102010 WHERE"));
+        assertTrue(statement.sql().contains(" UNION ALL "));
+        assertTrue(statement.sql().contains("FROM ts_data_102012 WHERE"));
+        assertTrue(statement.sql().endsWith("ORDER BY data_head_id COLLATE \"C\", data_block_start"));
+        assertEquals(6, statement.parameters().size());
+        assertArrayEquals(new String[]{"a"}, (String[]) statement.parameters().get(1));
+        assertEquals(7200L, statement.parameters().get(2));
+        assertEquals(0L, statement.parameters().get(3));
+        assertArrayEquals(new String[]{"c"}, (String[]) statement.parameters().get(4));
+
+        assertEquals(1, worker2.executed().size());
+        assertEquals(3, worker2.executed().get(0).parameters().size());
+    }
+
+    @Test
+    public void testRejectsWorkersWithoutDataSource() {
+        try (TimeSeriesRangeReader reader = reader(Map.of("worker_1:5432", worker1.dataSource()))) {
+            assertThrows(IllegalStateException.class, () -> reader.read(List.of("a", "b", "c"), 0, 7200));
+        }
+        assertEquals(0, worker1.executed().size());
+    }
+
+    private TimeSeriesRangeReader reader(Map<String, DataSource> workers) {
+        return new TimeSeriesRangeReader(coordinator.dataSource(), workers, "ts_data", 100, 16);
+    }
+
+    private static Object[] row(String headId, long start) {
+        TimeSeriesBlock block = TimeSeriesBlock.of(headId, new long[]{start, start + 900}, new double[]{1.0, 2.0});
+        return new Object[]{block.headId(), block.blockStart(), block.blockEnd(), block.encoded()};
+    }
+}
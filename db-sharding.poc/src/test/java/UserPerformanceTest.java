@@ -8,21 +8,47 @@ import jakarta.persistence.LockModeType;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.junit.jupiter.api.Test;
+import sharding.ShardingTopology;
+import sharding.async.AsyncShardedRepository;
+import sharding.batch.AdaptiveBatchController;
+import sharding.batch.BatchTable;
+import sharding.batch.ShardedBatchWriter;
+import sharding.bulk.CopyBulkLoader;
+import sharding.bulk.CopyTable;
+import sharding.bulk.RowSource;
+import sharding.cache.UserNearCache;
+import sharding.pool.PoolAutosizer;
+import sharding.pool.ShardBulkheads;
+import sharding.query.Aggregate;
+import sharding.query.GroupedAggregates;
+import sharding.query.KeysetPaginator;
+import sharding.query.PartialAggregateExecutor;
+import sharding.query.ScatterGatherExecutor;
+import sharding.query.ShardedMultiGet;
+import sharding.query.UserOrderHistory;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.testng.AssertJUnit.assertNotNull;
 
 public class UserPerformanceTest extends ShardingSpherePerformanceTest {
@@ -358,6 +384,71 @@ public class UserPerformanceTest extends ShardingSpherePerformanceTest {
         System.out.println("Insert Performance Time (Parallel Batch Insert Per Shard): " + (insertEnd - insertStart) + " ms");
     }
 
+    @Test
+    public void testShardedBatchWriter() throws InterruptedException {
+        int n = 100000;
+        ShardingTopology topology = ShardingTopology.from(emf);
+
+        long insertStart = System.currentTimeMillis();
+        try (ShardedBatchWriter<User> writer = new ShardedBatchWriter<>(topology, BatchTable.USERS, 500, 50, 5000)) {
+            seedUsers(writer, n);
+            System.out.println("Rows written per shard: " + writer.getWrittenRows());
+        }
+        long insertEnd = System.currentTimeMillis();
+        System.out.println("Insert Performance Time (Sharded Batch Writer): " + (insertEnd - insertStart) + " ms");
+
+        long count = em.createQuery("SELECT COUNT(u) FROM User u", Long.class).getSingleResult();
+        assertEquals(n, count);
+    }
+
+    @Test
+    public void testAdaptiveShardedBatchWriter() throws InterruptedException {
+        int n = 100000;
+        ShardingTopology topology = ShardingTopology.from(emf);
+        AdaptiveBatchController controller = new AdaptiveBatchController(16, 1024, 20, 64, 8192, 100, TimeUnit.MILLISECONDS);
+
+        long insertStart = System.currentTimeMillis();
+        try (ShardedBatchWriter<User> writer = new ShardedBatchWriter<>(topology, BatchTable.USERS, controller, 50, 5000)) {
+            seedUsers(writer, n);
+            System.out.println("Rows written per shard: " + writer.getWrittenRows());
+        }
+        long insertEnd = System.currentTimeMillis();
+        System.out.println("Insert Performance Time (Adaptive Sharded Batch Writer): " + (insertEnd - insertStart) + " ms");
+        System.out.println("Tuned sizes per shard: " + controller.sizes());
+
+        long count = em.createQuery("SELECT COUNT(u) FROM User u", Long.class).getSingleResult();
+        assertEquals(n, count);
+    }
+
+    @Test
+    public void testCopyBulkLoad() throws InterruptedException {
+        int n = 1000000;
+        int producers = 4;
+        CopyBulkLoader loader = CopyBulkLoader.forShardingSphere(ShardingTopology.from(emf), CopyTable.USERS);
+
+        // Each producer generates its own id range, no User entity is ever created
+        RowSource[] sources = new RowSource[producers];
+        for (int p = 0; p < producers; p++) {
+            int[] next = {p * (n / producers)};
+            int end = (p + 1) * (n / producers);
+            sources[p] = row -> {
+                if (next[0] >= end) {
+                    return false;
+                }
+                int i = next[0]++;
+                row.setText(0, String.valueOf(i)).setText(1, "User" + i).setText(2, "user" + i + "@example.com");
+                return true;
+            };
+        }
+
+        CopyBulkLoader.LoadResult result = loader.load(sources);
+        System.out.println("Insert Performance Time (COPY Bulk Load): " + result.elapsedMillis() + " ms, "
+                + (long) result.rowsPerSecond() + " rows/s, per shard: " + result.rowsPerShard());
+
+        long count = em.createQuery("SELECT COUNT(u) FROM User u", Long.class).getSingleResult();
+        assertEquals(n, count);
+    }
+
     @Test
     public void testBatchInsertWithPreparedStatement() {
         int n = 100000; // Number of records to insert
@@ -586,6 +677,30 @@ public class UserPerformanceTest extends ShardingSpherePerformanceTest {
         System.out.println("Delete Performance Time: " + (deleteEnd - deleteStart) + " ms");
     }
 
+    @Test
+    public void testShardedMultiGet() throws InterruptedException {
+        int n = 100000;
+        ShardingTopology topology = ShardingTopology.from(emf);
+        seedUsers(n);
+
+        // Only the lower half of the ids exists, descending to check the results keep the input order
+        List<String> ids = new ArrayList<>();
+        for (int i = 2 * n - 1; i >= 0; i--) {
+            ids.add(String.valueOf(i));
+        }
+
+        try (ShardedMultiGet<User> multiGet = ShardedMultiGet.users(topology, 1000, 8)) {
+            long fetchStart = System.currentTimeMillis();
+            List<User> users = multiGet.findAllByIds(ids);
+            long fetchEnd = System.currentTimeMillis();
+            System.out.println("Multi-get of " + ids.size() + " ids: " + users.size() + " found in " + (fetchEnd - fetchStart) + " ms");
+
+            assertEquals(n, users.size());
+            assertEquals(String.valueOf(n - 1), users.get(0).getId());
+            assertEquals("0", users.get(n - 1).getId());
+        }
+    }
+
     @Test
     public void testHighConcurrencyCRUDWithPessimisticLockAndLogging() throws InterruptedException {
         int threadCount = 10; // Number of concurrent threads
@@ -622,50 +737,42 @@ public class UserPerformanceTest extends ShardingSpherePerformanceTest {
         long crudStart = System.currentTimeMillis();
         ExecutorService executor = Executors.newFixedThreadPool(threadCount);
         CountDownLatch latch = new CountDownLatch(threadCount);
+        AtomicInteger errors = new AtomicInteger();
 
         for (int t = 0; t < threadCount; t++) {
-            int threadIndex = t;
             executor.submit(() -> {
                 EntityManager threadEm = emf.createEntityManager(); // Thread-specific EntityManager
                 threadEm.getTransaction().begin();
 
-                System.out.println("Thread " + threadIndex + " started operations...");
                 IntStream.range(0, operationsPerThread).forEach(i -> {
                     int id = (int) (Math.random() * totalRecords);
 
                     try {
                         // Concurrent Read with Pessimistic Locking
-                        User user = threadEm.find(User.class, (long) id, LockModeType.PESSIMISTIC_WRITE);
+                        User user = threadEm.find(User.class, String.valueOf(id), LockModeType.PESSIMISTIC_WRITE);
 
                         if (user != null) {
-                            // Log read operation
-                            System.out.println("Thread " + threadIndex + " read user: " + user.getId());
-
                             // Concurrent Update
                             user.setEmail("updated_" + user.getEmail());
-                            System.out.println("Thread " + threadIndex + " updated user: " + user.getId());
 
                             // Concurrent Delete (25% chance)
                             if (Math.random() < 0.25) {
                                 threadEm.remove(user);
-                                System.out.println("Thread " + threadIndex + " deleted user: " + user.getId());
                             }
                         }
                     } catch (Exception e) {
-                        System.err.println("Thread " + threadIndex + " encountered error on ID " + id + ": " + e.getMessage());
+                        errors.incrementAndGet();
                     }
 
                     // Commit transaction in batches
                     if (i % 100 == 0) {
                         threadEm.getTransaction().commit();
                         threadEm.getTransaction().begin();
-                        System.out.println("Thread " + threadIndex + " committed batch of 100 operations...");
                     }
                 });
 
                 threadEm.getTransaction().commit();
                 threadEm.close();
-                System.out.println("Thread " + threadIndex + " completed all operations.");
                 latch.countDown();
             });
         }
@@ -674,6 +781,7 @@ public class UserPerformanceTest extends ShardingSpherePerformanceTest {
         executor.shutdown();
         long crudEnd = System.currentTimeMillis();
         System.out.println("Concurrent CRUD Operations Completed in " + (crudEnd - crudStart) + " ms");
+        System.out.println("Errors during concurrent CRUD operations: " + errors.get());
 
         // Step 3: Final Data Validation
         System.out.println("Step 3: Validating Remaining Data...");
@@ -685,6 +793,30 @@ public class UserPerformanceTest extends ShardingSpherePerformanceTest {
         System.out.println("High-Concurrency CRUD Test Completed Successfully.");
     }
 
+    @Test
+    public void testClosedLoopWorkload() throws InterruptedException {
+        WorkloadDriver.WorkloadResult result = runWorkload(Workload.updateHeavy()
+                .records(10000)
+                .threads(16)
+                .duration(Duration.ofSeconds(30)));
+
+        assertEquals(0, result.getErrors());
+        assertTrue(result.getOperations() > 0);
+    }
+
+    @Test
+    public void testOpenLoopWorkload() throws InterruptedException {
+        // Fixed arrival rate, latencies include the time operations waited behind slower ones
+        WorkloadDriver.WorkloadResult result = runWorkload(Workload.readLatest()
+                .records(10000)
+                .threads(32)
+                .targetRate(2000)
+                .duration(Duration.ofSeconds(30)));
+
+        assertEquals(0, result.getErrors());
+        assertTrue(result.getOperations() > 0);
+    }
+
     @Test
     public void testShardingsphereEqualityOrQueries() {
         // Step 1: Insert sample data for testing
@@ -784,6 +916,217 @@ public class UserPerformanceTest extends ShardingSpherePerformanceTest {
     }
 
 
+    @Test
+    public void testScatterGatherReads() throws InterruptedException {
+        int n = 100000;
+        ShardingTopology topology = ShardingTopology.from(emf);
+        seedUsers(n);
+
+        try (ScatterGatherExecutor executor = ScatterGatherExecutor.forShardingSphere(topology, "t_user")) {
+            long readStart = System.currentTimeMillis();
+            long streamed;
+            try (Stream<String> ids = executor.stream("SELECT id FROM t_user", List.of(), rs -> rs.getString(1))) {
+                streamed = ids.count();
+            }
+            long readEnd = System.currentTimeMillis();
+            System.out.println("Scatter-gather full read: " + streamed + " rows in " + (readEnd - readStart) + " ms");
+            assertEquals(n, streamed);
+            assertEquals(n, executor.sum("SELECT COUNT(*) FROM t_user", List.of()));
+
+            long topStart = System.currentTimeMillis();
+            List<String> top;
+            try (Stream<String> usernames = executor.stream("SELECT username FROM t_user ORDER BY username LIMIT ?", List.of(10),
+                    rs -> rs.getString(1), Comparator.naturalOrder(), 10)) {
+                top = usernames.collect(Collectors.toList());
+            }
+            long topEnd = System.currentTimeMillis();
+            System.out.println("Scatter-gather top 10 by username in " + (topEnd - topStart) + " ms: " + top);
+            assertEquals(em.createQuery("SELECT u.username FROM User u ORDER BY u.username", String.class)
+                    .setMaxResults(10).getResultList(), top);
+        }
+    }
+
+    @Test
+    public void testUserNearCache() throws InterruptedException {
+        int n = 10000;
+        ShardingTopology topology = ShardingTopology.from(emf);
+        seedUsers(n);
+
+        UserNearCache cache = new UserNearCache(topology, n, Duration.ofMinutes(5));
+        cache.activate();
+        try {
+            // 100 hot users read over and over, only the first read of each goes to its shard
+            long readStart = System.currentTimeMillis();
+            for (int i = 0; i < 100000; i++) {
+                assertNotNull(cache.find(em, String.valueOf(i % 100)));
+            }
+            long readEnd = System.currentTimeMillis();
+            System.out.println("Near-cache reads in " + (readEnd - readStart) + " ms: " + cache.getShardStats());
+            long misses = cache.getShardStats().values().stream().mapToLong(UserNearCache.Stats::misses).sum();
+            assertEquals(100, misses);
+
+            em.getTransaction().begin();
+            em.find(User.class, "1").setUsername("Renamed1");
+            em.getTransaction().commit();
+            em.clear();
+            assertEquals("Renamed1", cache.find(em, "1").getUsername());
+
+            em.getTransaction().begin();
+            em.createQuery("UPDATE User u SET u.email = 'bulk@example.com' WHERE u.username = 'User2'").executeUpdate();
+            em.getTransaction().commit();
+            em.clear();
+            assertEquals("bulk@example.com", cache.find(em, "2").getEmail());
+        } finally {
+            cache.deactivate();
+        }
+    }
+
+    @Test
+    public void testKeysetPagination() throws InterruptedException {
+        int n = 10000;
+        ShardingTopology topology = ShardingTopology.from(emf);
+        seedUsers(n);
+
+        KeysetPaginator<User, String> paginator = KeysetPaginator.users(ScatterGatherExecutor.forShardingSphere(topology, "t_user"));
+        Set<String> ids = new HashSet<>();
+        String cursor = null;
+        int pages = 0;
+        long start = System.currentTimeMillis();
+        do {
+            long pageStart = System.nanoTime();
+            KeysetPaginator.Page<User> page = paginator.page(cursor, 1000);
+            pages++;
+            System.out.println("Page " + pages + " in " + (System.nanoTime() - pageStart) / 1_000_000 + " ms");
+            page.rows().forEach(user -> ids.add(user.getId()));
+            cursor = page.nextCursor();
+        } while (cursor != null);
+        System.out.println(pages + " pages in " + (System.currentTimeMillis() - start) + " ms");
+        assertEquals(n, ids.size());
+    }
+
+    @Test
+    public void testPartialAggregates() throws InterruptedException {
+        int n = 100000;
+        int users = 1000;
+        ShardingTopology topology = ShardingTopology.from(emf);
+        try (ShardedBatchWriter<Order> writer = new ShardedBatchWriter<>(topology, BatchTable.ORDERS, 500, 50, 5000)) {
+            for (int i = 1; i <= n; i++) {
+                Order order = new Order();
+                order.setId((long) i);
+                order.setUser_id((long) (i % users));
+                order.setTotal_amount((double) i);
+                writer.write(order);
+            }
+        }
+
+        // Revenue per user, computed on the shards and combined per user
+        long start = System.currentTimeMillis();
+        GroupedAggregates revenue;
+        double[] totals;
+        try (ScatterGatherExecutor executor = ScatterGatherExecutor.forShardingSphere(topology, "t_order")) {
+            PartialAggregateExecutor aggregates = new PartialAggregateExecutor(executor);
+            revenue = aggregates.aggregate("t_order", "user_id", null, List.of(), List.of(
+                    Aggregate.sum("total_amount"), Aggregate.count(), Aggregate.avg("total_amount"),
+                    Aggregate.min("total_amount"), Aggregate.max("total_amount")));
+            totals = aggregates.aggregate("t_order", "total_amount > ?", List.of(n / 2), List.of(Aggregate.count()));
+        }
+        System.out.println("Aggregated " + revenue.size() + " users in " + (System.currentTimeMillis() - start) + " ms");
+
+        assertEquals(users, revenue.size());
+        // User 7 has the orders 7, 1007, ..., 99007
+        int orders = n / users;
+        double sum = (double) orders * 7 + (double) users * orders * (orders - 1) / 2;
+        assertEquals(sum, revenue.get(7, 0));
+        assertEquals(orders, revenue.get(7, 1));
+        assertEquals(sum / orders, revenue.get(7, 2));
+        assertEquals(7, revenue.get(7, 3));
+        assertEquals(99007, revenue.get(7, 4));
+        assertEquals(n / 2, totals[0]);
+    }
+
+    @Test
+    public void testUserOrderHistory() throws InterruptedException {
+        int users = 1000;
+        int ordersPerUser = 25;
+        ShardingTopology topology = ShardingTopology.from(emf);
+        assertTrue(topology.isColocated("t_user", "t_order"));
+        seedUsers(users);
+        try (ShardedBatchWriter<Order> orderWriter = new ShardedBatchWriter<>(topology, BatchTable.ORDERS, 500, 50, 5000)) {
+            for (int i = 0; i < users; i++) {
+                for (int k = 0; k < ordersPerUser; k++) {
+                    Order order = new Order();
+                    order.setId((long) i * ordersPerUser + k);
+                    order.setUser_id((long) i);
+                    order.setTotal_amount((double) k);
+                    orderWriter.write(order);
+                }
+            }
+        }
+
+        // Every order is on the shard of its user, so the join finds all of them on that shard alone
+        try (ScatterGatherExecutor executor = ScatterGatherExecutor.forShardingSphere(topology, "t_order")) {
+            long joined = executor.sum("SELECT COUNT(*) FROM t_order o JOIN t_user u ON o.user_id = CAST(u.id AS BIGINT)", List.of());
+            assertEquals((long) users * ordersPerUser, joined);
+        }
+
+        try (UserOrderHistory history = new UserOrderHistory(topology)) {
+            long start = System.nanoTime();
+            int pages = 0;
+            List<Long> orderIds = new ArrayList<>();
+            UserOrderHistory.Page page = null;
+            do {
+                page = history.page("42", page == null ? null : page.nextBeforeOrderId(), 10);
+                assertEquals("User42", page.user().getUsername());
+                page.orders().forEach(order -> orderIds.add(order.getId()));
+                pages++;
+            } while (page.nextBeforeOrderId() != null);
+            System.out.println("Order history of 42 in " + pages + " pages, " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            assertEquals(ordersPerUser, orderIds.size());
+            assertEquals(42L * ordersPerUser + ordersPerUser - 1, orderIds.get(0));
+        }
+    }
+
+    @Test
+    public void testAsyncRepository() {
+        int users = 2000;
+        ShardingTopology topology = ShardingTopology.from(emf);
+        ShardBulkheads bulkheads = new ShardBulkheads(topology, 30, TimeUnit.SECONDS);
+        // The pools, and the bulkheads with them, follow the load of the fan-out
+        try (PoolAutosizer autosizer = PoolAutosizer.start(topology, bulkheads, 500, 2, 1.5);
+             AsyncShardedRepository repository = new AsyncShardedRepository(emf, topology, bulkheads)) {
+            List<CompletableFuture<?>> writes = new ArrayList<>();
+            for (int i = 0; i < users; i++) {
+                User user = new User();
+                user.setId(String.valueOf(i));
+                user.setUsername("User" + i);
+                user.setEmail("user" + i + "@example.com");
+                Order order = new Order();
+                order.setUser_id((long) i);
+                order.setTotal_amount((double) i);
+                writes.add(repository.saveUser(user).thenCompose(saved -> repository.saveOrder(order)));
+            }
+            CompletableFuture.allOf(writes.toArray(new CompletableFuture<?>[0])).join();
+
+            // Fan out to many users and their orders at once, the request waits for the slowest read only
+            long start = System.nanoTime();
+            List<CompletableFuture<AsyncShardedRepository.UserWithOrders>> reads = new ArrayList<>();
+            for (int i = 0; i < users; i += 10) {
+                reads.add(repository.findUserWithOrders(String.valueOf(i)));
+            }
+            List<AsyncShardedRepository.UserWithOrders> results = AsyncShardedRepository.all(reads).join();
+            System.out.println("Async reads of " + results.size() + " users with orders: " + (System.nanoTime() - start) / 1_000_000 + " ms");
+
+            for (AsyncShardedRepository.UserWithOrders result : results) {
+                assertEquals(1, result.orders().size());
+                assertEquals(Long.parseLong(result.user().getId()), result.orders().get(0).getUser_id());
+            }
+            assertEquals(3, repository.findUsers(List.of("1", "missing", "2", "3")).join().size());
+            assertTrue(repository.deleteUser("1").join());
+            assertNull(repository.findUser("1").join());
+            System.out.println("Pool sizes after the async calls: " + autosizer.getPoolSizes());
+        }
+    }
+
     @Test
     public void testInsertAndQuery() {
         User user = new User();
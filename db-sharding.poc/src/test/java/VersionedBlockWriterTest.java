@@ -0,0 +1,143 @@
+import org.junit.jupiter.api.Test;
+import sharding.timeseries.TimeSeriesBlock;
+import sharding.timeseries.VersionedBlockWriter;
+
+import java.nio.ByteBuffer;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class VersionedBlockWriterTest {
+
+    private static final List<String> GROUP_A = List.of("ts_data_versioned_current_102040", "ts_data_versioned_archive_102072",
+            "ts_checkpoint_versioned_102104", "ts_head_102008");
+    private static final List<String> GROUP_B = List.of("ts_data_versioned_current_102041", "ts_data_versioned_archive_102073",
+            "ts_checkpoint_versioned_102105", "ts_head_102009");
+
+    // h1 and h2 share a shard group on worker_1, h3 has its own on worker_2
+    private final FakeJdbc coordinator = new FakeJdbc(sql -> List.of(
+            placement("h1", "worker_1", GROUP_A), placement("h2", "worker_1", GROUP_A), placement("h3", "worker_2", GROUP_B)));
+    private final FakeJdbc worker1 = new FakeJdbc(sql -> sql.contains("FOR UPDATE")
+            ? List.of(new Object[]{"h1", 3L}, new Object[]{"h2", 0L}) : List.<Object[]>of());
+
+    @Test
+    public void testWritesEveryShardGroupInOneTransactionOnItsWorker() {
+        FakeJdbc worker2 = new FakeJdbc(sql -> sql.contains("FOR UPDATE") ? List.<Object[]>of(new Object[]{"h3", 7L}) : List.<Object[]>of());
+        Map<String, Long> versions;
+        try (VersionedBlockWriter writer = writer(worker2)) {
+            versions = writer.write(List.of(block("h1", 0), block("h2", 0), block("h1", 1000), block("h3", 0)), null);
+        }
+        assertEquals(Map.of("h1", 4L, "h2", 1L, "h3", 8L), versions);
+
+        // The placements of all four co-located tables in one lookup
+        FakeJdbc.Executed lookup = coordinator.executed().get(0);
+        assertEquals(5, lookup.parameters().size());
+        assertArrayEquals(new Object[]{"h1", "h2", "h3"}, (Object[]) lookup.parameters().get(1));
+        assertEquals("ts_head", lookup.parameters().get(5));
+
+        List<FakeJdbc.Executed> statements = worker1.executed();
+        assertEquals(6, statements.size());
+        assertTrue(statements.get(0).sql().contains("FROM ts_head_102008"));
+        assertTrue(statements.get(1).sql().startsWith("INSERT INTO ts_data_versioned_archive_102072"));
+        assertTrue(statements.get(1).sql().contains("FROM ts_data_versioned_current_102040"));
+        assertTrue(statements.get(2).sql().startsWith("DELETE FROM ts_data_versioned_current_102040"));
+        assertTrue(statements.get(3).sql().startsWith("INSERT INTO ts_data_versioned_current_102040"));
+        assertTrue(statements.get(4).sql().startsWith("INSERT INTO ts_checkpoint_versioned_102104"));
+        assertTrue(statements.get(5).sql().startsWith("UPDATE ts_head_102008"));
+
+        // Blocks grouped by head, archived with the version they were current in
+        assertArrayEquals(new Object[]{"h1", "h1", "h2"}, (Object[]) statements.get(1).parameters().get(1));
+        assertArrayEquals(new Object[]{0L, 1000L, 0L}, (Object[]) statements.get(1).parameters().get(2));
+        assertArrayEquals(new Object[]{3L, 3L, 0L}, (Object[]) statements.get(1).parameters().get(3));
+
+        // The checkpoint keeps the starts in a column of the distributed table, not in a worker's large object
+        FakeJdbc.Executed checkpoint = statements.get(4);
+        assertTrue(checkpoint.sql().contains("chkp_block_starts"));
+        assertFalse(checkpoint.sql().contains("lo_"));
+        assertArrayEquals(new Object[]{4L, 1L}, (Object[]) checkpoint.parameters().get(2));
+        Object[] starts = (Object[]) checkpoint.parameters().get(3);
+        assertArrayEquals(ByteBuffer.allocate(16).putLong(0).putLong(1000).array(), (byte[]) starts[0]);
+        assertArrayEquals(ByteBuffer.allocate(8).putLong(0).array(), (byte[]) starts[1]);
+
+        assertEquals(1, worker1.commits());
+        assertEquals(6, worker2.executed().size());
+        assertTrue(worker2.executed().get(5).sql().startsWith("UPDATE ts_head_102009"));
+        assertEquals(1, worker2.commits());
+    }
+
+    @Test
+    public void testExternalVersionsHaveTheirOwnCheckpointsAndCounter() {
+        FakeJdbc placements = new FakeJdbc(sql -> List.<Object[]>of(placement("h1", "worker_1", List.of(
+                "ts_data_int_ext_ver_curr_102136", "ts_data_int_ext_ver_archive_102168", "ts_checkpoint_int_ext_ver_102200",
+                "ts_head_102008"))));
+        try (VersionedBlockWriter writer = new VersionedBlockWriter(placements.dataSource(),
+                Map.of("worker_1:5432", worker1.dataSource()), VersionedBlockWriter.VersionedTables.INT_EXT, 1)) {
+            assertEquals(Map.of("h1", 4L), writer.write(List.of(block("h1", 0)), "ext-1"));
+        }
+        assertEquals("ts_checkpoint_int_ext_ver", placements.executed().get(0).parameters().get(4));
+        List<FakeJdbc.Executed> statements = worker1.executed();
+        assertTrue(statements.get(0).sql().startsWith("SELECT head_id, head_int_ext_version FROM"));
+        assertTrue(statements.get(5).sql().contains("SET head_int_ext_version = n.version"));
+    }
+
+    @Test
+    public void testRollsBackTheShardGroupThatFailed() {
+        FakeJdbc worker2 = new FakeJdbc(sql -> {
+            if (sql.contains("FOR UPDATE")) {
+                return List.<Object[]>of(new Object[]{"h3", 7L});
+            }
+            if (sql.startsWith("DELETE")) {
+                throw new SQLException("canceling statement due to lock timeout");
+            }
+            return List.of();
+        });
+        try (VersionedBlockWriter writer = writer(worker2)) {
+            IllegalStateException failure = assertThrows(IllegalStateException.class,
+                    () -> writer.write(List.of(block("h1", 0), block("h2", 0), block("h3", 0)), null));
+            assertTrue(failure.getCause() instanceof SQLException);
+        }
+        assertEquals(1, worker2.rollbacks());
+        assertEquals(0, worker2.commits());
+    }
+
+    @Test
+    public void testRejectsInvalidWrites() {
+        try (VersionedBlockWriter writer = writer(new FakeJdbc())) {
+            assertThrows(IllegalArgumentException.class, () -> writer.write(List.of(block("h1", 0), block("h1", 0)), null));
+            assertEquals(Map.of(), writer.write(List.of(), null));
+        }
+        try (VersionedBlockWriter writer = new VersionedBlockWriter(coordinator.dataSource(),
+                Map.of("worker_1:5432", worker1.dataSource()), VersionedBlockWriter.VersionedTables.INT_EXT, 1)) {
+            assertThrows(IllegalArgumentException.class, () -> writer.write(List.of(block("h1", 0)), null));
+        }
+        // A head the placements don't cover means the tables are not co-located
+        FakeJdbc partial = new FakeJdbc(sql -> List.<Object[]>of(placement("h1", "worker_1", GROUP_A)));
+        try (VersionedBlockWriter writer = new VersionedBlockWriter(partial.dataSource(),
+                Map.of("worker_1:5432", worker1.dataSource()), VersionedBlockWriter.VersionedTables.VERSIONED, 1)) {
+            assertThrows(IllegalStateException.class, () -> writer.write(List.of(block("h1", 0), block("h3", 0)), null));
+        }
+    }
+
+    private VersionedBlockWriter writer(FakeJdbc worker2) {
+        return new VersionedBlockWriter(coordinator.dataSource(),
+                Map.of("worker_1:5432", worker1.dataSource(), "worker_2:5432", worker2.dataSource()),
+                VersionedBlockWriter.VersionedTables.VERSIONED, 2);
+    }
+
+    static Object[] placement(String headId, String worker, List<String> shardNames) {
+        List<Object> row = new ArrayList<>(List.of(headId, worker, 5432));
+        row.addAll(shardNames);
+        return row.toArray();
+    }
+
+    private static TimeSeriesBlock block(String headId, long start) {
+        return TimeSeriesBlock.of(headId, new long[]{start, start + 900}, new double[]{1.0, 2.0});
+    }
+}
@@ -0,0 +1,37 @@
+import org.junit.jupiter.api.Test;
+import org.mysql.VitessBulkLoader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class VitessBulkLoaderTest {
+
+    @Test
+    public void testKeyspaceIdMatchesTheHashVindex() {
+        // Keyspace ids the hash vindex gives, from the Vitess documentation
+        assertEquals(0x166b40b44aba4bd6L, VitessBulkLoader.keyspaceId(1));
+        assertEquals(0x06e7ea22ce92708fL, VitessBulkLoader.keyspaceId(2));
+    }
+
+    @Test
+    public void testShardRangesAtTheirBounds() {
+        VitessBulkLoader.ShardRange lower = VitessBulkLoader.ShardRange.parse("-80");
+        VitessBulkLoader.ShardRange upper = VitessBulkLoader.ShardRange.parse("80-");
+        assertTrue(lower.contains(0));
+        assertTrue(lower.contains(0x7fffffffffffffffL));
+        assertFalse(lower.contains(0x8000000000000000L));
+        // Compared unsigned, 0x80... and above are the upper half
+        assertTrue(upper.contains(0x8000000000000000L));
+        assertTrue(upper.contains(-1L));
+        assertFalse(upper.contains(0x7fffffffffffffffL));
+
+        VitessBulkLoader.ShardRange middle = VitessBulkLoader.ShardRange.parse("40-c0");
+        assertTrue(middle.contains(0x4000000000000000L));
+        assertFalse(middle.contains(0xc000000000000000L));
+        assertTrue(VitessBulkLoader.ShardRange.parse("0").contains(-1L));
+        assertTrue(VitessBulkLoader.ShardRange.parse("-").contains(0));
+        assertThrows(IllegalArgumentException.class, () -> VitessBulkLoader.ShardRange.parse("80"));
+    }
+}
@@ -0,0 +1,164 @@
+import java.time.Duration;
+
+/**
+ * YCSB-like description of a workload against {@code t_user}: operation mix, key distribution, concurrency and
+ * how long it runs. Run it with {@link BasePerformanceTest#runWorkload(Workload)}.
+ * <p>
+ * Without a target rate the workload is closed-loop, every thread issues its next operation as soon as the previous
+ * one returned. With {@link #targetRate(double)} it is open-loop: operations are scheduled at a fixed arrival rate
+ * and their latency is measured from the time they were scheduled, so a stall also counts against every operation
+ * that queued up behind it (coordinated-omission correction).
+ */
+public class Workload {
+
+    public enum Operation {
+        READ, UPDATE, INSERT, DELETE
+    }
+
+    public enum Distribution {
+        UNIFORM, ZIPFIAN, LATEST
+    }
+
+    private int records = 10000;
+    private final double[] mix = {1, 0, 0, 0};
+    private Distribution distribution = Distribution.ZIPFIAN;
+    private int threads = 8;
+    private Duration warmup = Duration.ofSeconds(5);
+    private Duration duration = Duration.ofSeconds(30);
+    private double targetRate;
+
+    /**
+     * YCSB workload A, update heavy: 50% reads, 50% updates, zipfian keys.
+     */
+    public static Workload updateHeavy() {
+        return new Workload().mix(0.5, 0.5, 0, 0).distribution(Distribution.ZIPFIAN);
+    }
+
+    /**
+     * YCSB workload B, read mostly: 95% reads, 5% updates, zipfian keys.
+     */
+    public static Workload readMostly() {
+        return new Workload().mix(0.95, 0.05, 0, 0).distribution(Distribution.ZIPFIAN);
+    }
+
+    /**
+     * YCSB workload C, read only, zipfian keys.
+     */
+    public static Workload readOnly() {
+        return new Workload().mix(1, 0, 0, 0).distribution(Distribution.ZIPFIAN);
+    }
+
+    /**
+     * YCSB workload D, read latest: 95% reads, 5% inserts, reads favour the most recently inserted keys.
+     */
+    public static Workload readLatest() {
+        return new Workload().mix(0.95, 0, 0.05, 0).distribution(Distribution.LATEST);
+    }
+
+    /**
+     * Number of users loaded before the workload starts, their ids are {@code 0} to {@code records - 1}.
+     */
+    public Workload records(int records) {
+        this.records = records;
+        return this;
+    }
+
+    /**
+     * Proportions of the operations, they are normalized so they don't have to add up to 1.
+     */
+    public Workload mix(double read, double update, double insert, double delete) {
+        double total = read + update + insert + delete;
+        if (total <= 0 || read < 0 || update < 0 || insert < 0 || delete < 0) {
+            throw new IllegalArgumentException("Invalid operation mix");
+        }
+        double[] weights = {read, update, insert, delete};
+        double cumulative = 0;
+        for (int i = 0; i < mix.length; i++) {
+            cumulative += weights[i];
+            mix[i] = cumulative / total;
+        }
+        // Rounding must not let an operation with weight 0 be chosen
+        for (int i = mix.length - 1; i >= 0 && (i == mix.length - 1 || weights[i + 1] == 0); i--) {
+            mix[i] = 1;
+        }
+        return this;
+    }
+
+    public Workload distribution(Distribution distribution) {
+        this.distribution = distribution;
+        return this;
+    }
+
+    public Workload threads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * Time the workload runs before measuring starts.
+     */
+    public Workload warmup(Duration warmup) {
+        this.warmup = warmup;
+        return this;
+    }
+
+    /**
+     * Measured time of the workload.
+     */
+    public Workload duration(Duration duration) {
+        this.duration = duration;
+        return this;
+    }
+
+    /**
+     * Switches to open-loop mode with the given arrival rate over all threads, {@code 0} switches back to closed-loop.
+     */
+    public Workload targetRate(double operationsPerSecond) {
+        this.targetRate = operationsPerSecond;
+        return this;
+    }
+
+    public int getRecords() {
+        return records;
+    }
+
+    public Distribution getDistribution() {
+        return distribution;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public Duration getWarmup() {
+        return warmup;
+    }
+
+    public Duration getDuration() {
+        return duration;
+    }
+
+    public double getTargetRate() {
+        return targetRate;
+    }
+
+    public boolean isOpenLoop() {
+        return targetRate > 0;
+    }
+
+    Operation chooseOperation(double random) {
+        for (int i = 0; i < mix.length; i++) {
+            if (random < mix[i]) {
+                return Operation.values()[i];
+            }
+        }
+        return Operation.DELETE;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("records=%d, mix=[read=%.2f, update=%.2f, insert=%.2f, delete=%.2f], distribution=%s, threads=%d, duration=%ss%s",
+                records, mix[0], mix[1] - mix[0], mix[2] - mix[1], mix[3] - mix[2], distribution, threads,
+                duration.toSeconds(), isOpenLoop() ? ", target=" + targetRate + " ops/s" : "");
+    }
+}
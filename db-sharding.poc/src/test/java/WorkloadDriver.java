@@ -0,0 +1,241 @@
+import org.HdrHistogram.Histogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Runs a {@link Workload} and records the latency of every operation in HdrHistograms. Nothing is logged while
+ * the workload runs, each thread only records into its own histograms, they are merged once all threads finished.
+ */
+public class WorkloadDriver {
+
+    /**
+     * The operations of one driver thread, {@link #close()} is called when the thread is done.
+     */
+    public interface Operations extends AutoCloseable {
+
+        /**
+         * @return false if the key does not exist (anymore)
+         */
+        boolean read(String key);
+
+        boolean update(String key);
+
+        void insert(String key);
+
+        boolean delete(String key);
+
+        @Override
+        void close();
+    }
+
+    private final Workload workload;
+    private final Supplier<Operations> operations;
+
+    public WorkloadDriver(Workload workload, Supplier<Operations> operations) {
+        this.workload = workload;
+        this.operations = operations;
+    }
+
+    public WorkloadResult run() throws InterruptedException {
+        KeyChooser keys = KeyChooser.of(workload.getDistribution(), workload.getRecords());
+        int threads = workload.getThreads();
+        long intervalNanos = workload.isOpenLoop() ? (long) (1_000_000_000.0 * threads / workload.getTargetRate()) : 0;
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch go = new CountDownLatch(1);
+        long[] schedule = new long[3];
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<WorkloadResult>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                // Spread the arrivals of the threads evenly over one interval
+                long offset = intervalNanos * t / threads;
+                results.add(executor.submit(() -> {
+                    Operations ops;
+                    try {
+                        ops = operations.get();
+                    } finally {
+                        ready.countDown();
+                    }
+                    try (ops) {
+                        go.await();
+                        return runThread(ops, keys, schedule[0] + offset, schedule[1], schedule[2], intervalNanos);
+                    }
+                }));
+            }
+
+            ready.await();
+            schedule[0] = System.nanoTime();
+            schedule[1] = schedule[0] + workload.getWarmup().toNanos();
+            schedule[2] = schedule[1] + workload.getDuration().toNanos();
+            go.countDown();
+
+            WorkloadResult total = new WorkloadResult(workload, workload.getDuration().toNanos());
+            for (Future<WorkloadResult> result : results) {
+                try {
+                    total.add(result.get());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Workload thread failed", e.getCause());
+                }
+            }
+            return total;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private WorkloadResult runThread(Operations ops, KeyChooser keys, long start, long measureFrom, long end,
+                                     long intervalNanos) {
+        WorkloadResult result = new WorkloadResult(workload, end - measureFrom);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long intended = start;
+        while (true) {
+            if (intervalNanos > 0) {
+                long wait;
+                while ((wait = intended - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+            }
+            long operationStart = System.nanoTime();
+            if (operationStart - end >= 0) {
+                break;
+            }
+
+            Workload.Operation operation = workload.chooseOperation(random.nextDouble());
+            boolean found = true;
+            boolean failed = false;
+            try {
+                switch (operation) {
+                    case READ -> found = ops.read(String.valueOf(keys.nextKey(random)));
+                    case UPDATE -> found = ops.update(String.valueOf(keys.nextKey(random)));
+                    case INSERT -> ops.insert(String.valueOf(keys.nextInsertKey()));
+                    case DELETE -> found = ops.delete(String.valueOf(keys.nextKey(random)));
+                }
+            } catch (RuntimeException e) {
+                failed = true;
+            }
+            long done = System.nanoTime();
+
+            if (operationStart - measureFrom >= 0) {
+                // In open-loop mode the operation was due at "intended", waiting for earlier operations is latency too
+                long responseStart = intervalNanos > 0 ? intended : operationStart;
+                result.record(operation, done - operationStart, done - responseStart, found, failed);
+            }
+            intended += intervalNanos;
+        }
+        return result;
+    }
+
+    /**
+     * Latencies per operation type in microseconds.
+     */
+    public static class WorkloadResult {
+
+        private final Workload workload;
+        private final long measuredNanos;
+        private final Histogram[] serviceTimes = new Histogram[Workload.Operation.values().length];
+        private final Histogram[] responseTimes = new Histogram[Workload.Operation.values().length];
+        private final long[] notFound = new long[Workload.Operation.values().length];
+        private final long[] errors = new long[Workload.Operation.values().length];
+
+        private WorkloadResult(Workload workload, long measuredNanos) {
+            this.workload = workload;
+            this.measuredNanos = measuredNanos;
+            for (int i = 0; i < serviceTimes.length; i++) {
+                serviceTimes[i] = new Histogram(3);
+                responseTimes[i] = new Histogram(3);
+            }
+        }
+
+        private void record(Workload.Operation operation, long serviceNanos, long responseNanos, boolean found, boolean failed) {
+            int i = operation.ordinal();
+            if (failed) {
+                errors[i]++;
+                return;
+            }
+            if (!found) {
+                notFound[i]++;
+            }
+            serviceTimes[i].recordValue(Math.max(1, serviceNanos / 1000));
+            responseTimes[i].recordValue(Math.max(1, responseNanos / 1000));
+        }
+
+        private void add(WorkloadResult other) {
+            for (int i = 0; i < serviceTimes.length; i++) {
+                serviceTimes[i].add(other.serviceTimes[i]);
+                responseTimes[i].add(other.responseTimes[i]);
+                notFound[i] += other.notFound[i];
+                errors[i] += other.errors[i];
+            }
+        }
+
+        /**
+         * Time from sending an operation until it returned.
+         */
+        public Histogram getServiceTime(Workload.Operation operation) {
+            return serviceTimes[operation.ordinal()];
+        }
+
+        /**
+         * Time from when an operation was due until it returned, the same as the service time in closed-loop mode.
+         */
+        public Histogram getResponseTime(Workload.Operation operation) {
+            return responseTimes[operation.ordinal()];
+        }
+
+        public long getOperations() {
+            long operations = 0;
+            for (Histogram histogram : serviceTimes) {
+                operations += histogram.getTotalCount();
+            }
+            return operations;
+        }
+
+        public long getErrors() {
+            long total = 0;
+            for (long count : errors) {
+                total += count;
+            }
+            return total;
+        }
+
+        public double getThroughput() {
+            return getOperations() * 1_000_000_000.0 / measuredNanos;
+        }
+
+        public void print() {
+            System.out.println("Workload: " + workload);
+            System.out.printf("Throughput: %.1f ops/s, operations: %d, errors: %d%n", getThroughput(), getOperations(), getErrors());
+            System.out.printf("%-9s %10s %9s %7s %9s %9s %9s %9s %9s%n",
+                    "op", "count", "notFound", "errors", "mean", "p50", "p99", "p99.9", "max");
+            for (Workload.Operation operation : Workload.Operation.values()) {
+                int i = operation.ordinal();
+                if (serviceTimes[i].getTotalCount() == 0 && errors[i] == 0) {
+                    continue;
+                }
+                print(operation.name(), responseTimes[i], notFound[i], errors[i]);
+                if (workload.isOpenLoop()) {
+                    print("  service", serviceTimes[i], notFound[i], errors[i]);
+                }
+            }
+            System.out.println("(latencies in ms" + (workload.isOpenLoop()
+                    ? ", measured from the scheduled start of each operation; service is from the actual start)" : ")"));
+        }
+
+        private static void print(String label, Histogram histogram, long notFound, long errors) {
+            System.out.printf("%-9s %10d %9d %7d %9.3f %9.3f %9.3f %9.3f %9.3f%n", label, histogram.getTotalCount(), notFound, errors,
+                    histogram.getMean() / 1000, histogram.getValueAtPercentile(50) / 1000.0,
+                    histogram.getValueAtPercentile(99) / 1000.0, histogram.getValueAtPercentile(99.9) / 1000.0,
+                    histogram.getMaxValue() / 1000.0);
+        }
+    }
+}